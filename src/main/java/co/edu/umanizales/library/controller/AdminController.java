@@ -0,0 +1,45 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.util.PersistenceQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+@RestController
+@RequestMapping("/api/v1/admin")
+public class AdminController {
+
+    private static final long FLUSH_TIMEOUT_MILLIS = 30_000;
+
+    private final PersistenceQueue persistenceQueue;
+
+    @Autowired
+    public AdminController(PersistenceQueue persistenceQueue) {
+        this.persistenceQueue = persistenceQueue;
+    }
+
+    @GetMapping("/persistence")
+    public ResponseEntity<Map<String, Object>> getPersistenceStats() {
+        return new ResponseEntity<>(persistenceQueue.getStats(), HttpStatus.OK);
+    }
+
+    // Waits until every mutation acknowledged so far is written to disk
+    @PostMapping("/flush")
+    public ResponseEntity<Map<String, Object>> flush() {
+        try {
+            persistenceQueue.flush(FLUSH_TIMEOUT_MILLIS);
+            return new ResponseEntity<>(persistenceQueue.getStats(), HttpStatus.OK);
+        } catch (TimeoutException e) {
+            return new ResponseEntity<>(persistenceQueue.getStats(), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+        } catch (IllegalStateException e) {
+            return new ResponseEntity<>(persistenceQueue.getStats(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+}
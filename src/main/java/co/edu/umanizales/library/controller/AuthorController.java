@@ -2,69 +2,75 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Author;
 import co.edu.umanizales.library.service.AuthorService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/authors")
 public class AuthorController {
 
     private final AuthorService authorService;
+    private final CommandPipeline commandPipeline;
 
     @Autowired
-    public AuthorController(AuthorService authorService) {
+    public AuthorController(AuthorService authorService, CommandPipeline commandPipeline) {
         this.authorService = authorService;
+        this.commandPipeline = commandPipeline;
     }
 
     @GetMapping
-    public ResponseEntity<List<Author>> getAllAuthors() {
-        return new ResponseEntity<>(authorService.getAllAuthors(), HttpStatus.OK);
+    public ResponseEntity<List<Author>> getAllAuthors(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, authorService.getVersion(), authorService::getAllAuthors);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Author> getAuthorById(@PathVariable long id) {
-        Author author = authorService.getAuthorById(id);
-        if (author != null) {
-            return new ResponseEntity<>(author, HttpStatus.OK);
-        }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public ResponseEntity<Author> getAuthorById(
+            @PathVariable long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, authorService.getVersion(), () -> authorService.getAuthorById(id));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Author>> searchAuthors(@RequestParam String query) {
-        return new ResponseEntity<>(authorService.searchAuthors(query), HttpStatus.OK);
+    public ResponseEntity<List<Author>> searchAuthors(
+            @RequestParam String query,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, authorService.getVersion(), () -> authorService.searchAuthors(query));
+    }
+
+    @GetMapping("/search/stats")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        return new ResponseEntity<>(authorService.getSearchCacheStats(), HttpStatus.OK);
     }
 
     @PostMapping
-    public ResponseEntity<Author> createAuthor(@RequestBody Author author) {
-        try {
-            Author createdAuthor = authorService.createAuthor(author);
-            return new ResponseEntity<>(createdAuthor, HttpStatus.CREATED);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Author>> createAuthor(@RequestBody Author author) {
+        return commandPipeline.submit(() -> authorService.createAuthor(author))
+                .handle((createdAuthor, error) -> error == null
+                        ? new ResponseEntity<>(createdAuthor, HttpStatus.CREATED)
+                        : new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Author> updateAuthor(@PathVariable long id, @RequestBody Author author) {
-        Author updatedAuthor = authorService.updateAuthor(id, author);
-        if (updatedAuthor != null) {
-            return new ResponseEntity<>(updatedAuthor, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<Author>> updateAuthor(@PathVariable long id, @RequestBody Author author) {
+        return commandPipeline.submit(() -> authorService.updateAuthor(id, author))
+                .thenApply(updatedAuthor -> updatedAuthor != null
+                        ? new ResponseEntity<>(updatedAuthor, HttpStatus.OK)
+                        : new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<HttpStatus> deleteAuthor(@PathVariable long id) {
-        if (authorService.deleteAuthor(id)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<HttpStatus>> deleteAuthor(@PathVariable long id) {
+        return commandPipeline.submit(() -> authorService.deleteAuthor(id))
+                .thenApply(deleted -> new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
     }
 }
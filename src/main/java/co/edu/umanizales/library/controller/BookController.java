@@ -1,115 +1,165 @@
 package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.CopyAdjustment;
+import co.edu.umanizales.library.model.CopyAdjustmentResult;
 import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.util.BookJsonCache;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/books")
 public class BookController {
 
     private final BookService bookService;
+    private final CommandPipeline commandPipeline;
+    private final BookJsonCache bookJsonCache;
 
     @Autowired
-    public BookController(BookService bookService) {
+    public BookController(BookService bookService, CommandPipeline commandPipeline, BookJsonCache bookJsonCache) {
         this.bookService = bookService;
+        this.commandPipeline = commandPipeline;
+        this.bookJsonCache = bookJsonCache;
     }
 
     @GetMapping
-    public ResponseEntity<List<Book>> getAllBooks() {
-        return new ResponseEntity<>(bookService.getAllBooks(), HttpStatus.OK);
+    public ResponseEntity<List<Book>> getAllBooks(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), bookService::getAllBooks);
     }
 
-    @GetMapping("/{isbn}")
-    public ResponseEntity<Book> getBookByIsbn(@PathVariable String isbn) {
-        Book book = bookService.getBookByIsbn(isbn);
-        if (book != null) {
-            return new ResponseEntity<>(book, HttpStatus.OK);
-        }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    @GetMapping(params = "isbn")
+    public ResponseEntity<List<Book>> getBooksByIsbns(
+            @RequestParam List<String> isbn,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookService.getBooksByIsbns(isbn));
+    }
+
+    // Writes the cached, already encoded JSON of the book
+    @GetMapping(value = "/{isbn}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<byte[]> getBookByIsbn(
+            @PathVariable String isbn,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookJsonCache.get(isbn));
     }
 
     @GetMapping("/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String query) {
-        return new ResponseEntity<>(bookService.searchBooks(query), HttpStatus.OK);
+    public ResponseEntity<List<Book>> searchBooks(
+            @RequestParam String query,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookService.searchBooks(query));
+    }
+
+    @GetMapping("/search/stats")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        return new ResponseEntity<>(bookService.getSearchCacheStats(), HttpStatus.OK);
     }
 
     @PostMapping
-    public ResponseEntity<Book> createBook(@RequestBody Book book) {
-        try {
-            Book createdBook = bookService.createBook(book);
-            return new ResponseEntity<>(createdBook, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Book>> createBook(@RequestBody Book book) {
+        return commandPipeline.submit(() -> bookService.createBook(book))
+                .handle((createdBook, error) -> error == null
+                        ? new ResponseEntity<>(createdBook, HttpStatus.CREATED)
+                        : errorResponse(error));
     }
 
     @PutMapping("/{isbn}")
-    public ResponseEntity<Book> updateBook(@PathVariable String isbn, @RequestBody Book book) {
-        try {
-            Book updatedBook = bookService.updateBook(isbn, book);
-            if (updatedBook != null) {
-                return new ResponseEntity<>(updatedBook, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-            }
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Book>> updateBook(@PathVariable String isbn, @RequestBody Book book) {
+        return commandPipeline.submit(() -> bookService.updateBook(isbn, book))
+                .handle((updatedBook, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    if (updatedBook != null) {
+                        return new ResponseEntity<>(updatedBook, HttpStatus.OK);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                });
     }
 
     @DeleteMapping("/{isbn}")
-    public ResponseEntity<HttpStatus> deleteBook(@PathVariable String isbn) {
-        if (bookService.deleteBook(isbn)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<HttpStatus>> deleteBook(@PathVariable String isbn) {
+        return commandPipeline.submit(() -> bookService.deleteBook(isbn))
+                .handle((deleted, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+                });
     }
 
     @PostMapping("/{isbn}/copies/increase")
-    public ResponseEntity<HttpStatus> increaseCopies(
+    public CompletableFuture<ResponseEntity<HttpStatus>> increaseCopies(
             @PathVariable String isbn, 
             @RequestParam(defaultValue = "1") int count) {
-        if (bookService.increaseAvailableCopies(isbn, count)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
+        return commandPipeline.submit(() -> bookService.increaseAvailableCopies(isbn, count))
+                .handle((increased, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(increased ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+                });
     }
 
     @PostMapping("/{isbn}/copies/decrease")
-    public ResponseEntity<HttpStatus> decreaseCopies(
+    public CompletableFuture<ResponseEntity<HttpStatus>> decreaseCopies(
             @PathVariable String isbn, 
             @RequestParam(defaultValue = "1") int count) {
-        if (bookService.decreaseAvailableCopies(isbn, count)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-        }
+        return commandPipeline.submit(() -> bookService.decreaseAvailableCopies(isbn, count))
+                .handle((decreased, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(decreased ? HttpStatus.OK : HttpStatus.BAD_REQUEST);
+                });
+    }
+
+    @PostMapping("/copies/adjust")
+    public CompletableFuture<ResponseEntity<CopyAdjustmentResult>> adjustCopies(@RequestBody List<CopyAdjustment> adjustments) {
+        return commandPipeline.submit(() -> bookService.adjustCopies(adjustments))
+                .handle((result, error) -> error == null
+                        ? new ResponseEntity<>(result, HttpStatus.OK)
+                        : errorResponse(error));
     }
 
     @GetMapping("/author/{authorId}")
-    public ResponseEntity<List<Book>> getBooksByAuthor(@PathVariable long authorId) {
-        return new ResponseEntity<>(bookService.getBooksByAuthor(authorId), HttpStatus.OK);
+    public ResponseEntity<List<Book>> getBooksByAuthor(
+            @PathVariable long authorId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookService.getBooksByAuthor(authorId));
     }
 
     @GetMapping("/publisher/{publisherId}")
-    public ResponseEntity<List<Book>> getBooksByPublisher(@PathVariable long publisherId) {
-        return new ResponseEntity<>(bookService.getBooksByPublisher(publisherId), HttpStatus.OK);
+    public ResponseEntity<List<Book>> getBooksByPublisher(
+            @PathVariable long publisherId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookService.getBooksByPublisher(publisherId));
     }
 
     @GetMapping("/category/{categoryId}")
-    public ResponseEntity<List<Book>> getBooksByCategory(@PathVariable long categoryId) {
-        return new ResponseEntity<>(bookService.getBooksByCategory(categoryId), HttpStatus.OK);
+    public ResponseEntity<List<Book>> getBooksByCategory(
+            @PathVariable long categoryId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, bookService.getVersion(), () -> bookService.getBooksByCategory(categoryId));
+    }
+
+    private <T> ResponseEntity<T> errorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
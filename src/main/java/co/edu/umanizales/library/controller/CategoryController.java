@@ -2,82 +2,85 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Category;
 import co.edu.umanizales.library.service.CategoryService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.ETags;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/categories")
 public class CategoryController {
 
     private final CategoryService categoryService;
+    private final CommandPipeline commandPipeline;
 
     @Autowired
-    public CategoryController(CategoryService categoryService) {
+    public CategoryController(CategoryService categoryService, CommandPipeline commandPipeline) {
         this.categoryService = categoryService;
+        this.commandPipeline = commandPipeline;
     }
 
     @GetMapping
-    public ResponseEntity<List<Category>> getAllCategories() {
-        return new ResponseEntity<>(categoryService.getAllCategories(), HttpStatus.OK);
+    public ResponseEntity<List<Category>> getAllCategories(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, categoryService.getVersion(), categoryService::getAllCategories);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Category> getCategoryById(@PathVariable long id) {
-        Category category = categoryService.getCategoryById(id);
-        if (category != null) {
-            return new ResponseEntity<>(category, HttpStatus.OK);
-        }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public ResponseEntity<Category> getCategoryById(
+            @PathVariable long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, categoryService.getVersion(), () -> categoryService.getCategoryById(id));
     }
 
     @GetMapping("/name/{name}")
-    public ResponseEntity<Category> getCategoryByName(@PathVariable String name) {
-        Category category = categoryService.getCategoryByName(name);
-        if (category != null) {
-            return new ResponseEntity<>(category, HttpStatus.OK);
-        }
-        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public ResponseEntity<Category> getCategoryByName(
+            @PathVariable String name,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, categoryService.getVersion(), () -> categoryService.getCategoryByName(name));
     }
 
     @PostMapping
-    public ResponseEntity<Category> createCategory(@RequestBody Category category) {
-        try {
-            Category createdCategory = categoryService.createCategory(category);
-            return new ResponseEntity<>(createdCategory, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Category>> createCategory(@RequestBody Category category) {
+        return commandPipeline.submit(() -> categoryService.createCategory(category))
+                .handle((createdCategory, error) -> error == null
+                        ? new ResponseEntity<>(createdCategory, HttpStatus.CREATED)
+                        : errorResponse(error));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Category> updateCategory(@PathVariable long id, @RequestBody Category category) {
-        try {
-            Category updatedCategory = categoryService.updateCategory(id, category);
-            if (updatedCategory != null) {
-                return new ResponseEntity<>(updatedCategory, HttpStatus.OK);
-            } else {
-                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-            }
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Category>> updateCategory(@PathVariable long id, @RequestBody Category category) {
+        return commandPipeline.submit(() -> categoryService.updateCategory(id, category))
+                .handle((updatedCategory, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    if (updatedCategory != null) {
+                        return new ResponseEntity<>(updatedCategory, HttpStatus.OK);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<HttpStatus> deleteCategory(@PathVariable long id) {
-        if (categoryService.deleteCategory(id)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public CompletableFuture<ResponseEntity<HttpStatus>> deleteCategory(@PathVariable long id) {
+        return commandPipeline.submit(() -> categoryService.deleteCategory(id))
+                .thenApply(deleted -> new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
+    }
+
+    private <T> ResponseEntity<T> errorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
         }
+        return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
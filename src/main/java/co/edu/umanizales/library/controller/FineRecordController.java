@@ -1,23 +1,35 @@
 package co.edu.umanizales.library.controller;
 
+import co.edu.umanizales.library.model.FineAccrualRun;
 import co.edu.umanizales.library.model.FineRecord;
 import co.edu.umanizales.library.service.FineRecordService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.Idempotency;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/fine-records")
 public class FineRecordController {
 
     private final FineRecordService fineRecordService;
+    private final CommandPipeline commandPipeline;
+    private final Idempotency idempotency;
 
     @Autowired
-    public FineRecordController(FineRecordService fineRecordService) {
+    public FineRecordController(FineRecordService fineRecordService, CommandPipeline commandPipeline,
+                                Idempotency idempotency) {
         this.fineRecordService = fineRecordService;
+        this.commandPipeline = commandPipeline;
+        this.idempotency = idempotency;
     }
 
     @GetMapping
@@ -50,42 +62,83 @@ public class FineRecordController {
     }
 
     @PostMapping
-    public ResponseEntity<FineRecord> createFineRecord(@RequestBody FineRecord fineRecord) {
-        try {
-            FineRecord createdRecord = fineRecordService.createFineRecord(fineRecord);
-            return new ResponseEntity<>(createdRecord, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<FineRecord>> createFineRecord(
+            @RequestBody FineRecord fineRecord,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute("POST /fine-records", idempotencyKey, fineRecord,
+                        () -> fineRecordService.createFineRecord(fineRecord))
+                .handle((createdRecord, error) -> error == null
+                        ? new ResponseEntity<>(createdRecord, HttpStatus.CREATED)
+                        : errorResponse(error));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<FineRecord> updateFineRecord(@PathVariable long id, @RequestBody FineRecord fineRecord) {
-        FineRecord updatedRecord = fineRecordService.updateFineRecord(id, fineRecord);
-        if (updatedRecord != null) {
-            return new ResponseEntity<>(updatedRecord, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<FineRecord>> updateFineRecord(@PathVariable long id, @RequestBody FineRecord fineRecord) {
+        return commandPipeline.submit(() -> fineRecordService.updateFineRecord(id, fineRecord))
+                .handle((updatedRecord, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    if (updatedRecord != null) {
+                        return new ResponseEntity<>(updatedRecord, HttpStatus.OK);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                });
     }
 
     @PostMapping("/{id}/pay")
-    public ResponseEntity<Void> markAsPaid(@PathVariable long id) {
-        if (fineRecordService.markAsPaid(id)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<Void>> markAsPaid(
+            @PathVariable long id,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        // A retried payment reports the original success instead of 404 for an already paid fine
+        return idempotency.execute("POST /fine-records/{id}/pay", idempotencyKey, id,
+                        () -> fineRecordService.markAsPaid(id))
+                .handle((paid, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(paid ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteFineRecord(@PathVariable long id) {
-        if (fineRecordService.deleteFineRecord(id)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    public CompletableFuture<ResponseEntity<Void>> deleteFineRecord(@PathVariable long id) {
+        return commandPipeline.submit(() -> fineRecordService.deleteFineRecord(id))
+                .handle((deleted, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+                });
+    }
+
+    @GetMapping("/accrual")
+    public ResponseEntity<FineAccrualRun> getLastAccrualRun() {
+        FineAccrualRun run = fineRecordService.getLastAccrualRun();
+        if (run != null) {
+            return new ResponseEntity<>(run, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+    }
+
+    @PostMapping("/accrual")
+    public CompletableFuture<ResponseEntity<FineAccrualRun>> accrueOverdueFines(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate asOf) {
+        LocalDate date = asOf != null ? asOf : LocalDate.now();
+        return commandPipeline.submit(() -> fineRecordService.accrueOverdueFines(date))
+                .handle((run, error) -> error == null
+                        ? new ResponseEntity<>(run, HttpStatus.OK)
+                        : errorResponse(error));
+    }
+
+    private <T> ResponseEntity<T> errorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof Idempotency.KeyReusedException) {
+            return new ResponseEntity<>(null, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(null, HttpStatus.BAD_REQUEST);
         }
+        return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
     }
 }
@@ -1,23 +1,33 @@
 package co.edu.umanizales.library.controller;
 
+import co.edu.umanizales.library.model.BatchLoanRequest;
+import co.edu.umanizales.library.model.BatchReturnRequest;
 import co.edu.umanizales.library.model.Loan;
 import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.Idempotency;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/loans")
 public class LoanController {
 
     private final LoanService loanService;
+    private final CommandPipeline commandPipeline;
+    private final Idempotency idempotency;
 
     @Autowired
-    public LoanController(LoanService loanService) {
+    public LoanController(LoanService loanService, CommandPipeline commandPipeline, Idempotency idempotency) {
         this.loanService = loanService;
+        this.commandPipeline = commandPipeline;
+        this.idempotency = idempotency;
     }
 
     @GetMapping
@@ -25,6 +35,11 @@ public class LoanController {
         return new ResponseEntity<>(loanService.getAllLoans(), HttpStatus.OK);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Loan>> getLoansByIds(@RequestParam List<Long> ids) {
+        return new ResponseEntity<>(loanService.getLoansByIds(ids), HttpStatus.OK);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<Loan> getLoanById(@PathVariable long id) {
         Loan loan = loanService.getLoanById(id);
@@ -35,45 +50,68 @@ public class LoanController {
     }
 
     @PostMapping
-    public ResponseEntity<Loan> createLoan(@RequestBody Loan loan) {
-        try {
-            Loan createdLoan = loanService.createLoan(loan);
-            return new ResponseEntity<>(createdLoan, HttpStatus.CREATED);
-        } catch (IllegalArgumentException e) {
-            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
-        } catch (IllegalStateException e) {
-            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Loan>> createLoan(
+            @RequestBody Loan loan,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute("POST /loans", idempotencyKey, loan, () -> loanService.createLoan(loan))
+                .handle((createdLoan, error) -> error == null
+                        ? new ResponseEntity<>(createdLoan, HttpStatus.CREATED)
+                        : errorResponse(error));
+    }
+
+    @PostMapping("/batch")
+    public CompletableFuture<ResponseEntity<List<Loan>>> createLoans(
+            @RequestBody BatchLoanRequest request,
+            @RequestHeader(value = Idempotency.HEADER, required = false) String idempotencyKey) {
+        return idempotency.execute("POST /loans/batch", idempotencyKey, request,
+                        () -> loanService.createLoans(request.getUserId(), request.getIsbns()))
+                .handle((createdLoans, error) -> error == null
+                        ? new ResponseEntity<>(createdLoans, HttpStatus.CREATED)
+                        : errorResponse(error));
+    }
+
+    @PostMapping("/batch/return")
+    public CompletableFuture<ResponseEntity<List<Loan>>> returnLoans(@RequestBody BatchReturnRequest request) {
+        return commandPipeline.submit(() -> loanService.returnLoans(request.getLoanIds()))
+                .handle((returnedLoans, error) -> error == null
+                        ? new ResponseEntity<>(returnedLoans, HttpStatus.OK)
+                        : errorResponse(error));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Loan> updateLoan(@PathVariable long id, @RequestBody Loan loan) {
-        Loan updatedLoan = loanService.updateLoan(id, loan);
-        if (updatedLoan != null) {
-            return new ResponseEntity<>(updatedLoan, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<Loan>> updateLoan(@PathVariable long id, @RequestBody Loan loan) {
+        return commandPipeline.submit(() -> loanService.updateLoan(id, loan))
+                .handle((updatedLoan, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    if (updatedLoan != null) {
+                        return new ResponseEntity<>(updatedLoan, HttpStatus.OK);
+                    }
+                    return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<HttpStatus> deleteLoan(@PathVariable long id) {
-        if (loanService.deleteLoan(id)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<HttpStatus>> deleteLoan(@PathVariable long id) {
+        return commandPipeline.submit(() -> loanService.deleteLoan(id))
+                .handle((deleted, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND);
+                });
     }
 
     @PostMapping("/{id}/return")
-    public ResponseEntity<HttpStatus> returnLoan(@PathVariable long id) {
-        if (loanService.returnLoan(id)) {
-            return new ResponseEntity<>(HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<HttpStatus>> returnLoan(@PathVariable long id) {
+        return commandPipeline.submit(() -> loanService.returnLoan(id))
+                .handle((returned, error) -> {
+                    if (error != null) {
+                        return errorResponse(error);
+                    }
+                    return new ResponseEntity<>(returned ? HttpStatus.OK : HttpStatus.NOT_FOUND);
+                });
     }
 
     @GetMapping("/user/{userId}")
@@ -87,4 +125,18 @@ public class LoanController {
         List<Loan> bookLoans = loanService.getLoansByBookId(bookId);
         return new ResponseEntity<>(bookLoans, HttpStatus.OK);
     }
+
+    private <T> ResponseEntity<T> errorResponse(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof Idempotency.KeyReusedException) {
+            return new ResponseEntity<>(null, HttpStatus.UNPROCESSABLE_ENTITY);
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return new ResponseEntity<>(null, HttpStatus.NOT_FOUND);
+        }
+        if (cause instanceof IllegalStateException) {
+            return new ResponseEntity<>(null, HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
+    }
 }
@@ -2,22 +2,26 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Person;
 import co.edu.umanizales.library.service.PersonService;
+import co.edu.umanizales.library.util.CommandPipeline;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/persons")
 public class PersonController {
 
     private final PersonService personService;
+    private final CommandPipeline commandPipeline;
 
     @Autowired
-    public PersonController(PersonService personService) {
+    public PersonController(PersonService personService, CommandPipeline commandPipeline) {
         this.personService = personService;
+        this.commandPipeline = commandPipeline;
     }
 
     @GetMapping
@@ -35,31 +39,24 @@ public class PersonController {
     }
 
     @PostMapping
-    public ResponseEntity<Person> createPerson(@RequestBody Person person) {
-        try {
-            Person createdPerson = personService.createPerson(person);
-            return new ResponseEntity<>(createdPerson, HttpStatus.CREATED);
-        } catch (Exception e) {
-            return new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR);
-        }
+    public CompletableFuture<ResponseEntity<Person>> createPerson(@RequestBody Person person) {
+        return commandPipeline.submit(() -> personService.createPerson(person))
+                .handle((createdPerson, error) -> error == null
+                        ? new ResponseEntity<>(createdPerson, HttpStatus.CREATED)
+                        : new ResponseEntity<>(null, HttpStatus.INTERNAL_SERVER_ERROR));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Person> updatePerson(@PathVariable long id, @RequestBody Person person) {
-        Person updatedPerson = personService.updatePerson(id, person);
-        if (updatedPerson != null) {
-            return new ResponseEntity<>(updatedPerson, HttpStatus.OK);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<Person>> updatePerson(@PathVariable long id, @RequestBody Person person) {
+        return commandPipeline.submit(() -> personService.updatePerson(id, person))
+                .thenApply(updatedPerson -> updatedPerson != null
+                        ? new ResponseEntity<>(updatedPerson, HttpStatus.OK)
+                        : new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<HttpStatus> deletePerson(@PathVariable long id) {
-        if (personService.deletePerson(id)) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        } else {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
-        }
+    public CompletableFuture<ResponseEntity<HttpStatus>> deletePerson(@PathVariable long id) {
+        return commandPipeline.submit(() -> personService.deletePerson(id))
+                .thenApply(deleted -> new ResponseEntity<>(deleted ? HttpStatus.NO_CONTENT : HttpStatus.NOT_FOUND));
     }
 }
@@ -2,12 +2,16 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Publisher;
 import co.edu.umanizales.library.service.PublisherService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import co.edu.umanizales.library.util.ETags;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/publishers")
@@ -15,43 +19,42 @@ import java.util.List;
 public class PublisherController {
 
     private final PublisherService publisherService;
+    private final CommandPipeline commandPipeline;
 
     @GetMapping
-    public ResponseEntity<List<Publisher>> getAllPublishers() {
-        return ResponseEntity.ok(publisherService.getAllPublishers());
+    public ResponseEntity<List<Publisher>> getAllPublishers(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, publisherService.getVersion(), publisherService::getAllPublishers);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<Publisher> getPublisherById(@PathVariable long id) {
-        Publisher publisher = publisherService.getPublisherById(id);
-        if (publisher != null) {
-            return ResponseEntity.ok(publisher);
-        }
-        return ResponseEntity.notFound().build();
+    public ResponseEntity<Publisher> getPublisherById(
+            @PathVariable long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        return ETags.conditional(ifNoneMatch, publisherService.getVersion(), () -> publisherService.getPublisherById(id));
     }
 
     @PostMapping
-    public ResponseEntity<Publisher> createPublisher(@RequestBody Publisher publisher) {
-        Publisher createdPublisher = publisherService.createPublisher(publisher);
-        return new ResponseEntity<>(createdPublisher, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<Publisher>> createPublisher(@RequestBody Publisher publisher) {
+        return commandPipeline.submit(() -> publisherService.createPublisher(publisher))
+                .thenApply(createdPublisher -> new ResponseEntity<>(createdPublisher, HttpStatus.CREATED));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Publisher> updatePublisher(
+    public CompletableFuture<ResponseEntity<Publisher>> updatePublisher(
             @PathVariable long id,
             @RequestBody Publisher publisher) {
-        Publisher updatedPublisher = publisherService.updatePublisher(id, publisher);
-        if (updatedPublisher != null) {
-            return ResponseEntity.ok(updatedPublisher);
-        }
-        return ResponseEntity.notFound().build();
+        return commandPipeline.submit(() -> publisherService.updatePublisher(id, publisher))
+                .thenApply(updatedPublisher -> updatedPublisher != null
+                        ? ResponseEntity.ok(updatedPublisher)
+                        : ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deletePublisher(@PathVariable long id) {
-        if (publisherService.deletePublisher(id)) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Void>> deletePublisher(@PathVariable long id) {
+        return commandPipeline.submit(() -> publisherService.deletePublisher(id))
+                .thenApply(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
     }
 }
@@ -0,0 +1,49 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Recommendation;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.RecommendationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/recommendations")
+public class RecommendationController {
+
+    private final RecommendationService recommendationService;
+    private final BookService bookService;
+
+    @Autowired
+    public RecommendationController(RecommendationService recommendationService, BookService bookService) {
+        this.recommendationService = recommendationService;
+        this.bookService = bookService;
+    }
+
+    @GetMapping("/{isbn}/also-borrowed")
+    public ResponseEntity<List<Recommendation>> getAlsoBorrowed(@PathVariable String isbn,
+                                                                @RequestParam(defaultValue = "10") int limit) {
+        if (bookService.getBookByIsbn(isbn) == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (limit < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(recommendationService.getAlsoBorrowed(isbn, limit), HttpStatus.OK);
+    }
+
+    @GetMapping("/{isbn}/similar")
+    public ResponseEntity<List<Recommendation>> getSimilar(@PathVariable String isbn,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        if (bookService.getBookByIsbn(isbn) == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        if (limit < 1) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        return new ResponseEntity<>(recommendationService.getSimilar(isbn, limit), HttpStatus.OK);
+    }
+}
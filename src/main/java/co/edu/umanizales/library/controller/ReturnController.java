@@ -2,12 +2,15 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Return;
 import co.edu.umanizales.library.service.ReturnService;
+import co.edu.umanizales.library.util.CommandPipeline;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api/v1/returns")
@@ -15,6 +18,7 @@ import java.util.List;
 public class ReturnController {
 
     private final ReturnService returnService;
+    private final CommandPipeline commandPipeline;
 
     @GetMapping
     public ResponseEntity<List<Return>> getAllReturns() {
@@ -31,25 +35,46 @@ public class ReturnController {
     }
 
     @PostMapping
-    public ResponseEntity<Return> createReturn(@RequestBody Return returnObj) {
-        Return createdReturn = returnService.createReturn(returnObj);
-        return new ResponseEntity<>(createdReturn, HttpStatus.CREATED);
+    public CompletableFuture<ResponseEntity<Return>> createReturn(@RequestBody Return returnObj) {
+        return commandPipeline.submit(() -> returnService.createReturn(returnObj))
+                .thenApply(createdReturn -> new ResponseEntity<>(createdReturn, HttpStatus.CREATED));
+    }
+
+    /**
+     * Full return at the desk: records the return, closes the loan, restores the copy
+     * unless it was lost and issues the damage or loss fine.
+     */
+    @PostMapping("/process")
+    public CompletableFuture<ResponseEntity<Return>> processReturn(@RequestBody Return returnObj) {
+        return commandPipeline.submit(() -> returnService.processReturn(returnObj))
+                .handle((processed, error) -> {
+                    if (error == null) {
+                        return new ResponseEntity<>(processed, HttpStatus.CREATED);
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (cause instanceof IllegalArgumentException) {
+                        return ResponseEntity.badRequest().build();
+                    }
+                    if (cause instanceof IllegalStateException) {
+                        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+                    }
+                    return ResponseEntity.internalServerError().build();
+                });
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Return> updateReturn(@PathVariable long id, @RequestBody Return returnObj) {
-        Return updatedReturn = returnService.updateReturn(id, returnObj);
-        if (updatedReturn != null) {
-            return ResponseEntity.ok(updatedReturn);
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Return>> updateReturn(@PathVariable long id, @RequestBody Return returnObj) {
+        return commandPipeline.submit(() -> returnService.updateReturn(id, returnObj))
+                .thenApply(updatedReturn -> updatedReturn != null
+                        ? ResponseEntity.ok(updatedReturn)
+                        : ResponseEntity.notFound().build());
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteReturn(@PathVariable long id) {
-        if (returnService.deleteReturn(id)) {
-            return ResponseEntity.noContent().build();
-        }
-        return ResponseEntity.notFound().build();
+    public CompletableFuture<ResponseEntity<Void>> deleteReturn(@PathVariable long id) {
+        return commandPipeline.submit(() -> returnService.deleteReturn(id))
+                .thenApply(deleted -> deleted
+                        ? ResponseEntity.noContent().<Void>build()
+                        : ResponseEntity.notFound().<Void>build());
     }
 }
@@ -2,14 +2,18 @@ package co.edu.umanizales.library.controller;
 
 import co.edu.umanizales.library.model.Review;
 import co.edu.umanizales.library.service.ReviewService;
+import co.edu.umanizales.library.util.CommandPipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.Map;
 
 @Slf4j
 @RestController
@@ -18,6 +22,7 @@ import java.util.List;
 public class ReviewController {
 
     private final ReviewService reviewService;
+    private final CommandPipeline commandPipeline;
 
     @GetMapping
     public ResponseEntity<List<Review>> getAllReviews() {
@@ -37,46 +42,42 @@ public class ReviewController {
     }
 
     @PostMapping
-    public ResponseEntity<Review> createReview(@RequestBody Review review) {
-        try {
-            log.info("Creating new review");
-            Review createdReview = reviewService.createReview(review);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdReview);
-        } catch (IOException e) {
-            log.error("Error creating review", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<Review>> createReview(@RequestBody Review review) {
+        log.info("Creating new review");
+        return commandPipeline.submitIo(() -> reviewService.createReview(review))
+                .handle((createdReview, error) -> error == null
+                        ? ResponseEntity.status(HttpStatus.CREATED).body(createdReview)
+                        : ioErrorResponse("Error creating review", error));
     }
 
     @PutMapping("/{id}")
-    public ResponseEntity<Review> updateReview(@PathVariable Long id, @RequestBody Review reviewDetails) {
-        try {
-            log.info("Updating review with id: {}", id);
-            Review updatedReview = reviewService.updateReview(id, reviewDetails);
-            if (updatedReview != null) {
-                return ResponseEntity.ok(updatedReview);
-            }
-            return ResponseEntity.notFound().build();
-        } catch (IOException e) {
-            log.error("Error updating review", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<Review>> updateReview(@PathVariable Long id, @RequestBody Review reviewDetails) {
+        log.info("Updating review with id: {}", id);
+        return commandPipeline.submitIo(() -> reviewService.updateReview(id, reviewDetails))
+                .handle((updatedReview, error) -> {
+                    if (error != null) {
+                        return ioErrorResponse("Error updating review", error);
+                    }
+                    if (updatedReview != null) {
+                        return ResponseEntity.ok(updatedReview);
+                    }
+                    return ResponseEntity.notFound().build();
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteReview(@PathVariable Long id) {
-        try {
-            log.info("Deleting review with id: {}", id);
-            boolean deleted = reviewService.deleteReview(id);
-            if (deleted) {
-                return ResponseEntity.noContent().build();
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            log.error("Error deleting review", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<Void>> deleteReview(@PathVariable Long id) {
+        log.info("Deleting review with id: {}", id);
+        return commandPipeline.submitIo(() -> reviewService.deleteReview(id))
+                .handle((deleted, error) -> {
+                    if (error != null) {
+                        return ioErrorResponse("Error deleting review", error);
+                    }
+                    if (deleted) {
+                        return ResponseEntity.noContent().build();
+                    }
+                    return ResponseEntity.notFound().build();
+                });
     }
 
     @GetMapping("/user/{userId}")
@@ -106,4 +107,19 @@ public class ReviewController {
         double averageRating = reviewService.getAverageRatingByBookId(bookId);
         return ResponseEntity.ok(averageRating);
     }
+
+    @GetMapping("/single-flight/stats")
+    public ResponseEntity<Map<String, Map<String, Long>>> getSingleFlightStats() {
+        return ResponseEntity.ok(reviewService.getSingleFlightStats());
+    }
+
+    // An IOException from the service answers 500, anything else propagates as before
+    private <T> ResponseEntity<T> ioErrorResponse(String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException) {
+            log.error(message, cause.getCause());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+    }
 }
@@ -0,0 +1,104 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.CirculationStats;
+import co.edu.umanizales.library.model.DistinctBorrowers;
+import co.edu.umanizales.library.model.LoanHistoryReport;
+import co.edu.umanizales.library.model.TitleCount;
+import co.edu.umanizales.library.service.CirculationStatsService;
+import co.edu.umanizales.library.service.LoanHistoryService;
+import co.edu.umanizales.library.service.TrendingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/v1/stats")
+public class StatsController {
+
+    private final CirculationStatsService circulationStatsService;
+    private final TrendingService trendingService;
+    private final LoanHistoryService loanHistoryService;
+
+    @Autowired
+    public StatsController(CirculationStatsService circulationStatsService, TrendingService trendingService,
+                           LoanHistoryService loanHistoryService) {
+        this.circulationStatsService = circulationStatsService;
+        this.trendingService = trendingService;
+        this.loanHistoryService = loanHistoryService;
+    }
+
+    // Defaults to the last 30 days, per day
+    @GetMapping("/circulation")
+    public ResponseEntity<CirculationStats> getCirculation(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) Long categoryId) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        try {
+            return new ResponseEntity<>(circulationStatsService.getCirculation(start, end, granularity, categoryId),
+                    HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Months as yyyy-MM; defaults to the last 12 months
+    @GetMapping("/distinct-borrowers")
+    public ResponseEntity<DistinctBorrowers> getDistinctBorrowers(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM") YearMonth to,
+            @RequestParam(required = false) Long categoryId) {
+        YearMonth end = to != null ? to : YearMonth.now();
+        YearMonth start = from != null ? from : end.minusMonths(11);
+        try {
+            return new ResponseEntity<>(circulationStatsService.getDistinctBorrowers(start, end, categoryId), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // Loans made in the range (default: the last year), scanned from the columnar history
+    @GetMapping("/loan-history")
+    public ResponseEntity<LoanHistoryReport> getLoanHistoryReport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long categoryId,
+            @RequestParam(required = false) Long userId) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusYears(1);
+        try {
+            return new ResponseEntity<>(loanHistoryService.getReport(start, end, categoryId, userId), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    // window: day, week, month (estimated) or all (exact)
+    @GetMapping("/top-borrowed")
+    public ResponseEntity<List<TitleCount>> getTopBorrowed(@RequestParam(defaultValue = "week") String window,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return new ResponseEntity<>(trendingService.getTopBorrowed(window, limit), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @GetMapping("/top-reviewed")
+    public ResponseEntity<List<TitleCount>> getTopReviewed(@RequestParam(defaultValue = "week") String window,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        try {
+            return new ResponseEntity<>(trendingService.getTopReviewed(window, limit), HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+    }
+}
@@ -1,15 +1,22 @@
 package co.edu.umanizales.library.controller;
 
+import co.edu.umanizales.library.model.PatronAccount;
+import co.edu.umanizales.library.model.PatronDashboard;
 import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.DashboardService;
+import co.edu.umanizales.library.service.PatronAccountService;
 import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.CommandPipeline;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @RestController
@@ -18,6 +25,9 @@ import java.util.List;
 public class UserController {
 
     private final UserService userService;
+    private final CommandPipeline commandPipeline;
+    private final PatronAccountService patronAccountService;
+    private final DashboardService dashboardService;
 
     @GetMapping
     public ResponseEntity<List<User>> getAllUsers() {
@@ -26,6 +36,13 @@ public class UserController {
         return ResponseEntity.ok(users);
     }
 
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<User>> getUsersByIds(@RequestParam List<Long> ids) {
+        log.info("Fetching users with ids: {}", ids);
+        List<User> users = userService.getUsersByIds(ids);
+        return ResponseEntity.ok(users);
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<User> getUserById(@PathVariable Long id) {
         log.info("Fetching user with id: {}", id);
@@ -36,47 +53,63 @@ public class UserController {
         return ResponseEntity.notFound().build();
     }
 
-    @PostMapping
-    public ResponseEntity<User> createUser(@RequestBody User user) {
-        try {
-            log.info("Creating new user: {}", user.getUsername());
-            User createdUser = userService.createUser(user);
-            return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
-        } catch (IOException e) {
-            log.error("Error creating user", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    @GetMapping("/{id}/account")
+    public ResponseEntity<PatronAccount> getAccount(@PathVariable Long id) {
+        log.info("Fetching account of user with id: {}", id);
+        PatronAccount account = patronAccountService.getAccount(id);
+        if (account != null) {
+            return ResponseEntity.ok(account);
         }
+        return ResponseEntity.notFound().build();
     }
 
-    @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
-        try {
-            log.info("Updating user with id: {}", id);
-            User updatedUser = userService.updateUser(id, userDetails);
-            if (updatedUser != null) {
-                return ResponseEntity.ok(updatedUser);
-            }
-            return ResponseEntity.notFound().build();
-        } catch (IOException e) {
-            log.error("Error updating user", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+    @GetMapping("/{id}/dashboard")
+    public ResponseEntity<PatronDashboard> getDashboard(@PathVariable Long id) {
+        log.info("Fetching dashboard of user with id: {}", id);
+        PatronDashboard dashboard = dashboardService.getDashboard(id);
+        if (dashboard != null) {
+            return ResponseEntity.ok(dashboard);
         }
+        return ResponseEntity.notFound().build();
+    }
+
+    @PostMapping
+    public CompletableFuture<ResponseEntity<User>> createUser(@RequestBody User user) {
+        log.info("Creating new user: {}", user.getUsername());
+        return commandPipeline.submitIo(() -> userService.createUser(user))
+                .handle((createdUser, error) -> error == null
+                        ? ResponseEntity.status(HttpStatus.CREATED).body(createdUser)
+                        : ioErrorResponse("Error creating user", error));
+    }
+
+    @PutMapping("/{id}")
+    public CompletableFuture<ResponseEntity<User>> updateUser(@PathVariable Long id, @RequestBody User userDetails) {
+        log.info("Updating user with id: {}", id);
+        return commandPipeline.submitIo(() -> userService.updateUser(id, userDetails))
+                .handle((updatedUser, error) -> {
+                    if (error != null) {
+                        return ioErrorResponse("Error updating user", error);
+                    }
+                    if (updatedUser != null) {
+                        return ResponseEntity.ok(updatedUser);
+                    }
+                    return ResponseEntity.notFound().build();
+                });
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        try {
-            log.info("Deleting user with id: {}", id);
-            boolean deleted = userService.deleteUser(id);
-            if (deleted) {
-                return ResponseEntity.noContent().build();
-            } else {
-                return ResponseEntity.notFound().build();
-            }
-        } catch (IOException e) {
-            log.error("Error deleting user", e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public CompletableFuture<ResponseEntity<Void>> deleteUser(@PathVariable Long id) {
+        log.info("Deleting user with id: {}", id);
+        return commandPipeline.submitIo(() -> userService.deleteUser(id))
+                .handle((deleted, error) -> {
+                    if (error != null) {
+                        return ioErrorResponse("Error deleting user", error);
+                    }
+                    if (deleted) {
+                        return ResponseEntity.noContent().build();
+                    }
+                    return ResponseEntity.notFound().build();
+                });
     }
 
     @GetMapping("/role/{role}")
@@ -92,4 +125,14 @@ public class UserController {
         List<User> users = userService.getActiveUsers();
         return ResponseEntity.ok(users);
     }
+
+    // An IOException from the service answers 500, anything else propagates as before
+    private <T> ResponseEntity<T> ioErrorResponse(String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UncheckedIOException) {
+            log.error(message, cause.getCause());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+        throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+    }
 }
@@ -0,0 +1,17 @@
+package co.edu.umanizales.library.event;
+
+import co.edu.umanizales.library.model.Book;
+
+/**
+ * Published by the book service once the change it describes has committed. The book
+ * is the live entity (the deleted one for DELETED); an UPDATED event also carries the
+ * ISBN it had before, since the update may change it.
+ */
+public record BookEvent(Type type, Book book, String previousIsbn) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,17 @@
+package co.edu.umanizales.library.event;
+
+import co.edu.umanizales.library.model.FineRecord;
+
+/**
+ * Published by the fine record service once the change it describes has committed.
+ * The fine is the live entity (the deleted one for DELETED); UPDATED covers payments
+ * and accrued increases too.
+ */
+public record FineEvent(Type type, FineRecord fine) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
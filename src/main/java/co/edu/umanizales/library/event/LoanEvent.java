@@ -0,0 +1,34 @@
+package co.edu.umanizales.library.event;
+
+import co.edu.umanizales.library.model.Loan;
+
+import java.time.LocalDate;
+
+/**
+ * Published by the loan service once the change it describes has committed. It carries
+ * the loan's values at that moment, since the loan itself keeps changing.
+ *
+ * RETURN_UNDONE and DELETED carry the return date the loan had before the change, so
+ * listeners can take back what they counted for it.
+ */
+public record LoanEvent(Type type, long loanId, long userId, String isbn, Long categoryId,
+                        LocalDate loanDate, LocalDate dueDate, LocalDate returnDate) {
+
+    public enum Type {
+        CHECKED_OUT,
+        RETURNED,
+        RETURN_UNDONE,
+        RENEWED,            // due date changed
+        DELETED
+    }
+
+    public static LoanEvent of(Type type, Loan loan, LocalDate returnDate) {
+        Long categoryId = loan.getBook().getCategory() != null ? loan.getBook().getCategory().getId() : null;
+        return new LoanEvent(type, loan.getId(), loan.getUser().getId(), loan.getBook().getIsbn(), categoryId,
+                loan.getLoanDate(), loan.getDueDate(), returnDate);
+    }
+
+    public static LoanEvent of(Type type, Loan loan) {
+        return of(type, loan, loan.getReturnDate());
+    }
+}
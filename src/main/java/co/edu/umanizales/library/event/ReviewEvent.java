@@ -0,0 +1,31 @@
+package co.edu.umanizales.library.event;
+
+import co.edu.umanizales.library.model.Review;
+
+import java.time.LocalDate;
+
+/**
+ * Published by the review service once the change it describes has committed. An
+ * UPDATED event also carries the ISBN the review had before, since it may have moved
+ * to another book.
+ */
+public record ReviewEvent(Type type, long reviewId, Long userId, String isbn, String previousIsbn,
+                          int rating, LocalDate reviewDate) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static ReviewEvent of(Type type, Review review, String previousIsbn) {
+        Long userId = review.getUser() != null ? review.getUser().getId() : null;
+        String isbn = review.getBook() != null ? review.getBook().getIsbn() : null;
+        return new ReviewEvent(type, review.getId(), userId, isbn, previousIsbn, review.getRating(),
+                review.getReviewDate());
+    }
+
+    public static ReviewEvent of(Type type, Review review) {
+        return of(type, review, null);
+    }
+}
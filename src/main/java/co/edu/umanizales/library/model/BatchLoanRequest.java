@@ -0,0 +1,14 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchLoanRequest {
+    private long userId;
+    private List<String> isbns;
+}
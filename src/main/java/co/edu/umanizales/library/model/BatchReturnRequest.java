@@ -0,0 +1,13 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchReturnRequest {
+    private List<Long> loanIds;
+}
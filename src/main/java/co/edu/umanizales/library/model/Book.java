@@ -1,14 +1,20 @@
 package co.edu.umanizales.library.model;
 
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Book {
+    private static final AtomicIntegerFieldUpdater<Book> AVAILABLE_COPIES =
+            AtomicIntegerFieldUpdater.newUpdater(Book.class, "availableCopies");
+
     private String isbn;
     private String title;
     private List<Author> authors;
@@ -16,8 +22,15 @@ public class Book {
     private int publicationYear;
     private int edition;
     private Category category;
-    private int availableCopies;
+    // No setter: only the CAS below changes it, so a bean copy or restore cannot overwrite checkouts
+    @Setter(AccessLevel.NONE)
+    private volatile int availableCopies;
     private int totalCopies;
     private String location;
     private String description;
+
+    // Lock-free update used by the checkout, return and copy-adjustment paths
+    public boolean compareAndSetAvailableCopies(int expected, int updated) {
+        return AVAILABLE_COPIES.compareAndSet(this, expected, updated);
+    }
 }
@@ -0,0 +1,18 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CirculationBucket {
+    private LocalDate periodStart;                 // the day, the Monday of the week or the first of the month
+    private long checkouts;
+    private long returns;
+    private Map<Long, Long> checkoutsByCategory;   // category id (0 = none) -> checkouts, non-zero only
+    private Map<Long, Long> returnsByCategory;
+}
@@ -0,0 +1,20 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CirculationStats {
+    private LocalDate from;
+    private LocalDate to;
+    private String granularity;        // day, week or month
+    private Long categoryId;           // null for all categories
+    private long totalCheckouts;
+    private long totalReturns;
+    private List<CirculationBucket> buckets;
+}
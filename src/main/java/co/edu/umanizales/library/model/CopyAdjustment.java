@@ -0,0 +1,13 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyAdjustment {
+    private String isbn;
+    private int delta; // positive to add copies, negative to remove them
+}
@@ -0,0 +1,14 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyAdjustmentRejection {
+    private int index;     // position of the row in the request
+    private String isbn;
+    private String reason;
+}
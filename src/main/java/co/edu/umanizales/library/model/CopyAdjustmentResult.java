@@ -0,0 +1,15 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CopyAdjustmentResult {
+    private Map<String, Integer> applied;  // isbn -> resulting available copies
+    private List<CopyAdjustmentRejection> rejected;  // one entry per rejected row
+}
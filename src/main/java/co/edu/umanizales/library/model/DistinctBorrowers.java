@@ -0,0 +1,19 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.YearMonth;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctBorrowers {
+    private YearMonth from;
+    private YearMonth to;
+    private Long categoryId;                 // null for all categories
+    private long estimate;                   // distinct borrowers over the whole range
+    private double relativeStandardError;    // of every estimate; ~95% fall within twice this
+    private Map<YearMonth, Long> byMonth;    // distinct borrowers of each month
+}
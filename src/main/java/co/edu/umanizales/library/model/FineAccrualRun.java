@@ -0,0 +1,22 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FineAccrualRun {
+    private LocalDate asOf;              // fines accrue up to this day
+    private LocalDateTime startedAt;
+    private long durationMillis;
+    private int scannedLoans;
+    private int overdueLoans;
+    private int created;                 // new LATE_RETURN fines, also for days after a paid one
+    private int updated;                 // unpaid fines whose amount grew
+    private int unchanged;               // already fined up to the accrued amount
+    private double totalAccrued;         // what this run added to fines, not their new totals
+}
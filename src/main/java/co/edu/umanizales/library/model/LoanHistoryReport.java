@@ -0,0 +1,25 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanHistoryReport {
+    private LocalDate from;              // loans made between these days (inclusive)
+    private LocalDate to;
+    private Long categoryId;             // null for all categories
+    private Long userId;                 // null for all patrons
+    private long loans;
+    private long returned;
+    private long returnedLate;           // returned after their due date
+    private long active;
+    private long overdue;                // active and past their due date today
+    private double averageDaysOut;       // of returned loans
+    private long distinctTitles;
+    private long rowsScanned;
+    private long scanMicros;
+}
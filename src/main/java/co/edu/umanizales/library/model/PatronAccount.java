@@ -0,0 +1,19 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatronAccount {
+    private long userId;
+    private UserRole role;
+    private int activeLoans;
+    private int overdueLoans;
+    private double unpaidFines;
+    private int maxLoans;           // limit for the role
+    private boolean canBorrow;
+    private String blockedReason;   // null when the patron can borrow
+}
@@ -0,0 +1,18 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PatronDashboard {
+    private long userId;
+    private String name;
+    private PatronAccount account;          // counts, overdue loans and unpaid total
+    private List<Loan> activeLoans;         // by due date
+    private List<FineRecord> unpaidFines;   // by due date
+    private List<Review> recentReviews;     // newest first
+}
@@ -0,0 +1,14 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Recommendation {
+    private String isbn;
+    private String title;   // null if the book no longer exists
+    private double score;   // co-borrowers for "also borrowed", estimated Jaccard similarity (0-1) for "similar"
+}
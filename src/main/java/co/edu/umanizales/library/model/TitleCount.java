@@ -0,0 +1,15 @@
+package co.edu.umanizales.library.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TitleCount {
+    private String isbn;
+    private String title;   // null if the book no longer exists
+    private long count;     // estimated for day/week/month windows, exact for "all"
+    private long error;     // how much the count may overestimate (0 when exact)
+}
@@ -2,14 +2,17 @@ package co.edu.umanizales.library.service;
 
 import co.edu.umanizales.library.model.Author;
 import java.util.List;
+import java.util.Map;
 
 public interface AuthorService {
     List<Author> getAllAuthors();
     Author getAuthorById(long id);
     List<Author> searchAuthors(String query);
+    Map<String, Object> getSearchCacheStats();
     Author createAuthor(Author author);
     Author updateAuthor(long id, Author author);
     boolean deleteAuthor(long id);
+    long getVersion();
     void saveToFile();
     void loadFromFile();
 }
@@ -1,20 +1,31 @@
 package co.edu.umanizales.library.service;
 
 import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.CopyAdjustment;
+import co.edu.umanizales.library.model.CopyAdjustmentResult;
 import java.util.List;
+import java.util.Map;
 
 public interface BookService {
     List<Book> getAllBooks();
     Book getBookByIsbn(String isbn);
+    List<Book> getBooksByIsbns(List<String> isbns);
     List<Book> searchBooks(String query);
+    Map<String, Object> getSearchCacheStats();
     Book createBook(Book book);
     Book updateBook(String isbn, Book book);
     boolean deleteBook(String isbn);
     boolean increaseAvailableCopies(String isbn, int count);
     boolean decreaseAvailableCopies(String isbn, int count);
+    boolean removeLostCopies(String isbn, int count);
+    boolean takeCopies(Map<String, Integer> countsByIsbn);
+    void restoreCopies(Map<String, Integer> countsByIsbn);
+    CopyAdjustmentResult adjustCopies(List<CopyAdjustment> adjustments);
     List<Book> getBooksByAuthor(long authorId);
     List<Book> getBooksByPublisher(long publisherId);
     List<Book> getBooksByCategory(long categoryId);
+    long getRevision(String isbn);
+    long getVersion();
     void saveToFile();
     void loadFromFile();
 }
@@ -10,6 +10,7 @@ public interface CategoryService {
     Category createCategory(Category category);
     Category updateCategory(long id, Category category);
     boolean deleteCategory(long id);
+    long getVersion();
     void saveToFile();
     void loadFromFile();
 }
@@ -0,0 +1,12 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.CirculationStats;
+import co.edu.umanizales.library.model.DistinctBorrowers;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+
+public interface CirculationStatsService {
+    CirculationStats getCirculation(LocalDate from, LocalDate to, String granularity, Long categoryId);
+    DistinctBorrowers getDistinctBorrowers(YearMonth from, YearMonth to, Long categoryId);
+}
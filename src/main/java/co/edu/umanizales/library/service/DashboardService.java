@@ -0,0 +1,7 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.PatronDashboard;
+
+public interface DashboardService {
+    PatronDashboard getDashboard(long userId);
+}
@@ -1,6 +1,8 @@
 package co.edu.umanizales.library.service;
 
+import co.edu.umanizales.library.model.FineAccrualRun;
 import co.edu.umanizales.library.model.FineRecord;
+import java.time.LocalDate;
 import java.util.List;
 
 public interface FineRecordService {
@@ -13,6 +15,9 @@ public interface FineRecordService {
     boolean deleteFineRecord(long id);
     boolean markAsPaid(long id);
     double calculateTotalFinesByUser(long userId);
+    FineAccrualRun accrueOverdueFines(LocalDate asOf);
+    FineRecord chargeLateReturn(long loanId, LocalDate returnDate);
+    FineAccrualRun getLastAccrualRun();
     void saveToFile();
     void loadFromFile();
 }
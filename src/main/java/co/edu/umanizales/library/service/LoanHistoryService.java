@@ -0,0 +1,9 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.LoanHistoryReport;
+
+import java.time.LocalDate;
+
+public interface LoanHistoryService {
+    LoanHistoryReport getReport(LocalDate from, LocalDate to, Long categoryId, Long userId);
+}
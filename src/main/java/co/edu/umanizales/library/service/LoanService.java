@@ -6,10 +6,14 @@ import java.util.List;
 public interface LoanService {
     List<Loan> getAllLoans();
     Loan getLoanById(long id);
+    List<Loan> getLoansByIds(List<Long> ids);
     Loan createLoan(Loan loan);
+    List<Loan> createLoans(long userId, List<String> isbns);
     Loan updateLoan(long id, Loan loan);
     boolean deleteLoan(long id);
     boolean returnLoan(long id);
+    boolean returnLoan(long id, boolean restoreCopy);
+    List<Loan> returnLoans(List<Long> ids);
     List<Loan> getLoansByUserId(long userId);
     List<Loan> getLoansByBookId(String bookId);
     void saveToFile();
@@ -0,0 +1,14 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.PatronAccount;
+import co.edu.umanizales.library.model.User;
+import java.time.LocalDate;
+
+public interface PatronAccountService {
+    PatronAccount getAccount(long userId);
+    void checkCanBorrow(User user, int count);
+    void loanOpened(long userId, LocalDate dueDate);
+    void loanClosed(long userId, LocalDate dueDate);
+    void unpaidFinesChanged(long userId, double delta);
+    double getUnpaidFines(long userId);
+}
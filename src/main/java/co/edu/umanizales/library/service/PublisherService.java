@@ -8,4 +8,5 @@ public interface PublisherService {
     Publisher createPublisher(Publisher publisher);
     Publisher updatePublisher(long id, Publisher publisher);
     boolean deletePublisher(long id);
+    long getVersion();
 }
@@ -0,0 +1,9 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.Recommendation;
+import java.util.List;
+
+public interface RecommendationService {
+    List<Recommendation> getAlsoBorrowed(String isbn, int limit);
+    List<Recommendation> getSimilar(String isbn, int limit);
+}
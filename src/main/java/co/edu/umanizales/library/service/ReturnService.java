@@ -9,4 +9,5 @@ public interface ReturnService {
     Return createReturn(Return returnObj);
     Return updateReturn(long id, Return returnObj);
     boolean deleteReturn(long id);
+    Return processReturn(Return returnObj);
 }
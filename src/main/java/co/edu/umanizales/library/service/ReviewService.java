@@ -3,6 +3,7 @@ package co.edu.umanizales.library.service;
 import co.edu.umanizales.library.model.Review;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 public interface ReviewService {
     List<Review> getAllReviews();
@@ -14,4 +15,5 @@ public interface ReviewService {
     List<Review> getReviewsByBookId(Long bookId);
     List<Review> getReviewsByRating(int rating);
     double getAverageRatingByBookId(Long bookId);
+    Map<String, Map<String, Long>> getSingleFlightStats();
 }
@@ -0,0 +1,9 @@
+package co.edu.umanizales.library.service;
+
+import co.edu.umanizales.library.model.TitleCount;
+import java.util.List;
+
+public interface TrendingService {
+    List<TitleCount> getTopBorrowed(String window, int limit);
+    List<TitleCount> getTopReviewed(String window, int limit);
+}
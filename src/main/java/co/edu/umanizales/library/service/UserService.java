@@ -6,6 +6,7 @@ import java.util.List;
 public interface UserService {
     List<User> getAllUsers();
     User getUserById(Long id);
+    List<User> getUsersByIds(List<Long> ids);
     User createUser(User user) throws IOException;
     User updateUser(Long id, User userDetails) throws IOException;
     boolean deleteUser(Long id) throws IOException;
@@ -2,6 +2,11 @@ package co.edu.umanizales.library.service.impl;
 
 import co.edu.umanizales.library.model.Author;
 import co.edu.umanizales.library.service.AuthorService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SearchCache;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.UnitOfWork;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -10,38 +15,73 @@ import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AuthorServiceImpl implements AuthorService {
-    private final List<Author> authors = new ArrayList<>();
-    private final Map<Long, Author> authorMap = new HashMap<>();
+    private final SnapshotStore<Long, Author> authors = new SnapshotStore<>();
     private final AtomicLong idCounter = new AtomicLong(1);
     private static final String CSV_FILE = "data/authors.csv";
 
-    public AuthorServiceImpl() {
+    // Search results by lowercased query, invalidated per author on changes
+    private final SearchCache<List<Author>> searchCache;
+
+    public AuthorServiceImpl(PersistenceQueue persistenceQueue,
+                             @Value("${library.search-cache.size:1000}") int searchCacheSize) {
+        this.searchCache = new SearchCache<>(searchCacheSize);
         loadFromFile();
+        authors.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<Author> getAllAuthors() {
-        return new ArrayList<>(authors);
+        return authors.values();
     }
 
     @Override
     public Author getAuthorById(long id) {
-        return authorMap.get(id);
+        return authors.get(id);
     }
 
     @Override
     public List<Author> searchAuthors(String query) {
-        String lowerQuery = query.toLowerCase();
-        List<Author> result = new ArrayList<>();
-        for (Author author : authors) {
-            String name = author.getName() != null ? author.getName().toLowerCase() : "";
-            String bio = author.getBiography() != null ? author.getBiography().toLowerCase() : "";
-            String nat = author.getNationality() != null ? author.getNationality().toLowerCase() : "";
-            if (name.contains(lowerQuery) || bio.contains(lowerQuery) || nat.contains(lowerQuery)) {
-                result.add(author);
+        return new ArrayList<>(searchCache.get(query.toLowerCase(), lowerQuery -> {
+            List<Author> result = new ArrayList<>();
+            for (Author author : authors.values()) {
+                if (matches(searchFields(author), lowerQuery)) {
+                    result.add(author);
+                }
+            }
+            return List.copyOf(result);
+        }));
+    }
+
+    @Override
+    public Map<String, Object> getSearchCacheStats() {
+        return searchCache.getStats();
+    }
+
+    private List<String> searchFields(Author author) {
+        if (author == null) {
+            return List.of();
+        }
+        return List.of(
+                author.getName() != null ? author.getName().toLowerCase() : "",
+                author.getBiography() != null ? author.getBiography().toLowerCase() : "",
+                author.getNationality() != null ? author.getNationality().toLowerCase() : "");
+    }
+
+    private static boolean matches(List<String> fields, String lowerQuery) {
+        for (String field : fields) {
+            if (field.contains(lowerQuery)) {
+                return true;
             }
         }
-        return result;
+        return false;
+    }
+
+    // Drops only the cached queries whose result contained the author or would now contain it;
+    // again if the unit of work rolls back and the old author returns
+    private void invalidateSearches(List<String> before, List<String> after) {
+        Runnable invalidate = () -> searchCache.invalidate(lowerQuery -> matches(before, lowerQuery) || matches(after, lowerQuery));
+        invalidate.run();
+        UnitOfWork.onRollback(invalidate);
     }
 
     @Override
@@ -57,22 +97,27 @@ public class AuthorServiceImpl implements AuthorService {
             throw new IllegalArgumentException("Author nationality is required");
         }
 
-        // Set ID and creation timestamp
-        long newId = idCounter.getAndIncrement();
-        author.setId(newId);
-        
-        // Add to collections
-        authors.add(author);
-        authorMap.put(newId, author);
-        
-        saveToFile();
-        return author;
+        Author created = authors.write(working -> {
+            // Set ID and add to the collection
+            long newId = idCounter.getAndIncrement();
+            author.setId(newId);
+            working.put(newId, author);
+            return author;
+        });
+        invalidateSearches(List.of(), searchFields(created));
+        return created;
     }
 
     @Override
     public Author updateAuthor(long id, Author updatedAuthor) {
-        Author existingAuthor = getAuthorById(id);
-        if (existingAuthor != null) {
+        // Authors are updated in place, so remember what they matched before
+        List<String> before = new ArrayList<>();
+        Author updated = authors.write(working -> {
+            Author existingAuthor = working.edit(id);
+            if (existingAuthor == null) {
+                return null;
+            }
+            before.addAll(searchFields(existingAuthor));
             // Update fields
             if (updatedAuthor.getName() != null) {
                 existingAuthor.setName(updatedAuthor.getName());
@@ -89,39 +134,45 @@ public class AuthorServiceImpl implements AuthorService {
             if (updatedAuthor.getNationality() != null) {
                 existingAuthor.setNationality(updatedAuthor.getNationality());
             }
-            saveToFile();
             return existingAuthor;
+        });
+        if (updated != null) {
+            invalidateSearches(before, searchFields(updated));
         }
-        return null;
+        return updated;
     }
 
     @Override
     public boolean deleteAuthor(long id) {
-        boolean removed = false;
-        Iterator<Author> it = authors.iterator();
-        while (it.hasNext()) {
-            Author a = it.next();
-            if (a.getId() == id) {
-                it.remove();
-                removed = true;
-                break;
-            }
+        Author deleted = authors.write(working -> working.remove(id));
+        if (deleted == null) {
+            return false;
         }
-        if (removed) {
-            authorMap.remove(id);
-            saveToFile();
-        }
-        return removed;
+        invalidateSearches(searchFields(deleted), List.of());
+        return true;
+    }
+
+    @Override
+    public long getVersion() {
+        return authors.version();
     }
 
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        authors.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    private void writeToFile(List<Author> authorList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Write header
             writer.println("id,name,email,phoneNumber,biography,nationality");
             
             // Write data
-            for (Author author : authors) {
+            for (Author author : authorList) {
                 writer.println(String.format("%d,%s,%s,%s,%s,%s",
                         author.getId(),
                         escapeCsvField(author.getName()),
@@ -150,8 +201,7 @@ public class AuthorServiceImpl implements AuthorService {
                 return;
             }
 
-            authors.clear();
-            authorMap.clear();
+            Map<Long, Author> authorMap = new LinkedHashMap<>();
             long maxId = 0;
 
             while ((line = reader.readLine()) != null) {
@@ -173,7 +223,6 @@ public class AuthorServiceImpl implements AuthorService {
                         author.setBiography(biography);
                         author.setNationality(nationality);
 
-                        authors.add(author);
                         authorMap.put(id, author);
 
                         if (id > maxId) {
@@ -184,7 +233,8 @@ public class AuthorServiceImpl implements AuthorService {
                     }
                 }
             }
-            
+
+            authors.load(authorMap);
             idCounter.set(maxId + 1);
         } catch (IOException e) {
             throw new RuntimeException("Error loading authors from CSV file", e);
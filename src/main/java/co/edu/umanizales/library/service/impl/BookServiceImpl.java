@@ -1,59 +1,144 @@
 package co.edu.umanizales.library.service.impl;
 
+import co.edu.umanizales.library.event.BookEvent;
 import co.edu.umanizales.library.model.*;
 import co.edu.umanizales.library.service.AuthorService;
 import co.edu.umanizales.library.service.BookService;
 import co.edu.umanizales.library.service.CategoryService;
 import co.edu.umanizales.library.service.PublisherService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SearchCache;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.UnitOfWork;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class BookServiceImpl implements BookService {
-    private final Map<String, Book> bookMap = new HashMap<>();
+    private final SnapshotStore<String, Book> books = new SnapshotStore<>();
     private static final String CSV_FILE = "data/books.csv";
 
+    // Per-ISBN revision, bumped once a change to that book is visible to readers
+    private final Map<String, Long> revisions = new ConcurrentHashMap<>();
+
+    // Copy counters change in place without publishing a snapshot; this counts those
+    // changes for the catalog version
+    private final AtomicLong copiesVersion = new AtomicLong();
+
+    // Search results by lowercased query. Results hold the live Book objects, so copy
+    // changes show up without invalidation; only title, ISBN and description matter.
+    private final SearchCache<List<Book>> searchCache;
+
     // Dependencies for related services
     private final AuthorService authorService;
     private final PublisherService publisherService;
     private final CategoryService categoryService;
+    private final ApplicationEventPublisher events;
+    private final PersistenceQueue persistenceQueue;
 
     public BookServiceImpl(AuthorService authorService, 
                           PublisherService publisherService,
-                          CategoryService categoryService) {
+                          CategoryService categoryService,
+                          PersistenceQueue persistenceQueue,
+                          ApplicationEventPublisher events,
+                          @Value("${library.search-cache.size:1000}") int searchCacheSize) {
         this.authorService = authorService;
         this.publisherService = publisherService;
         this.categoryService = categoryService;
+        this.events = events;
+        this.persistenceQueue = persistenceQueue;
+        this.searchCache = new SearchCache<>(searchCacheSize);
         loadFromFile();
+        books.validateWith(book -> {
+            if (book.getAvailableCopies() < 0 || book.getAvailableCopies() > book.getTotalCopies()) {
+                throw new IllegalStateException("Invalid available copies for book " + book.getIsbn());
+            }
+        });
+        books.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<Book> getAllBooks() {
-        return new ArrayList<>(bookMap.values());
+        return books.values();
     }
 
     @Override
     public Book getBookByIsbn(String isbn) {
-        return bookMap.get(isbn);
+        return books.get(isbn);
     }
 
     @Override
-    public List<Book> searchBooks(String query) {
-        String lowerQuery = query.toLowerCase();
+    public List<Book> getBooksByIsbns(List<String> isbns) {
+        Map<String, Book> bookMap = books.snapshot().entries();
         List<Book> result = new ArrayList<>();
-        for (Book book : bookMap.values()) {
-            String title = book.getTitle() != null ? book.getTitle().toLowerCase() : "";
-            String isbn = book.getIsbn() != null ? book.getIsbn().toLowerCase() : "";
-            String desc = book.getDescription() != null ? book.getDescription().toLowerCase() : "";
-            if (title.contains(lowerQuery) || isbn.contains(lowerQuery) || desc.contains(lowerQuery)) {
+        for (String isbn : isbns) {
+            Book book = bookMap.get(isbn);
+            if (book != null) {
                 result.add(book);
             }
         }
         return result;
     }
 
+    @Override
+    public List<Book> searchBooks(String query) {
+        return new ArrayList<>(searchCache.get(query.toLowerCase(), lowerQuery -> {
+            List<Book> result = new ArrayList<>();
+            for (Book book : books.values()) {
+                if (matches(searchFields(book), lowerQuery)) {
+                    result.add(book);
+                }
+            }
+            return List.copyOf(result);
+        }));
+    }
+
+    @Override
+    public Map<String, Object> getSearchCacheStats() {
+        return searchCache.getStats();
+    }
+
+    private List<String> searchFields(Book book) {
+        if (book == null) {
+            return List.of();
+        }
+        return List.of(
+                book.getTitle() != null ? book.getTitle().toLowerCase() : "",
+                book.getIsbn() != null ? book.getIsbn().toLowerCase() : "",
+                book.getDescription() != null ? book.getDescription().toLowerCase() : "");
+    }
+
+    private static boolean matches(List<String> fields, String lowerQuery) {
+        for (String field : fields) {
+            if (field.contains(lowerQuery)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Bumps the revisions and drops only the cached queries whose result contained the book
+    // or would now contain it; again if the unit of work rolls back and the old book returns
+    private void bookChanged(List<String> isbns, List<String> before, List<String> after) {
+        Runnable refresh = () -> {
+            isbns.forEach(this::touch);
+            searchCache.invalidate(lowerQuery -> matches(before, lowerQuery) || matches(after, lowerQuery));
+        };
+        refresh.run();
+        UnitOfWork.onRollback(refresh);
+    }
+
+    // Listeners only hear about changes that commit
+    private void publish(BookEvent event) {
+        UnitOfWork.afterCommit(() -> events.publishEvent(event));
+    }
+
     @Override
     public Book createBook(Book book) {
         // Validate required fields
@@ -70,98 +155,320 @@ public class BookServiceImpl implements BookService {
             throw new IllegalArgumentException("Available copies cannot be negative");
         }
 
-        // Validate ISBN uniqueness
-        if (bookMap.containsKey(book.getIsbn())) {
-            throw new IllegalArgumentException("A book with this ISBN already exists");
-        }
-
         // Validate related entities exist
         validateBookRelations(book);
 
         // Ensure available copies don't exceed total copies
         if (book.getAvailableCopies() > book.getTotalCopies()) {
-            book.setAvailableCopies(book.getTotalCopies());
+            book.compareAndSetAvailableCopies(book.getAvailableCopies(), book.getTotalCopies());
         }
 
-        bookMap.put(book.getIsbn(), book);
-        saveToFile();
-        return book;
+        Book created = books.write(working -> {
+            // Validate ISBN uniqueness
+            if (working.containsKey(book.getIsbn())) {
+                throw new IllegalArgumentException("A book with this ISBN already exists");
+            }
+            working.put(book.getIsbn(), book);
+            return book;
+        });
+        bookChanged(List.of(created.getIsbn()), List.of(), searchFields(created));
+        publish(new BookEvent(BookEvent.Type.CREATED, created, null));
+        return created;
     }
 
     @Override
     public Book updateBook(String isbn, Book book) {
-        if (!bookMap.containsKey(isbn)) {
+        if (books.get(isbn) == null) {
             return null;
         }
-
-        // If ISBN is being changed, check for uniqueness
-        if (!isbn.equals(book.getIsbn()) && bookMap.containsKey(book.getIsbn())) {
-            throw new IllegalArgumentException("A book with this ISBN already exists");
+        if (book.getIsbn() == null || book.getIsbn().trim().isEmpty()) {
+            throw new IllegalArgumentException("ISBN is required");
+        }
+        if (book.getTotalCopies() <= 0) {
+            throw new IllegalArgumentException("Total copies must be greater than 0");
         }
 
         // Validate related entities exist
         validateBookRelations(book);
 
-        // Ensure available copies don't exceed total copies
-        if (book.getAvailableCopies() > book.getTotalCopies()) {
-            book.setAvailableCopies(book.getTotalCopies());
-        }
+        List<String> before = new ArrayList<>();
+        Book updated = books.write(working -> {
+            Book existing = working.get(isbn);
+            if (existing == null) {
+                return null;
+            }
+            before.addAll(searchFields(existing));
+
+            // If ISBN is being changed, check for uniqueness
+            if (!isbn.equals(book.getIsbn()) && working.containsKey(book.getIsbn())) {
+                throw new IllegalArgumentException("A book with this ISBN already exists");
+            }
 
-        // If ISBN changed, remove old entry
-        if (!isbn.equals(book.getIsbn())) {
-            bookMap.remove(isbn);
+            // The stored book is updated in place, so loans and concurrent checkouts keep
+            // working on the same counter. Available copies are never taken from the
+            // request: a change of total copies moves them by the same delta.
+            Book previous = new Book();
+            copyDetails(existing, previous);
+            int delta = book.getTotalCopies() - existing.getTotalCopies();
+            if (delta < 0 && !tryTake(existing, -delta)) {
+                throw new IllegalStateException("Total copies cannot be less than the copies on loan");
+            }
+            copyDetails(book, existing);
+            if (delta > 0) {
+                putBack(existing, delta);
+            }
+            // Undo actions run newest first: the old total is back before the counter shifts back
+            UnitOfWork.onRollback(() -> copyDetails(previous, existing));
+
+            if (!isbn.equals(book.getIsbn())) {
+                working.remove(isbn);
+            }
+            working.put(existing.getIsbn(), existing);
+            return existing;
+        });
+        if (updated != null) {
+            bookChanged(List.of(isbn, updated.getIsbn()), before, searchFields(updated));
+            publish(new BookEvent(BookEvent.Type.UPDATED, updated, isbn));
         }
+        return updated;
+    }
 
-        bookMap.put(book.getIsbn(), book);
-        saveToFile();
-        return book;
+    // Everything but the available copies, which only change through the counter
+    private static void copyDetails(Book from, Book to) {
+        to.setIsbn(from.getIsbn());
+        to.setTitle(from.getTitle());
+        to.setAuthors(from.getAuthors());
+        to.setPublisher(from.getPublisher());
+        to.setPublicationYear(from.getPublicationYear());
+        to.setEdition(from.getEdition());
+        to.setCategory(from.getCategory());
+        to.setTotalCopies(from.getTotalCopies());
+        to.setLocation(from.getLocation());
+        to.setDescription(from.getDescription());
     }
 
     @Override
     public boolean deleteBook(String isbn) {
-        if (bookMap.containsKey(isbn)) {
-            bookMap.remove(isbn);
-            saveToFile();
-            return true;
+        Book deleted = books.write(working -> working.remove(isbn));
+        if (deleted == null) {
+            return false;
         }
-        return false;
+        bookChanged(List.of(isbn), searchFields(deleted), List.of());
+        publish(new BookEvent(BookEvent.Type.DELETED, deleted, null));
+        return true;
     }
 
     @Override
     public boolean increaseAvailableCopies(String isbn, int count) {
         Book book = getBookByIsbn(isbn);
-        if (book != null) {
-            int newAvailable = book.getAvailableCopies() + count;
-            if (newAvailable > book.getTotalCopies()) {
-                book.setAvailableCopies(book.getTotalCopies());
-            } else {
-                book.setAvailableCopies(newAvailable);
-            }
-            saveToFile();
-            return true;
+        if (book == null) {
+            return false;
         }
-        return false;
+        putBack(book, count);
+        persistCopies();
+        return true;
     }
 
     @Override
     public boolean decreaseAvailableCopies(String isbn, int count) {
         Book book = getBookByIsbn(isbn);
-        if (book != null) {
-            int newAvailable = book.getAvailableCopies() - count;
-            if (newAvailable < 0) {
+        if (book == null || !tryTake(book, count)) {
+            return false;
+        }
+        persistCopies();
+        return true;
+    }
+
+    @Override
+    public boolean removeLostCopies(String isbn, int count) {
+        return books.write(working -> {
+            Book book = working.get(isbn);
+            if (book == null) {
                 return false;
             }
-            book.setAvailableCopies(newAvailable);
-            saveToFile();
+            // Lost copies were on loan, so the available copies stay as they are
+            int total = book.getTotalCopies();
+            if (total - book.getAvailableCopies() < count) {
+                throw new IllegalStateException("Cannot lose more copies than are on loan");
+            }
+            book.setTotalCopies(total - count);
+            UnitOfWork.onRollback(() -> book.setTotalCopies(total));
+            touch(isbn);
+            working.put(isbn, book);
             return true;
+        });
+    }
+
+    @Override
+    public boolean takeCopies(Map<String, Integer> countsByIsbn) {
+        Map<String, Integer> taken = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : countsByIsbn.entrySet()) {
+            Book book = getBookByIsbn(entry.getKey());
+            if (book == null || !tryTake(book, entry.getValue())) {
+                // All-or-nothing: give back what this call already took
+                for (Map.Entry<String, Integer> done : taken.entrySet()) {
+                    putBack(getBookByIsbn(done.getKey()), done.getValue());
+                }
+                return false;
+            }
+            taken.put(entry.getKey(), entry.getValue());
         }
-        return false;
+        persistCopies();
+        return true;
+    }
+
+    @Override
+    public void restoreCopies(Map<String, Integer> countsByIsbn) {
+        for (Map.Entry<String, Integer> entry : countsByIsbn.entrySet()) {
+            Book book = getBookByIsbn(entry.getKey());
+            if (book != null) {
+                putBack(book, entry.getValue());
+            }
+        }
+        persistCopies();
+    }
+
+    @Override
+    public CopyAdjustmentResult adjustCopies(List<CopyAdjustment> adjustments) {
+        Map<String, Integer> applied = new LinkedHashMap<>();
+        List<CopyAdjustmentRejection> rejected = new ArrayList<>();
+        if (adjustments == null) {
+            return new CopyAdjustmentResult(applied, rejected);
+        }
+
+        // Group row indexes by ISBN so each title is adjusted all-or-nothing
+        Map<String, List<Integer>> rowsByIsbn = new LinkedHashMap<>();
+        for (int i = 0; i < adjustments.size(); i++) {
+            CopyAdjustment adjustment = adjustments.get(i);
+            if (adjustment == null || adjustment.getIsbn() == null || adjustment.getIsbn().trim().isEmpty()) {
+                rejected.add(new CopyAdjustmentRejection(i, adjustment != null ? adjustment.getIsbn() : null,
+                        "ISBN is required"));
+                continue;
+            }
+            rowsByIsbn.computeIfAbsent(adjustment.getIsbn(), k -> new ArrayList<>()).add(i);
+        }
+
+        books.write(working -> {
+            for (Map.Entry<String, List<Integer>> entry : rowsByIsbn.entrySet()) {
+                String isbn = entry.getKey();
+                Book book = working.get(isbn);
+                if (book == null) {
+                    reject(rejected, entry.getValue(), isbn, "Book not found");
+                    continue;
+                }
+
+                // Same rules as increase/decreaseAvailableCopies, applied row by row and
+                // published with a single CAS so concurrent checkouts are never lost
+                while (true) {
+                    int current = book.getAvailableCopies();
+                    int available = current;
+                    boolean valid = true;
+                    for (int row : entry.getValue()) {
+                        int delta = adjustments.get(row).getDelta();
+                        if (delta >= 0) {
+                            available = increasedCopies(book, available, delta);
+                        } else {
+                            available += delta;
+                            if (available < 0) {
+                                valid = false;
+                                break;
+                            }
+                        }
+                    }
+                    if (!valid) {
+                        reject(rejected, entry.getValue(), isbn, "Not enough available copies");
+                        break;
+                    }
+                    if (book.compareAndSetAvailableCopies(current, available)) {
+                        touch(isbn);
+                        int delta = available - current;
+                        UnitOfWork.onRollback(() -> shift(book, -delta));
+                        applied.put(isbn, available);
+                        working.markModified();
+                        break;
+                    }
+                }
+            }
+            return null;
+        });
+        rejected.sort(Comparator.comparingInt(CopyAdjustmentRejection::getIndex));
+        return new CopyAdjustmentResult(applied, rejected);
+    }
+
+    // A title is adjusted all-or-nothing, so all of its rows are rejected together
+    private static void reject(List<CopyAdjustmentRejection> rejected, List<Integer> rows, String isbn, String reason) {
+        for (int row : rows) {
+            rejected.add(new CopyAdjustmentRejection(row, isbn, reason));
+        }
+    }
+
+    private int increasedCopies(Book book, int available, int count) {
+        // Available copies never exceed total copies
+        return Math.min(available + count, book.getTotalCopies());
+    }
+
+    // Decrement-if-enough: fails instead of going below zero
+    private boolean tryTake(Book book, int count) {
+        int current;
+        do {
+            current = book.getAvailableCopies();
+            if (current < count) {
+                return false;
+            }
+        } while (!book.compareAndSetAvailableCopies(current, current - count));
+        copiesChanged(book);
+        UnitOfWork.onRollback(() -> shift(book, count));
+        return true;
+    }
+
+    // Increment-up-to-total
+    private void putBack(Book book, int count) {
+        int current;
+        int updated;
+        do {
+            current = book.getAvailableCopies();
+            updated = increasedCopies(book, current, count);
+        } while (!book.compareAndSetAvailableCopies(current, updated));
+        copiesChanged(book);
+        int added = updated - current;
+        UnitOfWork.onRollback(() -> shift(book, -added));
+    }
+
+    // Undoes a change to the available copies, staying within 0..total
+    private void shift(Book book, int delta) {
+        int current;
+        do {
+            current = book.getAvailableCopies();
+        } while (!book.compareAndSetAvailableCopies(current,
+                Math.max(0, Math.min(current + delta, book.getTotalCopies()))));
+        copiesChanged(book);
+        // Runs when a unit rolls back, after the change it undoes may have been written
+        persistenceQueue.markDirty(CSV_FILE, this::writeCurrentBooks);
+    }
+
+    private void touch(String isbn) {
+        revisions.merge(isbn, 1L, Long::sum);
+    }
+
+    private void copiesChanged(Book book) {
+        touch(book.getIsbn());
+        copiesVersion.incrementAndGet();
+    }
+
+    // Counter changes are not worth a new snapshot of the catalog: the books file is only
+    // marked dirty, once the change commits, and written with the counters of that moment
+    private void persistCopies() {
+        UnitOfWork.afterCommit(() -> persistenceQueue.markDirty(CSV_FILE, this::writeCurrentBooks));
+    }
+
+    private void writeCurrentBooks() {
+        writeToFile(books.values());
     }
 
     @Override
     public List<Book> getBooksByAuthor(long authorId) {
         List<Book> result = new ArrayList<>();
-        for (Book book : bookMap.values()) {
+        for (Book book : books.values()) {
             List<Author> authors = book.getAuthors();
             if (authors != null) {
                 for (Author author : authors) {
@@ -178,7 +485,7 @@ public class BookServiceImpl implements BookService {
     @Override
     public List<Book> getBooksByPublisher(long publisherId) {
         List<Book> result = new ArrayList<>();
-        for (Book book : bookMap.values()) {
+        for (Book book : books.values()) {
             if (book.getPublisher() != null && book.getPublisher().getId() == publisherId) {
                 result.add(book);
             }
@@ -189,7 +496,7 @@ public class BookServiceImpl implements BookService {
     @Override
     public List<Book> getBooksByCategory(long categoryId) {
         List<Book> result = new ArrayList<>();
-        for (Book book : bookMap.values()) {
+        for (Book book : books.values()) {
             if (book.getCategory() != null && book.getCategory().getId() == categoryId) {
                 result.add(book);
             }
@@ -197,14 +504,35 @@ public class BookServiceImpl implements BookService {
         return result;
     }
 
+    @Override
+    public long getRevision(String isbn) {
+        return revisions.getOrDefault(isbn, 0L);
+    }
+
+    @Override
+    public long getVersion() {
+        // Books embed their authors, publisher and category, so any of them changing changes the books.
+        // Every term only grows, so the sum does too.
+        return books.version() + copiesVersion.get() + authorService.getVersion() + publisherService.getVersion()
+                + categoryService.getVersion();
+    }
+
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        books.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    private void writeToFile(List<Book> bookList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Write header
             writer.println("isbn,title,authors,publisherId,publicationYear,edition,categoryId,availableCopies,totalCopies,location,description");
             
             // Write data
-            for (Book book : bookMap.values()) {
+            for (Book book : bookList) {
                 StringBuilder authorsBuilder = new StringBuilder();
                 List<Author> authorList = book.getAuthors();
                 if (authorList != null) {
@@ -250,7 +578,7 @@ public class BookServiceImpl implements BookService {
                 return;
             }
 
-            bookMap.clear();
+            Map<String, Book> bookMap = new LinkedHashMap<>();
 
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",", -1);
@@ -296,6 +624,8 @@ public class BookServiceImpl implements BookService {
                     }
                 }
             }
+
+            books.load(bookMap);
         } catch (IOException e) {
             throw new RuntimeException("Error loading books from CSV file", e);
         }
@@ -2,6 +2,8 @@ package co.edu.umanizales.library.service.impl;
 
 import co.edu.umanizales.library.model.Category;
 import co.edu.umanizales.library.service.CategoryService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -10,28 +12,24 @@ import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CategoryServiceImpl implements CategoryService {
-    private final List<Category> categories = new ArrayList<>();
-    private final Map<String, Category> nameIndex = new HashMap<>();
+    private final SnapshotStore<Long, Category> categories = new SnapshotStore<>();
+    private volatile Map<String, Category> nameIndex = Map.of(); // rebuilt on every write
     private final AtomicLong idCounter = new AtomicLong(1);
     private static final String CSV_FILE = "data/categories.csv";
 
-    public CategoryServiceImpl() {
+    public CategoryServiceImpl(PersistenceQueue persistenceQueue) {
         loadFromFile();
+        categories.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<Category> getAllCategories() {
-        return new ArrayList<>(categories);
+        return categories.values();
     }
 
     @Override
     public Category getCategoryById(long id) {
-        for (Category category : categories) {
-            if (category.getId() == id) {
-                return category;
-            }
-        }
-        return null;
+        return categories.get(id);
     }
 
     @Override
@@ -46,75 +44,82 @@ public class CategoryServiceImpl implements CategoryService {
             throw new IllegalArgumentException("Category name is required");
         }
 
-        // Validate name uniqueness
-        if (nameIndex.containsKey(category.getName().toLowerCase())) {
-            throw new IllegalArgumentException("Category with this name already exists");
-        }
+        return categories.write(working -> {
+            // Validate name uniqueness
+            if (nameIndex.containsKey(category.getName().toLowerCase())) {
+                throw new IllegalArgumentException("Category with this name already exists");
+            }
 
-        // Set ID and creation timestamp
-        category.setId(idCounter.getAndIncrement());
-        
-        // Add to collections
-        categories.add(category);
-        nameIndex.put(category.getName().toLowerCase(), category);
-        
-        saveToFile();
-        return category;
+            // Set ID and add to the collection
+            category.setId(idCounter.getAndIncrement());
+            working.put(category.getId(), category);
+            nameIndex = indexByName(working.values());
+            return category;
+        });
     }
 
     @Override
     public Category updateCategory(long id, Category updatedCategory) {
-        Category existingCategory = getCategoryById(id);
-        if (existingCategory != null) {
+        return categories.write(working -> {
+            Category existingCategory = working.edit(id);
+            if (existingCategory == null) {
+                return null;
+            }
+
             // If name is being changed, check for uniqueness
             if (!existingCategory.getName().equalsIgnoreCase(updatedCategory.getName()) &&
                     nameIndex.containsKey(updatedCategory.getName().toLowerCase())) {
                 throw new IllegalArgumentException("Another category with this name already exists");
             }
 
-            // Remove old name from index if changed
-            if (!existingCategory.getName().equalsIgnoreCase(updatedCategory.getName())) {
-                nameIndex.remove(existingCategory.getName().toLowerCase());
-                nameIndex.put(updatedCategory.getName().toLowerCase(), existingCategory);
-            }
-
             // Update fields
             existingCategory.setName(updatedCategory.getName());
             existingCategory.setDescription(updatedCategory.getDescription());
-
-            saveToFile();
+            nameIndex = indexByName(working.values());
             return existingCategory;
-        }
-        return null;
+        });
     }
 
     @Override
     public boolean deleteCategory(long id) {
-        boolean removed = false;
-        Iterator<Category> it = categories.iterator();
-        while (it.hasNext()) {
-            Category c = it.next();
-            if (c.getId() == id) {
-                it.remove();
-                removed = true;
-                nameIndex.remove(c.getName().toLowerCase());
-                break;
+        return categories.write(working -> {
+            if (working.remove(id) == null) {
+                return false;
             }
-        }
-        if (removed) {
-            saveToFile();
-        }
-        return removed;
+            nameIndex = indexByName(working.values());
+            return true;
+        });
+    }
+
+    @Override
+    public long getVersion() {
+        return categories.version();
     }
 
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        categories.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    private Map<String, Category> indexByName(Collection<Category> categoryList) {
+        Map<String, Category> index = new HashMap<>();
+        for (Category category : categoryList) {
+            index.put(category.getName().toLowerCase(), category);
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+    private void writeToFile(List<Category> categoryList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Write header
             writer.println("id,name,description");
             
             // Write data
-            for (Category category : categories) {
+            for (Category category : categoryList) {
                 writer.println(String.format("%d,%s,%s",
                         category.getId(),
                         escapeCsvField(category.getName()),
@@ -140,8 +145,7 @@ public class CategoryServiceImpl implements CategoryService {
                 return;
             }
 
-            categories.clear();
-            nameIndex.clear();
+            Map<Long, Category> categoryMap = new LinkedHashMap<>();
             long maxId = 0;
 
             while ((line = reader.readLine()) != null) {
@@ -153,8 +157,7 @@ public class CategoryServiceImpl implements CategoryService {
                         String description = parts.length > 2 ? unescapeCsvField(parts[2]) : "";
 
                         Category category = new Category(id, name, description);
-                        categories.add(category);
-                        nameIndex.put(name.toLowerCase(), category);
+                        categoryMap.put(id, category);
 
                         if (id > maxId) {
                             maxId = id;
@@ -164,7 +167,9 @@ public class CategoryServiceImpl implements CategoryService {
                     }
                 }
             }
-            
+
+            categories.load(categoryMap);
+            nameIndex = indexByName(categoryMap.values());
             idCounter.set(maxId + 1);
         } catch (IOException e) {
             throw new RuntimeException("Error loading categories from CSV file", e);
@@ -0,0 +1,352 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.CirculationBucket;
+import co.edu.umanizales.library.model.CirculationStats;
+import co.edu.umanizales.library.model.DistinctBorrowers;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.service.CirculationStatsService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.util.HyperLogLog;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Checkout and return counters per day and category, kept up to date from loan events
+ * so circulation queries never scan the loans. Weeks and months are summed from the days
+ * at query time, which is at most a few hundred entries per month per category.
+ *
+ * The counters are persisted to their own file, headed by a watermark of the loans they
+ * count: the number of loans, of returned loans, and the sum of their loan and return
+ * days, kept up to date by the same events. At startup the file is only used if its
+ * watermark matches the one of the loaded loans; if it is missing, older or newer than
+ * the loans, the counters are rebuilt from the loan history in parallel: checkouts on
+ * each loan's loan date, returns on its return date.
+ *
+ * Distinct borrowers are counted with a {@link HyperLogLog} sketch per month and
+ * category (and one per month for all categories), fed by the same checkouts and
+ * rebuilt from the loan history at every startup. A range of months is answered by
+ * merging its sketches, so the cost depends on the number of months, not of patrons.
+ * Sketches cannot forget, so deleted loans still count until the next restart.
+ */
+@Slf4j
+@Service
+public class CirculationStatsServiceImpl implements CirculationStatsService {
+
+    private static final String CSV_FILE = "data/circulation_rollups.csv";
+    private static final long NO_CATEGORY = 0L;
+    private static final long ALL_CATEGORIES = -1L;
+
+    private static final class Counts {
+        final AtomicLong checkouts = new AtomicLong();
+        final AtomicLong returns = new AtomicLong();
+    }
+
+    private record Watermark(long loans, long returned, long days) {
+
+        static Watermark of(List<Loan> loans) {
+            long returned = 0;
+            long days = 0;
+            for (Loan loan : loans) {
+                days += day(loan.getLoanDate());
+                if (loan.isReturned()) {
+                    returned++;
+                    days += day(loan.getReturnDate());
+                }
+            }
+            return new Watermark(loans.size(), returned, days);
+        }
+
+        static Watermark parse(String line) {
+            String[] parts = line.substring(WATERMARK_PREFIX.length()).split(",");
+            return new Watermark(Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+        }
+
+        String format() {
+            return WATERMARK_PREFIX + loans + "," + returned + "," + days;
+        }
+    }
+
+    private static final String WATERMARK_PREFIX = "# loans,returned,days=";
+
+    // epoch day -> category id -> counts
+    private final ConcurrentNavigableMap<Long, Map<Long, Counts>> days = new ConcurrentSkipListMap<>();
+    private final PersistenceQueue persistenceQueue;
+
+    // Events update the counters under the read lock; the file is written from a snapshot
+    // taken under the write lock, so its watermark matches its counts
+    private final ReentrantReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+    private final AtomicLong loanCount = new AtomicLong();
+    private final AtomicLong returnedCount = new AtomicLong();
+    private final AtomicLong daySum = new AtomicLong();
+
+    // month -> category id (or ALL_CATEGORIES) -> distinct borrowers
+    private final Map<YearMonth, Map<Long, HyperLogLog>> borrowers = new ConcurrentHashMap<>();
+    private final int precision;
+
+    public CirculationStatsServiceImpl(LoanService loanService, PersistenceQueue persistenceQueue,
+                                       @Value("${library.stats.distinct-borrowers.precision:12}") int precision) {
+        this.persistenceQueue = persistenceQueue;
+        this.precision = precision;
+        new HyperLogLog(precision); // fail at startup on an invalid precision
+        List<Loan> loans = loanService.getAllLoans();
+        Watermark watermark = Watermark.of(loans);
+        loanCount.set(watermark.loans());
+        returnedCount.set(watermark.returned());
+        daySum.set(watermark.days());
+        if (!loadFromFile(watermark)) {
+            days.clear();
+            rebuild(loans);
+            persistenceQueue.submit(CSV_FILE, this::writeToFile);
+        }
+        loans.parallelStream().forEach(loan -> {
+            if (loan.getUser() != null && loan.getBook() != null) {
+                long category = loan.getBook().getCategory() != null ? loan.getBook().getCategory().getId() : NO_CATEGORY;
+                borrowed(loan.getLoanDate(), category, loan.getUser().getId());
+            }
+        });
+    }
+
+    @EventListener
+    public void onLoanEvent(LoanEvent event) {
+        long category = event.categoryId() != null ? event.categoryId() : NO_CATEGORY;
+        snapshotLock.readLock().lock();
+        try {
+            switch (event.type()) {
+                case CHECKED_OUT -> {
+                    add(event.loanDate(), category, 1, 0);
+                    borrowed(event.loanDate(), category, event.userId());
+                    loanCount.incrementAndGet();
+                    daySum.addAndGet(day(event.loanDate()));
+                }
+                case RETURNED -> {
+                    add(event.returnDate(), category, 0, 1);
+                    returnedCount.incrementAndGet();
+                    daySum.addAndGet(day(event.returnDate()));
+                }
+                case RETURN_UNDONE -> {
+                    add(event.returnDate(), category, 0, -1);
+                    returnedCount.decrementAndGet();
+                    daySum.addAndGet(-day(event.returnDate()));
+                }
+                case DELETED -> {
+                    add(event.loanDate(), category, -1, 0);
+                    add(event.returnDate(), category, 0, -1);
+                    loanCount.decrementAndGet();
+                    daySum.addAndGet(-day(event.loanDate()));
+                    if (event.returnDate() != null) {
+                        returnedCount.decrementAndGet();
+                        daySum.addAndGet(-day(event.returnDate()));
+                    }
+                }
+                case RENEWED -> {
+                    return;
+                }
+            }
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+        persistenceQueue.submit(CSV_FILE, this::writeToFile);
+    }
+
+    @Override
+    public CirculationStats getCirculation(LocalDate from, LocalDate to, String granularity, Long categoryId) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        String unit = granularity.toLowerCase();
+        if (!unit.equals("day") && !unit.equals("week") && !unit.equals("month")) {
+            throw new IllegalArgumentException("Granularity must be day, week or month");
+        }
+
+        // One (empty) bucket per period, so the series has no gaps
+        TreeMap<LocalDate, CirculationBucket> buckets = new TreeMap<>();
+        for (LocalDate start = periodStart(from, unit); !start.isAfter(to); start = nextPeriod(start, unit)) {
+            buckets.put(start, new CirculationBucket(start, 0, 0, new TreeMap<>(), new TreeMap<>()));
+        }
+
+        long totalCheckouts = 0;
+        long totalReturns = 0;
+        for (Map.Entry<Long, Map<Long, Counts>> day : days.subMap(from.toEpochDay(), true, to.toEpochDay(), true).entrySet()) {
+            CirculationBucket bucket = buckets.get(periodStart(LocalDate.ofEpochDay(day.getKey()), unit));
+            for (Map.Entry<Long, Counts> entry : day.getValue().entrySet()) {
+                if (categoryId != null && !categoryId.equals(entry.getKey())) {
+                    continue;
+                }
+                long checkouts = entry.getValue().checkouts.get();
+                long returns = entry.getValue().returns.get();
+                bucket.setCheckouts(bucket.getCheckouts() + checkouts);
+                bucket.setReturns(bucket.getReturns() + returns);
+                if (checkouts != 0) {
+                    bucket.getCheckoutsByCategory().merge(entry.getKey(), checkouts, Long::sum);
+                }
+                if (returns != 0) {
+                    bucket.getReturnsByCategory().merge(entry.getKey(), returns, Long::sum);
+                }
+                totalCheckouts += checkouts;
+                totalReturns += returns;
+            }
+        }
+        return new CirculationStats(from, to, unit, categoryId, totalCheckouts, totalReturns,
+                new ArrayList<>(buckets.values()));
+    }
+
+    @Override
+    public DistinctBorrowers getDistinctBorrowers(YearMonth from, YearMonth to, Long categoryId) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        long category = categoryId != null ? categoryId : ALL_CATEGORIES;
+        HyperLogLog range = new HyperLogLog(precision);
+        Map<YearMonth, Long> byMonth = new TreeMap<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            HyperLogLog sketch = borrowers.getOrDefault(month, Map.of()).get(category);
+            if (sketch == null) {
+                byMonth.put(month, 0L);
+                continue;
+            }
+            byMonth.put(month, sketch.estimate());
+            range.merge(sketch);
+        }
+        return new DistinctBorrowers(from, to, categoryId, range.estimate(), range.relativeStandardError(), byMonth);
+    }
+
+    private void borrowed(LocalDate date, long category, long userId) {
+        if (date == null) {
+            return;
+        }
+        Map<Long, HyperLogLog> month = borrowers.computeIfAbsent(YearMonth.from(date), m -> new ConcurrentHashMap<>());
+        month.computeIfAbsent(category, c -> new HyperLogLog(precision)).add(userId);
+        month.computeIfAbsent(ALL_CATEGORIES, c -> new HyperLogLog(precision)).add(userId);
+    }
+
+    private void add(LocalDate date, long category, long checkouts, long returns) {
+        if (date == null) {
+            return;
+        }
+        Counts counts = days.computeIfAbsent(date.toEpochDay(), d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(category, c -> new Counts());
+        counts.checkouts.addAndGet(checkouts);
+        counts.returns.addAndGet(returns);
+    }
+
+    private void rebuild(List<Loan> loans) {
+        long start = System.currentTimeMillis();
+        loans.parallelStream().forEach(loan -> {
+            long category = loan.getBook() != null && loan.getBook().getCategory() != null
+                    ? loan.getBook().getCategory().getId() : NO_CATEGORY;
+            add(loan.getLoanDate(), category, 1, 0);
+            if (loan.isReturned()) {
+                add(loan.getReturnDate(), category, 0, 1);
+            }
+        });
+        log.info("Rebuilt circulation rollups from {} loans in {} ms", loans.size(), System.currentTimeMillis() - start);
+    }
+
+    private static long day(LocalDate date) {
+        return date != null ? date.toEpochDay() : 0L;
+    }
+
+    private static LocalDate periodStart(LocalDate date, String unit) {
+        return switch (unit) {
+            case "week" -> date.with(DayOfWeek.MONDAY);
+            case "month" -> date.withDayOfMonth(1);
+            default -> date;
+        };
+    }
+
+    private static LocalDate nextPeriod(LocalDate start, String unit) {
+        return switch (unit) {
+            case "week" -> start.plusWeeks(1);
+            case "month" -> start.plusMonths(1);
+            default -> start.plusDays(1);
+        };
+    }
+
+    private void writeToFile() {
+        Watermark watermark;
+        List<String> rows = new ArrayList<>();
+        snapshotLock.writeLock().lock();
+        try {
+            watermark = new Watermark(loanCount.get(), returnedCount.get(), daySum.get());
+            for (Map.Entry<Long, Map<Long, Counts>> day : days.entrySet()) {
+                LocalDate date = LocalDate.ofEpochDay(day.getKey());
+                for (Map.Entry<Long, Counts> entry : new TreeMap<>(day.getValue()).entrySet()) {
+                    rows.add(String.format("%s,%d,%d,%d", date, entry.getKey(),
+                            entry.getValue().checkouts.get(), entry.getValue().returns.get()));
+                }
+            }
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+
+        try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
+            writer.println(watermark.format());
+            writer.println("day,categoryId,checkouts,returns");
+            rows.forEach(writer::println);
+        } catch (IOException e) {
+            throw new RuntimeException("Error saving circulation rollups to CSV file", e);
+        }
+    }
+
+    // False if the file is missing or does not count exactly the given loans
+    private boolean loadFromFile(Watermark expected) {
+        File file = new File(CSV_FILE);
+        if (!file.exists()) {
+            return false;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            if (line == null || !line.startsWith(WATERMARK_PREFIX)) {
+                log.info("Circulation rollups have no watermark, rebuilding them");
+                return false;
+            }
+            Watermark found;
+            try {
+                found = Watermark.parse(line);
+            } catch (RuntimeException e) {
+                return false;
+            }
+            if (!found.equals(expected)) {
+                log.info("Circulation rollups are out of date ({} vs {}), rebuilding them", found, expected);
+                return false;
+            }
+
+            // Skip header
+            line = reader.readLine();
+            if (line == null || !line.startsWith("day")) {
+                return false;
+            }
+
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                if (parts.length >= 4) {
+                    try {
+                        add(LocalDate.parse(parts[0]), Long.parseLong(parts[1]),
+                                Long.parseLong(parts[2]), Long.parseLong(parts[3]));
+                    } catch (Exception e) {
+                        log.warn("Skipping circulation rollup row '{}': {}", line, e.getMessage());
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading circulation rollups from CSV file", e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.FineEvent;
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.event.ReviewEvent;
+import co.edu.umanizales.library.model.*;
+import co.edu.umanizales.library.service.*;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Per-patron view behind the portal dashboard: the patron's active loans, unpaid fines
+ * and reviews, kept by the loan, fine and review events of their mutation paths, so a
+ * dashboard never scans those services. The counters (overdue loans, unpaid total,
+ * whether the patron may borrow) come from {@link PatronAccountService}, which is
+ * maintained the same way.
+ *
+ * Events arrive after their change commits, so a dashboard read right after a write
+ * may briefly miss it. Events do not wait on each other: each one locks only the views
+ * it changes, as readers do. Loan events of a patron are already ordered by the
+ * patron's lock; events of the same fine or review are ordered by computing on its
+ * owner entry.
+ */
+@Service
+public class DashboardServiceImpl implements DashboardService {
+
+    private static final class View {
+        final Map<Long, Loan> activeLoans = new HashMap<>();
+        final Map<Long, FineRecord> unpaidFines = new HashMap<>();
+        final Map<Long, Review> reviews = new HashMap<>();
+    }
+
+    private static final Comparator<Review> NEWEST_FIRST = Comparator.comparing(Review::getReviewDate,
+            Comparator.nullsFirst(Comparator.<LocalDate>naturalOrder())).thenComparingLong(Review::getId).reversed();
+
+    private final UserService userService;
+    private final LoanService loanService;
+    private final ReviewService reviewService;
+    private final PatronAccountService patronAccounts;
+    private final int recentReviews;
+
+    private final Map<Long, View> views = new ConcurrentHashMap<>();
+    // Fines and reviews can be moved to another patron: where each one is filed now
+    private final Map<Long, Long> fineOwners = new ConcurrentHashMap<>();
+    private final Map<Long, Long> reviewOwners = new ConcurrentHashMap<>();
+
+    public DashboardServiceImpl(UserService userService, LoanService loanService, FineRecordService fineRecordService,
+                                ReviewService reviewService, PatronAccountService patronAccounts,
+                                @Value("${library.dashboard.recent-reviews:5}") int recentReviews) {
+        this.userService = userService;
+        this.loanService = loanService;
+        this.reviewService = reviewService;
+        this.patronAccounts = patronAccounts;
+        this.recentReviews = recentReviews;
+
+        for (Loan loan : loanService.getAllLoans()) {
+            if (!loan.isReturned() && loan.getUser() != null) {
+                view(loan.getUser().getId()).activeLoans.put(loan.getId(), loan);
+            }
+        }
+        for (FineRecord fine : fineRecordService.getAllFineRecords()) {
+            fineOwners.compute(fine.getId(), (id, owner) -> fileFine(fine));
+        }
+        for (Review review : reviewService.getAllReviews()) {
+            reviewOwners.compute(review.getId(), (id, owner) -> fileReview(review));
+        }
+    }
+
+    @Override
+    public PatronDashboard getDashboard(long userId) {
+        User user = userService.getUserById(userId);
+        PatronAccount account = patronAccounts.getAccount(userId);
+        if (user == null || account == null) {
+            return null;
+        }
+        View view = view(userId);
+        List<Loan> loans;
+        List<FineRecord> fines;
+        List<Review> reviews;
+        synchronized (view) {
+            loans = new ArrayList<>(view.activeLoans.values());
+            fines = new ArrayList<>(view.unpaidFines.values());
+            reviews = new ArrayList<>(view.reviews.values());
+        }
+        loans.sort(Comparator.comparing(Loan::getDueDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder())));
+        fines.sort(Comparator.comparing(FineRecord::getDueDate, Comparator.nullsLast(Comparator.<LocalDate>naturalOrder())));
+        reviews.sort(NEWEST_FIRST);
+        if (reviews.size() > recentReviews) {
+            reviews = new ArrayList<>(reviews.subList(0, recentReviews));
+        }
+        return new PatronDashboard(userId, user.getName(), account, loans, fines, reviews);
+    }
+
+    @EventListener
+    public void onLoanEvent(LoanEvent event) {
+        View view = view(event.userId());
+        Loan loan = loanService.getLoanById(event.loanId());
+        synchronized (view) {
+            switch (event.type()) {
+                case CHECKED_OUT, RETURN_UNDONE -> {
+                    if (loan != null && !loan.isReturned()) {
+                        view.activeLoans.put(loan.getId(), loan);
+                    }
+                }
+                case RETURNED, DELETED -> view.activeLoans.remove(event.loanId());
+            }
+        }
+    }
+
+    @EventListener
+    public void onFineEvent(FineEvent event) {
+        FineRecord fine = event.fine();
+        fineOwners.compute(fine.getId(), (id, owner) -> {
+            unfile(owner, view -> view.unpaidFines.remove(id));
+            return event.type() != FineEvent.Type.DELETED ? fileFine(fine) : null;
+        });
+    }
+
+    @EventListener
+    public void onReviewEvent(ReviewEvent event) {
+        reviewOwners.compute(event.reviewId(), (id, owner) -> {
+            unfile(owner, view -> view.reviews.remove(id));
+            if (event.type() == ReviewEvent.Type.DELETED) {
+                return null;
+            }
+            Review review = reviewService.getReviewById(id);
+            return review != null ? fileReview(review) : null;
+        });
+    }
+
+    // Files the fine under its patron, whom it returns; null if it is not shown
+    private Long fileFine(FineRecord fine) {
+        if (fine.isPaid() || fine.getUser() == null) {
+            return null;
+        }
+        long userId = fine.getUser().getId();
+        View view = view(userId);
+        synchronized (view) {
+            view.unpaidFines.put(fine.getId(), fine);
+        }
+        return userId;
+    }
+
+    private Long fileReview(Review review) {
+        if (review.getUser() == null) {
+            return null;
+        }
+        long userId = review.getUser().getId();
+        View view = view(userId);
+        synchronized (view) {
+            view.reviews.put(review.getId(), review);
+        }
+        return userId;
+    }
+
+    private void unfile(Long userId, Consumer<View> removal) {
+        if (userId == null) {
+            return;
+        }
+        View view = view(userId);
+        synchronized (view) {
+            removal.accept(view);
+        }
+    }
+
+    private View view(long userId) {
+        return views.computeIfAbsent(userId, id -> new View());
+    }
+}
@@ -0,0 +1,36 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.service.FineRecordService;
+import co.edu.umanizales.library.util.CommandPipeline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Accrues late fines for overdue loans every day ({@code library.fines.accrual-cron},
+ * 01:00 by default; "-" disables it). Runs as a regular command, so in single-writer
+ * mode it is applied by the writer thread like any request.
+ */
+@Slf4j
+@Component
+public class FineAccrualJob {
+
+    private final FineRecordService fineRecordService;
+    private final CommandPipeline commandPipeline;
+
+    public FineAccrualJob(FineRecordService fineRecordService, CommandPipeline commandPipeline) {
+        this.fineRecordService = fineRecordService;
+        this.commandPipeline = commandPipeline;
+    }
+
+    @Scheduled(cron = "${library.fines.accrual-cron:0 0 1 * * *}")
+    public void accrueDaily() {
+        try {
+            commandPipeline.submit(() -> fineRecordService.accrueOverdueFines(LocalDate.now())).join();
+        } catch (RuntimeException e) {
+            log.error("Scheduled fine accrual failed", e);
+        }
+    }
+}
@@ -1,52 +1,117 @@
 package co.edu.umanizales.library.service.impl;
 
+import co.edu.umanizales.library.event.FineEvent;
 import co.edu.umanizales.library.model.*;
 import co.edu.umanizales.library.service.FineRecordService;
 import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.PatronAccountService;
 import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.StripedLock;
+import co.edu.umanizales.library.util.UnitOfWork;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+@Slf4j
 @Service
 public class FineRecordServiceImpl implements FineRecordService {
-    private final List<FineRecord> fineRecords = new ArrayList<>();
+    private final SnapshotStore<Long, FineRecord> fineRecords = new SnapshotStore<>();
     private final AtomicLong idCounter = new AtomicLong(1);
     private static final String CSV_FILE = "data/fine_records.csv";
 
     private final UserService userService;
     private final LoanService loanService;
+    private final StripedLock stripedLock;
+    private final PatronAccountService patronAccounts;
+    private final ApplicationEventPublisher events;
 
-    public FineRecordServiceImpl(UserService userService, LoanService loanService) {
+    // Overdue-fine accrual
+    private record Accrual(Loan loan, User user, double amount) {
+    }
+
+    private enum Upsert {
+        CREATED,
+        UPDATED,
+        UNCHANGED
+    }
+
+    // Late-return fines of one loan: an unpaid one if any, the newest, and the total fined
+    private record LateFines(FineRecord open, FineRecord latest, double fined) {
+        static LateFines of(FineRecord fine) {
+            return new LateFines(fine.isPaid() ? null : fine, fine, fine.getAmount());
+        }
+
+        LateFines plus(LateFines other) {
+            return new LateFines(open != null ? open : other.open,
+                    latest.getId() >= other.latest.getId() ? latest : other.latest, fined + other.fined);
+        }
+
+        // The fine that stands for the loan: the one still to pay, or else the last one paid
+        FineRecord current() {
+            return open != null ? open : latest;
+        }
+    }
+
+    private final double dailyRate;
+    private final int paymentDays;
+    private volatile FineAccrualRun lastAccrualRun;
+
+    public FineRecordServiceImpl(UserService userService, LoanService loanService, StripedLock stripedLock,
+                                 PatronAccountService patronAccounts, PersistenceQueue persistenceQueue,
+                                 ApplicationEventPublisher events,
+                                 @Value("${library.fines.daily-rate:0.5}") double dailyRate,
+                                 @Value("${library.fines.payment-days:30}") int paymentDays) {
         this.userService = userService;
         this.loanService = loanService;
+        this.stripedLock = stripedLock;
+        this.patronAccounts = patronAccounts;
+        this.events = events;
+        this.dailyRate = dailyRate;
+        this.paymentDays = paymentDays;
         loadFromFile();
+        for (FineRecord r : fineRecords.values()) {
+            unpaidChanged(r, 1);
+        }
+        fineRecords.validateWith(record -> {
+            if (record.getUser() == null || record.getLoan() == null || record.getAmount() < 0) {
+                throw new IllegalStateException("Invalid fine record " + record.getId());
+            }
+        });
+        fineRecords.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<FineRecord> getAllFineRecords() {
-        return new ArrayList<>(fineRecords);
+        return fineRecords.values();
     }
 
     @Override
     public FineRecord getFineRecordById(long id) {
-        for (FineRecord r : fineRecords) {
-            if (r.getId() == id) {
-                return r;
-            }
-        }
-        return null;
+        return fineRecords.get(id);
     }
 
     @Override
     public List<FineRecord> getFineRecordsByUserId(long userId) {
         List<FineRecord> result = new ArrayList<>();
-        for (FineRecord r : fineRecords) {
+        for (FineRecord r : fineRecords.values()) {
             if (r.getUser() != null && r.getUser().getId() == userId) {
                 result.add(r);
             }
@@ -57,7 +122,7 @@ public class FineRecordServiceImpl implements FineRecordService {
     @Override
     public List<FineRecord> getUnpaidFineRecordsByUserId(long userId) {
         List<FineRecord> result = new ArrayList<>();
-        for (FineRecord r : fineRecords) {
+        for (FineRecord r : fineRecords.values()) {
             if (r.getUser() != null && r.getUser().getId() == userId && !r.isPaid()) {
                 result.add(r);
             }
@@ -87,20 +152,36 @@ public class FineRecordServiceImpl implements FineRecordService {
             throw new IllegalArgumentException("Loan not found");
         }
 
-        long newId = idCounter.getAndIncrement();
-        fineRecord.setId(newId);
-        if (fineRecord.getIssueDate() == null) {
-            fineRecord.setIssueDate(LocalDate.now());
-        }
-        fineRecords.add(fineRecord);
-        saveToFile();
-        return fineRecord;
+        return stripedLock.withLocks(lockKeys(fineRecord), () -> fineRecords.write(working -> {
+            long newId = idCounter.getAndIncrement();
+            fineRecord.setId(newId);
+            if (fineRecord.getIssueDate() == null) {
+                fineRecord.setIssueDate(LocalDate.now());
+            }
+            working.put(newId, fineRecord);
+            unpaidChanged(fineRecord, 1);
+            publish(FineEvent.Type.CREATED, fineRecord);
+            return fineRecord;
+        }));
     }
 
     @Override
     public FineRecord updateFineRecord(long id, FineRecord updated) {
-        FineRecord existing = getFineRecordById(id);
-        if (existing != null) {
+        FineRecord current = fineRecords.get(id);
+        if (current == null) {
+            return null;
+        }
+
+        // Lock both the old and the new patron/title when a fine is reassigned
+        Set<String> keys = lockKeys(current);
+        keys.addAll(lockKeys(updated));
+        return stripedLock.withLocks(keys, () -> fineRecords.write(working -> {
+            FineRecord existing = working.edit(id);
+            if (existing == null) {
+                return null;
+            }
+            // The fine may change patron, amount or paid state: take out what it counted before
+            unpaidChanged(existing, -1);
             // Update fields
             if (updated.getUser() != null) {
                 User uOpt = userService.getUserById(updated.getUser().getId());
@@ -122,62 +203,248 @@ public class FineRecordServiceImpl implements FineRecordService {
             existing.setDueDate(updated.getDueDate());
             existing.setPaid(updated.isPaid());
             existing.setPaymentDate(updated.getPaymentDate());
-            saveToFile();
+            unpaidChanged(existing, 1);
+            publish(FineEvent.Type.UPDATED, existing);
             return existing;
-        }
-        return null;
+        }));
     }
 
     @Override
     public boolean deleteFineRecord(long id) {
-        boolean removed = false;
-        Iterator<FineRecord> it = fineRecords.iterator();
-        while (it.hasNext()) {
-            FineRecord r = it.next();
-            if (r.getId() == id) {
-                it.remove();
-                removed = true;
-                break;
-            }
-        }
-        if (removed) {
-            saveToFile();
+        FineRecord current = fineRecords.get(id);
+        if (current == null) {
+            return false;
         }
-        return removed;
+        return stripedLock.withLocks(lockKeys(current), () -> fineRecords.write(working -> {
+            FineRecord removed = working.remove(id);
+            if (removed == null) {
+                return false;
+            }
+            unpaidChanged(removed, -1);
+            publish(FineEvent.Type.DELETED, removed);
+            return true;
+        }));
     }
 
     @Override
     public boolean markAsPaid(long id) {
-        FineRecord r = getFineRecordById(id);
-        if (r != null) {
-            if (!r.isPaid()) {
-                r.setPaid(true);
-                r.setPaymentDate(LocalDate.now());
-                saveToFile();
-                return true;
-            }
+        FineRecord current = fineRecords.get(id);
+        if (current == null) {
             return false;
         }
-        return false;
+
+        return stripedLock.withLocks(lockKeys(current), () -> fineRecords.write(working -> {
+            FineRecord r = working.get(id);
+            if (r == null || r.isPaid()) {
+                return false;
+            }
+            working.edit(id);
+            unpaidChanged(r, -1);
+            r.setPaid(true);
+            r.setPaymentDate(LocalDate.now());
+            publish(FineEvent.Type.UPDATED, r);
+            return true;
+        }));
     }
 
     @Override
     public double calculateTotalFinesByUser(long userId) {
-        double total = 0.0;
-        for (FineRecord r : fineRecords) {
-            if (r.getUser() != null && r.getUser().getId() == userId && !r.isPaid()) {
-                total += r.getAmount();
+        return patronAccounts.getUnpaidFines(userId);
+    }
+
+    // Adds (sign 1) or takes out (sign -1) an unpaid fine from its patron's total
+    private void unpaidChanged(FineRecord record, int sign) {
+        if (record.getUser() != null && !record.isPaid()) {
+            patronAccounts.unpaidFinesChanged(record.getUser().getId(), sign * record.getAmount());
+        }
+    }
+
+    // Listeners only hear about changes that commit
+    private void publish(FineEvent.Type type, FineRecord record) {
+        FineEvent event = new FineEvent(type, record);
+        UnitOfWork.afterCommit(() -> events.publishEvent(event));
+    }
+
+    @Override
+    public FineAccrualRun accrueOverdueFines(LocalDate asOf) {
+        if (asOf.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Fines cannot be accrued as of a future date");
+        }
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.nanoTime();
+        List<Loan> loans = loanService.getAllLoans();
+
+        // Lock every patron and title with an overdue loan, so none of them is returned,
+        // renewed or fined meanwhile
+        Set<String> keys = new LinkedHashSet<>();
+        List<Long> overdueIds = new ArrayList<>();
+        for (Loan loan : loans) {
+            if (isOverdue(loan, asOf)) {
+                keys.addAll(StripedLock.loanKeys(loan));
+                overdueIds.add(loan.getId());
+            }
+        }
+
+        FineAccrualRun run = new FineAccrualRun();
+        run.setAsOf(asOf);
+        run.setStartedAt(startedAt);
+        run.setScannedLoans(loans.size());
+
+        stripedLock.withLocks(keys, () -> {
+            // Evaluated again under the locks: the loan may have been returned since the scan
+            List<Accrual> accruals = new ArrayList<>();
+            for (long loanId : overdueIds) {
+                Loan loan = loanService.getLoanById(loanId);
+                if (loan == null || !isOverdue(loan, asOf)) {
+                    continue;
+                }
+                User user = userService.getUserById(loan.getUser().getId());
+                if (user == null) {
+                    log.warn("Skipping fine accrual for loan {}: user {} not found", loanId, loan.getUser().getId());
+                    continue;
+                }
+                accruals.add(new Accrual(loan, user, accruedAmount(loan.getDueDate(), asOf)));
+            }
+            run.setOverdueLoans(accruals.size());
+
+            // All upserts go into one write, so the CSV is written once for the whole run
+            return fineRecords.write(working -> {
+                Map<Long, LateFines> lateFines = lateFinesByLoan(working.values());
+                for (Accrual accrual : accruals) {
+                    LateFines existing = lateFines.get(accrual.loan().getId());
+                    // Only what this run adds: the fines already held the rest
+                    double increase = cents(accrual.amount() - (existing != null ? existing.fined() : 0));
+                    switch (upsertLateFine(working, existing, accrual, asOf)) {
+                        case CREATED -> {
+                            run.setCreated(run.getCreated() + 1);
+                            run.setTotalAccrued(cents(run.getTotalAccrued() + increase));
+                        }
+                        case UPDATED -> {
+                            run.setUpdated(run.getUpdated() + 1);
+                            run.setTotalAccrued(cents(run.getTotalAccrued() + increase));
+                        }
+                        case UNCHANGED -> run.setUnchanged(run.getUnchanged() + 1);
+                    }
+                }
+                return null;
+            });
+        });
+
+        run.setDurationMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        lastAccrualRun = run;
+        log.info("Fine accrual as of {}: {} overdue loans, {} created, {} updated in {} ms",
+                asOf, run.getOverdueLoans(), run.getCreated(), run.getUpdated(), run.getDurationMillis());
+        return run;
+    }
+
+    @Override
+    public FineRecord chargeLateReturn(long loanId, LocalDate returnDate) {
+        Loan loan = loanService.getLoanById(loanId);
+        if (loan == null) {
+            throw new IllegalArgumentException("Loan not found");
+        }
+        if (loan.getDueDate() == null || !loan.getDueDate().isBefore(returnDate)) {
+            return null;
+        }
+        User user = userService.getUserById(loan.getUser().getId());
+        if (user == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+        Accrual accrual = new Accrual(loan, user, accruedAmount(loan.getDueDate(), returnDate));
+
+        // Same fine as accrual: the one already accrued for the loan is raised to the final amount
+        return stripedLock.withLocks(StripedLock.loanKeys(loan), () -> fineRecords.write(working -> {
+            upsertLateFine(working, lateFinesByLoan(working.values()).get(loanId), accrual, returnDate);
+            LateFines fines = lateFinesByLoan(working.values()).get(loanId);
+            return fines != null ? fines.current() : null;
+        }));
+    }
+
+    private static Map<Long, LateFines> lateFinesByLoan(Collection<FineRecord> records) {
+        Map<Long, LateFines> lateFines = new HashMap<>();
+        for (FineRecord r : records) {
+            if (r.getReason() == FineReason.LATE_RETURN && r.getLoan() != null) {
+                lateFines.merge(r.getLoan().getId(), LateFines.of(r), LateFines::plus);
             }
         }
-        return total;
+        return lateFines;
+    }
+
+    private static boolean isOverdue(Loan loan, LocalDate asOf) {
+        return !loan.isReturned() && loan.getUser() != null && loan.getDueDate() != null
+                && loan.getDueDate().isBefore(asOf);
+    }
+
+    // Brings the late-return fines of the loan up to the accrued amount: the unpaid one is
+    // raised, or, once everything fined so far is paid, a new fine is created for the rest
+    private Upsert upsertLateFine(SnapshotStore.WorkingCopy<Long, FineRecord> working, LateFines existing,
+                                  Accrual accrual, LocalDate asOf) {
+        double due = cents(accrual.amount() - (existing != null ? existing.fined() : 0));
+        if (due <= 0) {
+            return Upsert.UNCHANGED;
+        }
+        if (existing == null || existing.open() == null) {
+            long newId = idCounter.getAndIncrement();
+            FineRecord fine = new FineRecord(newId, accrual.user(), accrual.loan(),
+                    due, FineReason.LATE_RETURN, asOf, asOf.plusDays(paymentDays), false, null);
+            working.put(newId, fine);
+            unpaidChanged(fine, 1);
+            publish(FineEvent.Type.CREATED, fine);
+            return Upsert.CREATED;
+        }
+        FineRecord open = existing.open();
+        working.edit(open.getId());
+        unpaidChanged(open, -1);
+        open.setAmount(cents(open.getAmount() + due));
+        unpaidChanged(open, 1);
+        publish(FineEvent.Type.UPDATED, open);
+        return Upsert.UPDATED;
+    }
+
+    @Override
+    public FineAccrualRun getLastAccrualRun() {
+        return lastAccrualRun;
+    }
+
+    private double accruedAmount(LocalDate dueDate, LocalDate asOf) {
+        long overdueDays = ChronoUnit.DAYS.between(dueDate, asOf);
+        return cents(overdueDays * dailyRate);
+    }
+
+    // Rounded to cents, as stored in the CSV
+    private static double cents(double amount) {
+        return Math.round(amount * 100) / 100.0;
+    }
+
+    // Patron and title a fine belongs to, so it is serialized with loan operations on them
+    private Set<String> lockKeys(FineRecord record) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (record.getUser() != null) {
+            keys.add(StripedLock.userKey(record.getUser().getId()));
+        }
+        if (record.getLoan() != null) {
+            Loan loan = loanService.getLoanById(record.getLoan().getId());
+            if (loan != null) {
+                keys.addAll(StripedLock.loanKeys(loan));
+            }
+        }
+        return keys;
     }
 
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        fineRecords.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    private void writeToFile(List<FineRecord> records) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Header
             writer.println("id,userId,loanId,amount,reason,issueDate,dueDate,paid,paymentDate");
-            for (FineRecord r : fineRecords) {
+            for (FineRecord r : records) {
                 String userId = r.getUser() != null ? String.valueOf(r.getUser().getId()) : "";
                 String loanId = r.getLoan() != null ? String.valueOf(r.getLoan().getId()) : "";
                 String line = String.format("%d,%s,%s,%.2f,%s,%s,%s,%b,%s",
@@ -208,7 +475,7 @@ public class FineRecordServiceImpl implements FineRecordService {
             if (line == null || !line.startsWith("id")) {
                 return;
             }
-            fineRecords.clear();
+            Map<Long, FineRecord> recordMap = new LinkedHashMap<>();
             long maxId = 0;
             while ((line = reader.readLine()) != null) {
                 String[] parts = line.split(",", -1);
@@ -243,7 +510,7 @@ public class FineRecordServiceImpl implements FineRecordService {
                         }
 
                         FineRecord record = new FineRecord(id, user, loan, amount, reason, issueDate, dueDate, paid, paymentDate);
-                        fineRecords.add(record);
+                        recordMap.put(id, record);
                         if (id > maxId) {
                             maxId = id;
                         }
@@ -252,6 +519,7 @@ public class FineRecordServiceImpl implements FineRecordService {
                     }
                 }
             }
+            fineRecords.load(recordMap);
             idCounter.set(maxId + 1);
         } catch (IOException e) {
             throw new RuntimeException("Error loading fine records from CSV file", e);
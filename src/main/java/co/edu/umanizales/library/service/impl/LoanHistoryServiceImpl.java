@@ -0,0 +1,291 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.LoanHistoryReport;
+import co.edu.umanizales.library.service.LoanHistoryService;
+import co.edu.umanizales.library.service.LoanService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * Loan history in columns for report scans: one primitive array per field (loan, due
+ * and return dates as epoch days, patron ids, book ordinals) and bit sets for returned
+ * and deleted loans, so a scan reads a few contiguous arrays instead of following every
+ * Loan to its User, Book and LocalDates. Books are numbered in a small dimension table
+ * that also holds their category.
+ *
+ * Rows are appended in loan id order at startup and then by loan events; returns,
+ * renewals and deletions update their row in place. Scans split the rows into chunks
+ * that run in parallel under the read lock, each a plain loop over the arrays.
+ *
+ * Loan events are queued to a single consumer thread, which applies everything queued
+ * under one write lock, so a checkout never waits behind a report scan. A report read
+ * right after a loan change may briefly miss it.
+ */
+@Slf4j
+@Service
+public class LoanHistoryServiceImpl implements LoanHistoryService {
+
+    private static final int CHUNK_ROWS = 1 << 16;
+    private static final int NO_DAY = Integer.MIN_VALUE;          // missing loan or return date
+    private static final int NO_DUE_DAY = Integer.MAX_VALUE;      // missing due date: never late
+    private static final long NO_CATEGORY = 0L;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock
+    private int size;
+    private long[] userIds = new long[1024];
+    private int[] bookOrdinals = new int[1024];
+    private int[] loanDays = new int[1024];
+    private int[] dueDays = new int[1024];
+    private int[] returnDays = new int[1024];
+    private final BitSet returned = new BitSet();
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> rowByLoanId = new HashMap<>();
+
+    // book dimension, guarded by lock
+    private final Map<String, Integer> ordinalByIsbn = new HashMap<>();
+    private long[] categoryByOrdinal = new long[256];
+
+    private final BlockingQueue<LoanEvent> pending = new LinkedBlockingQueue<>();
+    private final Thread consumer;
+
+    public LoanHistoryServiceImpl(LoanService loanService) {
+        long start = System.currentTimeMillis();
+        List<Loan> loans = new ArrayList<>(loanService.getAllLoans());
+        loans.sort(Comparator.comparingLong(Loan::getId));
+        lock.writeLock().lock();
+        try {
+            for (Loan loan : loans) {
+                if (loan.getUser() == null || loan.getBook() == null) {
+                    continue;
+                }
+                Long categoryId = loan.getBook().getCategory() != null ? loan.getBook().getCategory().getId() : null;
+                int row = append(loan.getId(), loan.getUser().getId(), loan.getBook().getIsbn(), categoryId,
+                        loan.getLoanDate(), loan.getDueDate());
+                if (loan.isReturned()) {
+                    returned.set(row);
+                    returnDays[row] = day(loan.getReturnDate(), NO_DAY);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Loaded {} loans into the columnar history in {} ms", size, System.currentTimeMillis() - start);
+
+        consumer = new Thread(this::consume, "library-loan-history");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        consumer.interrupt();
+    }
+
+    @EventListener
+    public void onLoanEvent(LoanEvent event) {
+        pending.add(event);
+    }
+
+    private void consume() {
+        List<LoanEvent> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+                pending.drainTo(batch);
+                lock.writeLock().lock();
+                try {
+                    for (LoanEvent event : batch) {
+                        try {
+                            apply(event);
+                        } catch (RuntimeException e) {
+                            log.error("Error updating the loan history", e);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Runs on the consumer thread, which holds the write lock
+    private void apply(LoanEvent event) {
+        if (event.type() == LoanEvent.Type.CHECKED_OUT) {
+            append(event.loanId(), event.userId(), event.isbn(), event.categoryId(), event.loanDate(), event.dueDate());
+            return;
+        }
+        Integer row = rowByLoanId.get(event.loanId());
+        if (row == null) {
+            return;
+        }
+        switch (event.type()) {
+            case RETURNED -> {
+                returned.set(row);
+                returnDays[row] = day(event.returnDate(), NO_DAY);
+            }
+            case RETURN_UNDONE -> {
+                returned.clear(row);
+                returnDays[row] = NO_DAY;
+            }
+            case RENEWED -> dueDays[row] = day(event.dueDate(), NO_DUE_DAY);
+            case DELETED -> {
+                deleted.set(row);
+                rowByLoanId.remove(event.loanId());
+            }
+        }
+    }
+
+    @Override
+    public LoanHistoryReport getReport(LocalDate from, LocalDate to, Long categoryId, Long userId) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' must not be after 'to'");
+        }
+        int fromDay = (int) from.toEpochDay();
+        int toDay = (int) to.toEpochDay();
+        int today = (int) LocalDate.now().toEpochDay();
+
+        lock.readLock().lock();
+        try {
+            long start = System.nanoTime();
+            // Resolve the category to the set of book ordinals once, so rows only test a bit
+            BitSet books = null;
+            if (categoryId != null) {
+                books = new BitSet();
+                for (int ordinal = 0; ordinal < ordinalByIsbn.size(); ordinal++) {
+                    if (categoryByOrdinal[ordinal] == categoryId) {
+                        books.set(ordinal);
+                    }
+                }
+            }
+            BitSet wanted = books;
+            int rows = size;
+            Tally total = IntStream.range(0, (rows + CHUNK_ROWS - 1) / CHUNK_ROWS).parallel()
+                    .mapToObj(chunk -> scan(chunk * CHUNK_ROWS, Math.min(rows, (chunk + 1) * CHUNK_ROWS),
+                            fromDay, toDay, today, wanted, userId))
+                    .reduce(Tally::merge)
+                    .orElseGet(Tally::new);
+            long scanMicros = (System.nanoTime() - start) / 1000;
+
+            double averageDaysOut = total.returnedWithDate == 0 ? 0.0 : (double) total.daysOut / total.returnedWithDate;
+            return new LoanHistoryReport(from, to, categoryId, userId, total.loans, total.returned, total.returnedLate,
+                    total.active, total.overdue, averageDaysOut, total.titles.cardinality(), rows, scanMicros);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Tally {
+        long loans;
+        long returned;
+        long returnedWithDate;
+        long returnedLate;
+        long daysOut;
+        long active;
+        long overdue;
+        final BitSet titles = new BitSet();
+
+        Tally merge(Tally other) {
+            loans += other.loans;
+            returned += other.returned;
+            returnedWithDate += other.returnedWithDate;
+            returnedLate += other.returnedLate;
+            daysOut += other.daysOut;
+            active += other.active;
+            overdue += other.overdue;
+            titles.or(other.titles);
+            return this;
+        }
+    }
+
+    // Runs under the read lock of the calling thread, so the columns do not change meanwhile
+    private Tally scan(int from, int to, int fromDay, int toDay, int today, BitSet books, Long userId) {
+        boolean anyUser = userId == null;
+        long user = anyUser ? 0 : userId;
+        long[] userIds = this.userIds;
+        int[] loanDays = this.loanDays;
+        int[] dueDays = this.dueDays;
+        int[] returnDays = this.returnDays;
+        int[] bookOrdinals = this.bookOrdinals;
+        Tally tally = new Tally();
+        for (int row = from; row < to; row++) {
+            int loanDay = loanDays[row];
+            if (loanDay < fromDay || loanDay > toDay || (!anyUser && userIds[row] != user) || deleted.get(row)) {
+                continue;
+            }
+            int book = bookOrdinals[row];
+            if (books != null && !books.get(book)) {
+                continue;
+            }
+            tally.loans++;
+            tally.titles.set(book);
+            if (returned.get(row)) {
+                tally.returned++;
+                int returnDay = returnDays[row];
+                if (returnDay != NO_DAY) {
+                    tally.returnedWithDate++;
+                    tally.daysOut += returnDay - loanDay;
+                    if (returnDay > dueDays[row]) {
+                        tally.returnedLate++;
+                    }
+                }
+            } else {
+                tally.active++;
+                if (dueDays[row] < today) {
+                    tally.overdue++;
+                }
+            }
+        }
+        return tally;
+    }
+
+    // Caller holds the write lock
+    private int append(long loanId, long userId, String isbn, Long categoryId, LocalDate loanDate, LocalDate dueDate) {
+        if (size == loanDays.length) {
+            int capacity = size * 2;
+            userIds = Arrays.copyOf(userIds, capacity);
+            bookOrdinals = Arrays.copyOf(bookOrdinals, capacity);
+            loanDays = Arrays.copyOf(loanDays, capacity);
+            dueDays = Arrays.copyOf(dueDays, capacity);
+            returnDays = Arrays.copyOf(returnDays, capacity);
+        }
+        int row = size++;
+        userIds[row] = userId;
+        bookOrdinals[row] = ordinal(isbn, categoryId);
+        loanDays[row] = day(loanDate, NO_DAY);
+        dueDays[row] = day(dueDate, NO_DUE_DAY);
+        returnDays[row] = NO_DAY;
+        rowByLoanId.put(loanId, row);
+        return row;
+    }
+
+    // Numbers each title once; its category follows the latest loan of it
+    private int ordinal(String isbn, Long categoryId) {
+        int ordinal = ordinalByIsbn.computeIfAbsent(isbn, k -> ordinalByIsbn.size());
+        if (ordinal == categoryByOrdinal.length) {
+            categoryByOrdinal = Arrays.copyOf(categoryByOrdinal, ordinal * 2);
+        }
+        categoryByOrdinal[ordinal] = categoryId != null ? categoryId : NO_CATEGORY;
+        return ordinal;
+    }
+
+    private static int day(LocalDate date, int missing) {
+        return date != null ? (int) date.toEpochDay() : missing;
+    }
+}
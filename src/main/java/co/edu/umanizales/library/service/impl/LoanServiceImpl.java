@@ -1,7 +1,13 @@
 package co.edu.umanizales.library.service.impl;
 
+import co.edu.umanizales.library.event.LoanEvent;
 import co.edu.umanizales.library.model.*;
 import co.edu.umanizales.library.service.*;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.StripedLock;
+import co.edu.umanizales.library.util.UnitOfWork;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
@@ -11,33 +17,60 @@ import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class LoanServiceImpl implements LoanService {
-    private final List<Loan> loans = new ArrayList<>();
+    private final SnapshotStore<Long, Loan> loans = new SnapshotStore<>();
     private final AtomicLong idCounter = new AtomicLong(1);
     private static final String CSV_FILE = "data/loans.csv";
 
     // Dependencies for related services (to be autowired)
     private final BookService bookService;
     private final UserService userService;
+    private final StripedLock stripedLock;
+    private final PatronAccountService patronAccounts;
+    private final ApplicationEventPublisher events;
 
-    public LoanServiceImpl(BookService bookService, UserService userService) {
+    public LoanServiceImpl(BookService bookService, UserService userService, StripedLock stripedLock,
+                           PatronAccountService patronAccounts, PersistenceQueue persistenceQueue,
+                           ApplicationEventPublisher events) {
         this.bookService = bookService;
         this.userService = userService;
+        this.stripedLock = stripedLock;
+        this.patronAccounts = patronAccounts;
+        this.events = events;
         loadFromFile();
+        for (Loan loan : loans.values()) {
+            if (!loan.isReturned()) {
+                patronAccounts.loanOpened(loan.getUser().getId(), loan.getDueDate());
+            }
+        }
+        loans.validateWith(loan -> {
+            if (loan.getUser() == null || loan.getBook() == null) {
+                throw new IllegalStateException("Loan " + loan.getId() + " must have a user and a book");
+            }
+        });
+        loans.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<Loan> getAllLoans() {
-        return new ArrayList<>(loans);
+        return loans.values();
     }
 
     @Override
     public Loan getLoanById(long id) {
-        for (Loan loan : loans) {
-            if (loan.getId() == id) {
-                return loan;
+        return loans.get(id);
+    }
+
+    @Override
+    public List<Loan> getLoansByIds(List<Long> ids) {
+        Map<Long, Loan> loanMap = loans.snapshot().entries();
+        List<Loan> result = new ArrayList<>();
+        for (Long id : ids) {
+            Loan loan = loanMap.get(id);
+            if (loan != null) {
+                result.add(loan);
             }
         }
-        return null;
+        return result;
     }
 
     @Override
@@ -53,15 +86,11 @@ public class LoanServiceImpl implements LoanService {
             throw new IllegalArgumentException("Book ISBN is required");
         }
 
-        // Validate book exists and has available copies
+        // Validate book exists
         Book book = bookService.getBookByIsbn(loan.getBook().getIsbn());
         if (book == null) {
             throw new IllegalArgumentException("Book not found");
         }
-        
-        if (book.getAvailableCopies() <= 0) {
-            throw new IllegalStateException("No available copies of the book");
-        }
 
         // Validate user exists
         User user = userService.getUserById(loan.getUser().getId());
@@ -69,101 +98,256 @@ public class LoanServiceImpl implements LoanService {
             throw new IllegalArgumentException("User not found");
         }
 
-        // Set loan details
-        loan.setId(idCounter.getAndIncrement());
-        loan.setLoanDate(LocalDate.now());
-        loan.setDueDate(LocalDate.now().plusWeeks(2)); // 2 weeks loan period
-        loan.setReturned(false);
-        loan.setReturnDate(null);
+        List<String> keys = List.of(StripedLock.userKey(user.getId()), StripedLock.isbnKey(book.getIsbn()));
+        return stripedLock.withLocks(keys, () -> {
+            // The patron's lock is held, so the limit still holds when the loan is opened
+            patronAccounts.checkCanBorrow(user, 1);
 
-        // Update book available copies
-        book.setAvailableCopies(book.getAvailableCopies() - 1);
-        bookService.updateBook(book.getIsbn(), book);
+            // Take the copy first: the check and the decrement are one atomic step.
+            // If the loan write fails, the unit of work opened by withLocks gives it back.
+            if (!bookService.decreaseAvailableCopies(book.getIsbn(), 1)) {
+                throw new IllegalStateException("No available copies of the book");
+            }
 
-        loans.add(loan);
-        saveToFile();
-        return loan;
+            Loan created = loans.write(working -> {
+                // Set loan details
+                loan.setId(idCounter.getAndIncrement());
+                loan.setUser(user);
+                loan.setBook(book);
+                loan.setLoanDate(LocalDate.now());
+                loan.setDueDate(LocalDate.now().plusWeeks(2)); // 2 weeks loan period
+                loan.setReturned(false);
+                loan.setReturnDate(null);
+
+                working.put(loan.getId(), loan);
+                return loan;
+            });
+            patronAccounts.loanOpened(user.getId(), created.getDueDate());
+            publish(LoanEvent.of(LoanEvent.Type.CHECKED_OUT, created));
+            return created;
+        });
+    }
+
+    @Override
+    public List<Loan> createLoans(long userId, List<String> isbns) {
+        if (isbns == null || isbns.isEmpty()) {
+            throw new IllegalArgumentException("At least one book ISBN is required");
+        }
+
+        // Validate user exists (once for the whole batch)
+        User user = userService.getUserById(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("User not found");
+        }
+
+        // Resolve each title once and count how many copies of it are requested
+        Map<String, Book> books = new HashMap<>();
+        Map<String, Integer> requested = new HashMap<>();
+        for (String isbn : isbns) {
+            if (isbn == null || isbn.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book ISBN is required");
+            }
+            if (!books.containsKey(isbn)) {
+                Book book = bookService.getBookByIsbn(isbn);
+                if (book == null) {
+                    throw new IllegalArgumentException("Book not found: " + isbn);
+                }
+                books.put(isbn, book);
+            }
+            requested.merge(isbn, 1, Integer::sum);
+        }
+
+        List<String> keys = new ArrayList<>();
+        keys.add(StripedLock.userKey(userId));
+        for (String isbn : requested.keySet()) {
+            keys.add(StripedLock.isbnKey(isbn));
+        }
+
+        return stripedLock.withLocks(keys, () -> {
+            patronAccounts.checkCanBorrow(user, isbns.size());
+
+            // All-or-nothing: takeCopies gives back its own decrements if any title is short,
+            // and the unit of work opened by withLocks gives back the rest if a write fails
+            if (!bookService.takeCopies(requested)) {
+                throw new IllegalStateException("No available copies for every requested book");
+            }
+
+            List<Loan> createdLoans = loans.write(working -> {
+                LocalDate today = LocalDate.now();
+                List<Loan> created = new ArrayList<>();
+                for (String isbn : isbns) {
+                    Loan loan = new Loan(idCounter.getAndIncrement(), user, books.get(isbn),
+                            today, today.plusWeeks(2), false, null); // 2 weeks loan period
+                    working.put(loan.getId(), loan);
+                    created.add(loan);
+                }
+                return created;
+            });
+            for (Loan loan : createdLoans) {
+                patronAccounts.loanOpened(userId, loan.getDueDate());
+                publish(LoanEvent.of(LoanEvent.Type.CHECKED_OUT, loan));
+            }
+            return createdLoans;
+        });
     }
 
     @Override
     public Loan updateLoan(long id, Loan updatedLoan) {
-        Loan existingLoan = getLoanById(id);
-        if (existingLoan != null) {
+        Loan current = loans.get(id);
+        if (current == null) {
+            return null;
+        }
+
+        // Patron and title of a loan never change, so the keys can be taken from the snapshot
+        return stripedLock.withLocks(StripedLock.loanKeys(current), () -> loans.write(working -> {
+            Loan existingLoan = working.edit(id);
+            if (existingLoan == null) {
+                return null;
+            }
+
+            boolean wasActive = !existingLoan.isReturned();
+            LocalDate oldDueDate = existingLoan.getDueDate();
+
             // Only allow updating certain fields
             if (updatedLoan.isReturned() != existingLoan.isReturned()) {
+                LocalDate oldReturnDate = existingLoan.getReturnDate();
                 existingLoan.setReturned(updatedLoan.isReturned());
                 existingLoan.setReturnDate(updatedLoan.isReturned() ? LocalDate.now() : null);
 
                 // Update book available copies if loan status changed
-                Book b = existingLoan.getBook();
+                String isbn = existingLoan.getBook().getIsbn();
                 if (existingLoan.isReturned()) {
-                    b.setAvailableCopies(b.getAvailableCopies() + 1);
+                    bookService.increaseAvailableCopies(isbn, 1);
+                    publish(LoanEvent.of(LoanEvent.Type.RETURNED, existingLoan));
                 } else {
-                    b.setAvailableCopies(Math.max(0, b.getAvailableCopies() - 1));
+                    // Never goes below zero: a failed decrement leaves the count as is
+                    bookService.decreaseAvailableCopies(isbn, 1);
+                    publish(LoanEvent.of(LoanEvent.Type.RETURN_UNDONE, existingLoan, oldReturnDate));
                 }
-                bookService.updateBook(b.getIsbn(), b);
             }
 
             existingLoan.setDueDate(updatedLoan.getDueDate());
-            saveToFile();
+            if (!Objects.equals(oldDueDate, existingLoan.getDueDate())) {
+                publish(LoanEvent.of(LoanEvent.Type.RENEWED, existingLoan));
+            }
+
+            long userId = existingLoan.getUser().getId();
+            if (wasActive) {
+                patronAccounts.loanClosed(userId, oldDueDate);
+            }
+            if (!existingLoan.isReturned()) {
+                patronAccounts.loanOpened(userId, existingLoan.getDueDate());
+            }
             return existingLoan;
-        }
-        return null;
+        }));
     }
 
     @Override
     public boolean deleteLoan(long id) {
-        Loan loan = getLoanById(id);
-        if (loan != null) {
+        Loan current = loans.get(id);
+        if (current == null) {
+            return false;
+        }
+
+        return stripedLock.withLocks(StripedLock.loanKeys(current), () -> loans.write(working -> {
+            Loan loan = working.remove(id);
+            if (loan == null) {
+                return false;
+            }
             if (!loan.isReturned()) {
                 // Return the book if loan is deleted before returning
-                Book book = loan.getBook();
-                book.setAvailableCopies(book.getAvailableCopies() + 1);
-                bookService.updateBook(book.getIsbn(), book);
-            }
-            boolean removed = false;
-            Iterator<Loan> it = loans.iterator();
-            while (it.hasNext()) {
-                Loan l = it.next();
-                if (l.getId() == id) {
-                    it.remove();
-                    removed = true;
-                    break;
-                }
+                bookService.increaseAvailableCopies(loan.getBook().getIsbn(), 1);
+                patronAccounts.loanClosed(loan.getUser().getId(), loan.getDueDate());
             }
-            if (removed) {
-                saveToFile();
-            }
-            return removed;
-        }
-        return false;
+            publish(LoanEvent.of(LoanEvent.Type.DELETED, loan));
+            return true;
+        }));
     }
 
     @Override
     public boolean returnLoan(long id) {
-        Loan loan = getLoanById(id);
-        if (loan != null) {
-            if (!loan.isReturned()) {
-                loan.setReturned(true);
-                loan.setReturnDate(LocalDate.now());
+        return returnLoan(id, true);
+    }
 
-                // Update book available copies
-                Book book = loan.getBook();
-                book.setAvailableCopies(book.getAvailableCopies() + 1);
-                bookService.updateBook(book.getIsbn(), book);
+    @Override
+    public boolean returnLoan(long id, boolean restoreCopy) {
+        Loan current = loans.get(id);
+        if (current == null) {
+            return false;
+        }
 
-                saveToFile();
-                return true;
+        return stripedLock.withLocks(StripedLock.loanKeys(current), () -> loans.write(working -> {
+            Loan loan = working.get(id);
+            if (loan == null || loan.isReturned()) {
+                return false;
             }
-            return false;
+            working.edit(id);
+            loan.setReturned(true);
+            loan.setReturnDate(LocalDate.now());
+
+            // Update book available copies; a lost copy does not come back and leaves the stock
+            if (restoreCopy) {
+                bookService.increaseAvailableCopies(loan.getBook().getIsbn(), 1);
+            } else {
+                bookService.removeLostCopies(loan.getBook().getIsbn(), 1);
+            }
+            patronAccounts.loanClosed(loan.getUser().getId(), loan.getDueDate());
+            publish(LoanEvent.of(LoanEvent.Type.RETURNED, loan));
+            return true;
+        }));
+    }
+
+    @Override
+    public List<Loan> returnLoans(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one loan id is required");
+        }
+
+        // Lock every patron and title in the batch at once (acquired in a fixed order)
+        Set<String> keys = new HashSet<>();
+        for (Long id : ids) {
+            Loan loan = id != null ? loans.get(id) : null;
+            if (loan == null) {
+                throw new IllegalArgumentException("Loan not found: " + id);
+            }
+            keys.addAll(StripedLock.loanKeys(loan));
         }
-        return false;
+
+        return stripedLock.withLocks(keys, () -> loans.write(working -> {
+            // Validate every loan before touching any of them
+            List<Loan> toReturn = new ArrayList<>();
+            for (Long id : new LinkedHashSet<>(ids)) {
+                Loan loan = working.get(id);
+                if (loan == null) {
+                    throw new IllegalArgumentException("Loan not found: " + id);
+                }
+                if (loan.isReturned()) {
+                    throw new IllegalStateException("Loan already returned: " + id);
+                }
+                toReturn.add(loan);
+            }
+
+            LocalDate today = LocalDate.now();
+            Map<String, Integer> returned = new HashMap<>();
+            for (Loan loan : toReturn) {
+                working.edit(loan.getId());
+                loan.setReturned(true);
+                loan.setReturnDate(today);
+                returned.merge(loan.getBook().getIsbn(), 1, Integer::sum);
+                patronAccounts.loanClosed(loan.getUser().getId(), loan.getDueDate());
+                publish(LoanEvent.of(LoanEvent.Type.RETURNED, loan));
+            }
+
+            // Persist books once per batch; loans are persisted when this write is published
+            bookService.restoreCopies(returned);
+            return toReturn;
+        }));
     }
 
     @Override
     public List<Loan> getLoansByUserId(long userId) {
         List<Loan> result = new ArrayList<>();
-        for (Loan loan : loans) {
+        for (Loan loan : loans.values()) {
             if (loan.getUser() != null && loan.getUser().getId() == userId) {
                 result.add(loan);
             }
@@ -174,7 +358,7 @@ public class LoanServiceImpl implements LoanService {
     @Override
     public List<Loan> getLoansByBookId(String bookId) {
         List<Loan> result = new ArrayList<>();
-        for (Loan loan : loans) {
+        for (Loan loan : loans.values()) {
             if (loan.getBook() != null && loan.getBook().getIsbn() != null && loan.getBook().getIsbn().equals(bookId)) {
                 result.add(loan);
             }
@@ -184,12 +368,25 @@ public class LoanServiceImpl implements LoanService {
 
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        loans.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    // Listeners only hear about changes that commit
+    private void publish(LoanEvent event) {
+        UnitOfWork.afterCommit(() -> events.publishEvent(event));
+    }
+
+    private void writeToFile(List<Loan> loanList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Write header
             writer.println("id,userId,bookIsbn,loanDate,dueDate,returned,returnDate");
             
             // Write data
-            for (Loan loan : loans) {
+            for (Loan loan : loanList) {
                 writer.println(String.format("%d,%d,%s,%s,%s,%b,%s",
                         loan.getId(),
                         loan.getUser().getId(),
@@ -218,7 +415,7 @@ public class LoanServiceImpl implements LoanService {
                 return;
             }
 
-            loans.clear();
+            Map<Long, Loan> loanMap = new LinkedHashMap<>();
             long maxId = 0;
 
             while ((line = reader.readLine()) != null) {
@@ -244,7 +441,7 @@ public class LoanServiceImpl implements LoanService {
                         }
 
                         Loan loan = new Loan(id, userLoaded, bookLoaded, loanDate, dueDate, returned, returnDate);
-                        loans.add(loan);
+                        loanMap.put(id, loan);
 
                         if (id > maxId) {
                             maxId = id;
@@ -254,7 +451,8 @@ public class LoanServiceImpl implements LoanService {
                     }
                 }
             }
-            
+
+            loans.load(loanMap);
             idCounter.set(maxId + 1);
         } catch (IOException e) {
             throw new RuntimeException("Error loading loans from CSV file", e);
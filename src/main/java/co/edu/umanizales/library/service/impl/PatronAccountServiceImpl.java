@@ -0,0 +1,168 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.model.PatronAccount;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.PatronAccountService;
+import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.UnitOfWork;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-patron counters behind the borrowing limits: active loans, their due dates and
+ * the unpaid fine total. The loan and fine services keep them up to date on every
+ * change (and seed them when they load), so checking whether a patron may borrow never
+ * scans loans or fines. Every change is undone if its unit of work rolls back.
+ */
+@Service
+public class PatronAccountServiceImpl implements PatronAccountService {
+
+    private static final class Counters {
+        int activeLoans;
+        final TreeMap<LocalDate, Integer> dueDates = new TreeMap<>(); // active loans by due date
+        long unpaidCents;
+
+        int overdueLoans(LocalDate today) {
+            int overdue = 0;
+            for (int count : dueDates.headMap(today).values()) {
+                overdue += count;
+            }
+            return overdue;
+        }
+    }
+
+    private final Map<Long, Counters> counters = new ConcurrentHashMap<>();
+    private final Map<UserRole, Integer> maxLoans = new EnumMap<>(UserRole.class);
+    private final long maxUnpaidCents;
+    private final boolean blockOverdue;
+    private final UserService userService;
+
+    public PatronAccountServiceImpl(UserService userService,
+                                    @Value("${library.limits.loans.member:5}") int memberLoans,
+                                    @Value("${library.limits.loans.librarian:10}") int librarianLoans,
+                                    @Value("${library.limits.loans.admin:10}") int adminLoans,
+                                    @Value("${library.limits.max-unpaid-fines:10.0}") double maxUnpaidFines,
+                                    @Value("${library.limits.block-overdue:true}") boolean blockOverdue) {
+        this.userService = userService;
+        maxLoans.put(UserRole.MEMBER, memberLoans);
+        maxLoans.put(UserRole.LIBRARIAN, librarianLoans);
+        maxLoans.put(UserRole.ADMIN, adminLoans);
+        this.maxUnpaidCents = toCents(maxUnpaidFines);
+        this.blockOverdue = blockOverdue;
+    }
+
+    @Override
+    public PatronAccount getAccount(long userId) {
+        User user = userService.getUserById(userId);
+        if (user == null) {
+            return null;
+        }
+        Counters c = counters.computeIfAbsent(userId, id -> new Counters());
+        synchronized (c) {
+            int overdue = c.overdueLoans(LocalDate.now());
+            String reason = blockedReason(user, c, 1);
+            return new PatronAccount(userId, user.getRole(), c.activeLoans, overdue, c.unpaidCents / 100.0,
+                    loanLimit(user), reason == null, reason);
+        }
+    }
+
+    /**
+     * Throws IllegalStateException if the patron may not take {@code count} more loans.
+     * Callers hold the patron's lock, so the check stays valid until the loans are opened.
+     */
+    @Override
+    public void checkCanBorrow(User user, int count) {
+        Counters c = counters.computeIfAbsent(user.getId(), id -> new Counters());
+        String reason;
+        synchronized (c) {
+            reason = blockedReason(user, c, count);
+        }
+        if (reason != null) {
+            throw new IllegalStateException(reason);
+        }
+    }
+
+    @Override
+    public void loanOpened(long userId, LocalDate dueDate) {
+        adjustLoans(userId, dueDate, 1);
+        UnitOfWork.onRollback(() -> adjustLoans(userId, dueDate, -1));
+    }
+
+    @Override
+    public void loanClosed(long userId, LocalDate dueDate) {
+        adjustLoans(userId, dueDate, -1);
+        UnitOfWork.onRollback(() -> adjustLoans(userId, dueDate, 1));
+    }
+
+    @Override
+    public void unpaidFinesChanged(long userId, double delta) {
+        long cents = toCents(delta);
+        if (cents == 0) {
+            return;
+        }
+        adjustFines(userId, cents);
+        UnitOfWork.onRollback(() -> adjustFines(userId, -cents));
+    }
+
+    @Override
+    public double getUnpaidFines(long userId) {
+        Counters c = counters.get(userId);
+        if (c == null) {
+            return 0.0;
+        }
+        synchronized (c) {
+            return c.unpaidCents / 100.0;
+        }
+    }
+
+    private String blockedReason(User user, Counters c, int count) {
+        if (!user.isActive()) {
+            return "User is not active";
+        }
+        int limit = loanLimit(user);
+        if (c.activeLoans + count > limit) {
+            return "Borrowing limit of " + limit + " loans reached";
+        }
+        if (blockOverdue && !c.dueDates.isEmpty() && c.dueDates.firstKey().isBefore(LocalDate.now())) {
+            return "User has overdue loans";
+        }
+        if (c.unpaidCents > maxUnpaidCents) {
+            return "Unpaid fines exceed " + maxUnpaidCents / 100.0;
+        }
+        return null;
+    }
+
+    private int loanLimit(User user) {
+        return maxLoans.getOrDefault(user.getRole() != null ? user.getRole() : UserRole.MEMBER,
+                maxLoans.get(UserRole.MEMBER));
+    }
+
+    private void adjustLoans(long userId, LocalDate dueDate, int delta) {
+        Counters c = counters.computeIfAbsent(userId, id -> new Counters());
+        synchronized (c) {
+            c.activeLoans += delta;
+            if (dueDate != null) {
+                c.dueDates.merge(dueDate, delta, Integer::sum);
+                c.dueDates.remove(dueDate, 0);
+            }
+        }
+    }
+
+    private void adjustFines(long userId, long cents) {
+        Counters c = counters.computeIfAbsent(userId, id -> new Counters());
+        synchronized (c) {
+            c.unpaidCents += cents;
+        }
+    }
+
+    private static long toCents(double amount) {
+        return Math.round(amount * 100);
+    }
+}
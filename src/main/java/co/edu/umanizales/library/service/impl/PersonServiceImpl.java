@@ -2,37 +2,36 @@ package co.edu.umanizales.library.service.impl;
 
 import co.edu.umanizales.library.model.Person;
 import co.edu.umanizales.library.service.PersonService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
 import org.springframework.stereotype.Service;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class PersonServiceImpl implements PersonService {
-    private final List<Person> persons = new ArrayList<>();
+    private final SnapshotStore<Long, Person> persons = new SnapshotStore<>();
     private final AtomicLong idCounter = new AtomicLong(1);
     private static final String CSV_FILE = "data/persons.csv";
 
-    public PersonServiceImpl() {
+    public PersonServiceImpl(PersistenceQueue persistenceQueue) {
         loadFromFile();
+        persons.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE, () -> writeToFile(snapshot.values())));
     }
 
     @Override
     public List<Person> getAllPersons() {
-        return new ArrayList<>(persons);
+        return persons.values();
     }
 
     @Override
     public Person getPersonById(long id) {
-        for (Person p : persons) {
-            if (p.getId() == id) {
-                return p;
-            }
-        }
-        return null;
+        return persons.get(id);
     }
 
     @Override
@@ -45,49 +44,48 @@ public class PersonServiceImpl implements PersonService {
             throw new IllegalArgumentException("Email is required");
         }
 
-        person.setId(idCounter.getAndIncrement());
-        persons.add(person);
-        saveToFile();
-        return person;
+        return persons.write(working -> {
+            person.setId(idCounter.getAndIncrement());
+            working.put(person.getId(), person);
+            return person;
+        });
     }
 
     @Override
     public Person updatePerson(long id, Person person) {
-        Person existingPerson = getPersonById(id);
-        if (existingPerson != null) {
+        return persons.write(working -> {
+            Person existingPerson = working.edit(id);
+            if (existingPerson == null) {
+                return null;
+            }
             existingPerson.setName(person.getName());
             existingPerson.setEmail(person.getEmail());
             existingPerson.setPhoneNumber(person.getPhoneNumber());
-            saveToFile();
             return existingPerson;
-        }
-        return null;
+        });
     }
 
     @Override
     public boolean deletePerson(long id) {
-        boolean removed = false;
-        for (int i = 0; i < persons.size(); i++) {
-            if (persons.get(i).getId() == id) {
-                persons.remove(i);
-                removed = true;
-                break;
-            }
-        }
-        if (removed) {
-            saveToFile();
-        }
-        return removed;
+        return persons.write(working -> working.remove(id) != null);
     }
 
     @Override
     public void saveToFile() {
+        // Publishing a new version triggers the write
+        persons.write(working -> {
+            working.markModified();
+            return null;
+        });
+    }
+
+    private void writeToFile(List<Person> personList) {
         try (PrintWriter writer = new PrintWriter(new FileWriter(CSV_FILE))) {
             // Write header
             writer.println("id,name,email,phoneNumber");
             
             // Write data
-            for (Person person : persons) {
+            for (Person person : personList) {
                 writer.println(String.format("%d,%s,%s,%s",
                         person.getId(),
                         escapeCsvField(person.getName()),
@@ -113,7 +111,7 @@ public class PersonServiceImpl implements PersonService {
                 return;
             }
 
-            persons.clear();
+            Map<Long, Person> personMap = new LinkedHashMap<>();
             long maxId = 0;
 
             while ((line = reader.readLine()) != null) {
@@ -124,13 +122,14 @@ public class PersonServiceImpl implements PersonService {
                     String email = unescapeCsvField(parts[2]);
                     String phoneNumber = unescapeCsvField(parts[3]);
                     
-                    persons.add(new Person(id, name, email, phoneNumber));
+                    personMap.put(id, new Person(id, name, email, phoneNumber));
                     if (id > maxId) {
                         maxId = id;
                     }
                 }
             }
-            
+
+            persons.load(personMap);
             idCounter.set(maxId + 1);
         } catch (IOException e) {
             throw new RuntimeException("Error loading persons from CSV file", e);
@@ -3,88 +3,79 @@ package co.edu.umanizales.library.service.impl;
 import co.edu.umanizales.library.model.Publisher;
 import co.edu.umanizales.library.service.PublisherService;
 import co.edu.umanizales.library.util.CsvUtil;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class PublisherServiceImpl implements PublisherService {
 
     private static final String CSV_FILE_PATH = "data/publishers.csv";
-    private List<Publisher> publishers = new ArrayList<>();
-    private long nextId = 1;
+    private final SnapshotStore<Long, Publisher> publishers = new SnapshotStore<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public PublisherServiceImpl(PersistenceQueue persistenceQueue) {
+        loadFromCsv();
+        publishers.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE_PATH,
+                () -> CsvUtil.writePublishersToCsv(CSV_FILE_PATH, snapshot.values())));
+    }
 
     @Override
     public List<Publisher> getAllPublishers() {
-        if (publishers.isEmpty()) {
-            publishers = CsvUtil.readPublishersFromCsv(CSV_FILE_PATH);
-            if (!publishers.isEmpty()) {
-                long maxId = 0;
-                for (Publisher p : publishers) {
-                    if (p.getId() > maxId) {
-                        maxId = p.getId();
-                    }
-                }
-                nextId = maxId + 1;
-            }
-        }
-        return new ArrayList<>(publishers);
+        return publishers.values();
     }
 
     @Override
     public Publisher getPublisherById(long id) {
-        List<Publisher> list = getAllPublishers();
-        for (Publisher p : list) {
-            if (p.getId() == id) {
-                return p;
-            }
-        }
-        return null;
+        return publishers.get(id);
     }
 
     @Override
     public Publisher createPublisher(Publisher publisher) {
-        publisher.setId(nextId++);
-        publishers.add(publisher);
-        saveToCsv();
-        return publisher;
+        return publishers.write(working -> {
+            publisher.setId(nextId.getAndIncrement());
+            working.put(publisher.getId(), publisher);
+            return publisher;
+        });
     }
 
     @Override
     public Publisher updatePublisher(long id, Publisher publisher) {
-        Publisher existingPublisher = getPublisherById(id);
-        if (existingPublisher != null) {
-            publisher.setId(id);
-            for (int i = 0; i < publishers.size(); i++) {
-                if (publishers.get(i).getId() == id) {
-                    publishers.set(i, publisher);
-                    break;
-                }
+        return publishers.write(working -> {
+            if (!working.containsKey(id)) {
+                return null;
             }
-            saveToCsv();
+            publisher.setId(id);
+            working.put(id, publisher);
             return publisher;
-        }
-        return null;
+        });
     }
 
     @Override
     public boolean deletePublisher(long id) {
-        boolean removed = false;
-        for (int i = 0; i < publishers.size(); i++) {
-            if (publishers.get(i).getId() == id) {
-                publishers.remove(i);
-                removed = true;
-                break;
-            }
-        }
-        if (removed) {
-            saveToCsv();
-        }
-        return removed;
+        return publishers.write(working -> working.remove(id) != null);
     }
 
-    private void saveToCsv() {
-        CsvUtil.writePublishersToCsv(CSV_FILE_PATH, publishers);
+    @Override
+    public long getVersion() {
+        return publishers.version();
+    }
+
+    private void loadFromCsv() {
+        Map<Long, Publisher> loaded = new LinkedHashMap<>();
+        long maxId = 0;
+        for (Publisher p : CsvUtil.readPublishersFromCsv(CSV_FILE_PATH)) {
+            loaded.put(p.getId(), p);
+            if (p.getId() > maxId) {
+                maxId = p.getId();
+            }
+        }
+        publishers.load(loaded);
+        nextId.set(maxId + 1);
     }
 }
@@ -0,0 +1,325 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.BookEvent;
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.Author;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.Recommendation;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.RecommendationService;
+import co.edu.umanizales.library.util.MinHashIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * "Patrons who borrowed X also borrowed Y".
+ *
+ * Every title keeps a bounded set of candidate neighbours (four times the number
+ * served) with the number of patrons who borrowed both; when it is full the weakest
+ * candidate is dropped, so memory grows with the catalog, not with its square. The
+ * served top neighbours of a title are precomputed on every change, so a request is a
+ * single map lookup.
+ *
+ * The index is rebuilt from the loan history at startup: the patrons' histories are
+ * split across a fork-join pool, each part counts the pairs of its patrons and the
+ * parts are merged. After that loan events are queued to a single consumer thread, so
+ * checkouts never wait for the index: a checkout of a title new to the patron pairs it
+ * with the patron's earlier titles, and deleting the patron's last loan of a title takes
+ * those pairs back. A candidate only replaces the weakest one of a full set if it is
+ * strictly stronger; counts of dropped candidates are lost, so the index is approximate
+ * until the next rebuild.
+ *
+ * "Similar books" compare content instead, so they also work for titles nobody has
+ * borrowed: each book is a set of features (the words of its title and description,
+ * its authors and its category) in a {@link MinHashIndex}, built in parallel at startup
+ * and kept up to date from book events.
+ */
+@Slf4j
+@Service
+public class RecommendationServiceImpl implements RecommendationService {
+
+    private static final int REBUILD_THRESHOLD = 64; // patrons per fork-join leaf
+    private static final int MIN_WORD_LENGTH = 3;
+    private static final Set<String> STOP_WORDS = Set.of(
+            "the", "and", "for", "with", "from", "that", "this", "are", "its",
+            "los", "las", "del", "una", "uno", "con", "por", "para", "que", "sus", "como");
+
+    private static final class Neighbours {
+        final Map<String, Integer> candidates = new HashMap<>();
+        volatile List<Recommendation> top = List.of();
+    }
+
+    private final BookService bookService;
+    private final int neighbours;
+    private final int candidateCapacity;
+
+    // Only touched by the constructor and then by the consumer thread; the published top
+    // lists are read without locking
+    private final Map<Long, Map<String, Integer>> borrowedByUser = new HashMap<>(); // patron -> title -> loans
+    private final Map<String, Neighbours> index = new ConcurrentHashMap<>();
+    private final BlockingQueue<LoanEvent> pending = new LinkedBlockingQueue<>();
+    private final Thread consumer;
+
+    private final MinHashIndex similarBooks;
+
+    public RecommendationServiceImpl(BookService bookService, LoanService loanService,
+                                     @Value("${library.recommendations.neighbours:10}") int neighbours,
+                                     @Value("${library.recommendations.similarity.bands:16}") int bands,
+                                     @Value("${library.recommendations.similarity.rows:4}") int rows) {
+        this.bookService = bookService;
+        this.neighbours = Math.max(1, neighbours);
+        this.candidateCapacity = this.neighbours * 4;
+        this.similarBooks = new MinHashIndex(bands, rows);
+        rebuild(loanService.getAllLoans());
+
+        long start = System.currentTimeMillis();
+        Map<String, Set<String>> featuresByIsbn = new ConcurrentHashMap<>();
+        bookService.getAllBooks().parallelStream().forEach(book -> {
+            Set<String> features = features(book);
+            if (!features.isEmpty()) {
+                featuresByIsbn.put(book.getIsbn(), features);
+            }
+        });
+        similarBooks.putAll(featuresByIsbn);
+        log.info("Indexed {} books for similarity in {} ms", similarBooks.size(), System.currentTimeMillis() - start);
+
+        consumer = new Thread(this::consume, "library-recommendations");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        consumer.interrupt();
+    }
+
+    @EventListener
+    public void onBookEvent(BookEvent event) {
+        String isbn = event.book().getIsbn();
+        if (event.previousIsbn() != null && !event.previousIsbn().equals(isbn)) {
+            similarBooks.remove(event.previousIsbn());
+        }
+        Set<String> features = event.type() == BookEvent.Type.DELETED ? Set.of() : features(event.book());
+        if (features.isEmpty()) {
+            similarBooks.remove(isbn);
+        } else {
+            similarBooks.put(isbn, features);
+        }
+    }
+
+    @EventListener
+    public void onLoanEvent(LoanEvent event) {
+        if ((event.type() == LoanEvent.Type.CHECKED_OUT || event.type() == LoanEvent.Type.DELETED)
+                && event.isbn() != null) {
+            pending.add(event);
+        }
+    }
+
+    private void consume() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                apply(pending.take());
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error updating the co-borrowing index", e);
+            }
+        }
+    }
+
+    // Runs on the consumer thread
+    private void apply(LoanEvent event) {
+        String isbn = event.isbn();
+        Map<String, Integer> history = borrowedByUser.computeIfAbsent(event.userId(), id -> new HashMap<>());
+        int delta;
+        if (event.type() == LoanEvent.Type.CHECKED_OUT) {
+            // Only the first loan of a title pairs it
+            if (history.merge(isbn, 1, Integer::sum) > 1) {
+                return;
+            }
+            delta = 1;
+        } else {
+            // Only the last loan of a title takes its pairs back
+            Integer loans = history.get(isbn);
+            if (loans == null) {
+                return;
+            }
+            if (loans > 1) {
+                history.put(isbn, loans - 1);
+                return;
+            }
+            history.remove(isbn);
+            delta = -1;
+        }
+        for (String other : history.keySet()) {
+            if (!other.equals(isbn)) {
+                pair(isbn, other, delta);
+                pair(other, isbn, delta);
+            }
+        }
+    }
+
+    @Override
+    public List<Recommendation> getAlsoBorrowed(String isbn, int limit) {
+        Neighbours entry = index.get(isbn);
+        if (entry == null) {
+            return List.of();
+        }
+        List<Recommendation> top = entry.top;
+        return new ArrayList<>(top.subList(0, Math.min(limit, top.size())));
+    }
+
+    @Override
+    public List<Recommendation> getSimilar(String isbn, int limit) {
+        List<Recommendation> result = new ArrayList<>();
+        for (MinHashIndex.Match match : similarBooks.similarTo(isbn, limit)) {
+            Book book = bookService.getBookByIsbn(match.key());
+            result.add(new Recommendation(match.key(), book != null ? book.getTitle() : null, match.similarity()));
+        }
+        return result;
+    }
+
+    // Words of the title and description, authors and category, prefixed so they never collide
+    private static Set<String> features(Book book) {
+        Set<String> features = new HashSet<>();
+        for (String text : new String[]{book.getTitle(), book.getDescription()}) {
+            if (text == null) {
+                continue;
+            }
+            for (String word : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+                if (word.length() >= MIN_WORD_LENGTH && !STOP_WORDS.contains(word)) {
+                    features.add("w:" + word);
+                }
+            }
+        }
+        if (book.getAuthors() != null) {
+            for (Author author : book.getAuthors()) {
+                features.add("a:" + author.getId());
+            }
+        }
+        if (book.getCategory() != null) {
+            features.add("c:" + book.getCategory().getId());
+        }
+        return features;
+    }
+
+    private void rebuild(List<Loan> loans) {
+        long start = System.currentTimeMillis();
+        for (Loan loan : loans) {
+            if (loan.getUser() != null && loan.getBook() != null && loan.getBook().getIsbn() != null) {
+                borrowedByUser.computeIfAbsent(loan.getUser().getId(), id -> new HashMap<>())
+                        .merge(loan.getBook().getIsbn(), 1, Integer::sum);
+            }
+        }
+
+        List<Set<String>> histories = new ArrayList<>();
+        for (Map<String, Integer> history : borrowedByUser.values()) {
+            histories.add(history.keySet());
+        }
+        Map<String, Map<String, Integer>> pairs = ForkJoinPool.commonPool().invoke(new PairCount(histories, 0, histories.size()));
+        pairs.forEach((isbn, counts) -> {
+            // Keep the strongest candidates of the full counts
+            List<Map.Entry<String, Integer>> sorted = new ArrayList<>(counts.entrySet());
+            sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed());
+            Neighbours entry = new Neighbours();
+            for (Map.Entry<String, Integer> candidate : sorted.subList(0, Math.min(candidateCapacity, sorted.size()))) {
+                entry.candidates.put(candidate.getKey(), candidate.getValue());
+            }
+            entry.top = rank(entry.candidates);
+            index.put(isbn, entry);
+        });
+        log.info("Rebuilt co-borrowing index for {} titles from {} patrons in {} ms",
+                index.size(), histories.size(), System.currentTimeMillis() - start);
+    }
+
+    // Adds to (or subtracts from) the count of `other` among the candidates of `isbn`. A new
+    // candidate of a full set replaces the weakest one only if it is strictly stronger.
+    private void pair(String isbn, String other, int count) {
+        Neighbours entry = index.computeIfAbsent(isbn, k -> new Neighbours());
+        Map<String, Integer> candidates = entry.candidates;
+        if (!candidates.containsKey(other)) {
+            if (count <= 0) {
+                return;
+            }
+            if (candidates.size() >= candidateCapacity) {
+                String weakest = Collections.min(candidates.entrySet(), Map.Entry.comparingByValue()).getKey();
+                if (candidates.get(weakest) >= count) {
+                    return;
+                }
+                candidates.remove(weakest);
+            }
+        }
+        // A count that drops to zero removes the candidate
+        candidates.merge(other, count, (a, b) -> a + b > 0 ? a + b : null);
+        entry.top = rank(candidates);
+    }
+
+    private List<Recommendation> rank(Map<String, Integer> candidates) {
+        List<Map.Entry<String, Integer>> sorted = new ArrayList<>(candidates.entrySet());
+        sorted.sort(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Recommendation> top = new ArrayList<>();
+        for (Map.Entry<String, Integer> candidate : sorted.subList(0, Math.min(neighbours, sorted.size()))) {
+            Book book = bookService.getBookByIsbn(candidate.getKey());
+            top.add(new Recommendation(candidate.getKey(), book != null ? book.getTitle() : null, candidate.getValue()));
+        }
+        return List.copyOf(top);
+    }
+
+    /**
+     * Counts, for a range of patron histories, how many patrons borrowed each ordered
+     * pair of titles.
+     */
+    private static final class PairCount extends RecursiveTask<Map<String, Map<String, Integer>>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Set<String>> histories;
+        private final int from;
+        private final int to;
+
+        PairCount(List<Set<String>> histories, int from, int to) {
+            this.histories = histories;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<String, Map<String, Integer>> compute() {
+            if (to - from <= REBUILD_THRESHOLD) {
+                Map<String, Map<String, Integer>> pairs = new HashMap<>();
+                for (Set<String> history : histories.subList(from, to)) {
+                    for (String isbn : history) {
+                        Map<String, Integer> counts = pairs.computeIfAbsent(isbn, k -> new HashMap<>());
+                        for (String other : history) {
+                            if (!other.equals(isbn)) {
+                                counts.merge(other, 1, Integer::sum);
+                            }
+                        }
+                    }
+                }
+                return pairs;
+            }
+            int middle = (from + to) >>> 1;
+            PairCount left = new PairCount(histories, from, middle);
+            left.fork();
+            Map<String, Map<String, Integer>> right = new PairCount(histories, middle, to).compute();
+            Map<String, Map<String, Integer>> merged = left.join();
+            right.forEach((isbn, counts) -> {
+                Map<String, Integer> target = merged.computeIfAbsent(isbn, k -> new HashMap<>());
+                counts.forEach((other, count) -> target.merge(other, count, Integer::sum));
+            });
+            return merged;
+        }
+    }
+}
@@ -1,95 +1,186 @@
 package co.edu.umanizales.library.service.impl;
 
+import co.edu.umanizales.library.model.BookCondition;
+import co.edu.umanizales.library.model.FineReason;
+import co.edu.umanizales.library.model.FineRecord;
+import co.edu.umanizales.library.model.Loan;
 import co.edu.umanizales.library.model.Return;
+import co.edu.umanizales.library.service.FineRecordService;
+import co.edu.umanizales.library.service.LoanService;
 import co.edu.umanizales.library.service.ReturnService;
 import co.edu.umanizales.library.util.CsvUtil;
-import lombok.RequiredArgsConstructor;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.StripedLock;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
-@RequiredArgsConstructor
 public class ReturnServiceImpl implements ReturnService {
 
     private static final String CSV_FILE_PATH = "data/returns.csv";
-    private List<Return> returns = new ArrayList<>();
-    private long nextId = 1;
+    private final SnapshotStore<Long, Return> returns = new SnapshotStore<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    private final LoanService loanService;
+    private final FineRecordService fineRecordService;
+    private final StripedLock stripedLock;
+
+    // Fines charged when a return does not state an amount
+    private final double damageFine;
+    private final double lossFine;
+
+    public ReturnServiceImpl(LoanService loanService, FineRecordService fineRecordService, StripedLock stripedLock,
+                             PersistenceQueue persistenceQueue,
+                             @Value("${library.fines.damage-amount:20.0}") double damageFine,
+                             @Value("${library.fines.loss-amount:50.0}") double lossFine) {
+        this.loanService = loanService;
+        this.fineRecordService = fineRecordService;
+        this.stripedLock = stripedLock;
+        this.damageFine = damageFine;
+        this.lossFine = lossFine;
+        loadFromCsv();
+        returns.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE_PATH,
+                () -> CsvUtil.writeReturnsToCsv(CSV_FILE_PATH, snapshot.values())));
+    }
 
     @Override
     public List<Return> getAllReturns() {
-        if (returns.isEmpty()) {
-            returns = CsvUtil.readReturnsFromCsv(CSV_FILE_PATH);
-            if (!returns.isEmpty()) {
-                long maxId = 0;
-                for (Return r : returns) {
-                    if (r.getId() > maxId) {
-                        maxId = r.getId();
-                    }
-                }
-                nextId = maxId + 1;
-            }
-        }
-        return new ArrayList<>(returns);
+        return returns.values();
     }
 
     @Override
     public Return getReturnById(long id) {
-        List<Return> list = getAllReturns();
-        for (Return r : list) {
-            if (r.getId() == id) {
-                return r;
-            }
-        }
-        return null;
+        return returns.get(id);
     }
 
     @Override
     public Return createReturn(Return returnObj) {
-        returnObj.setId(nextId++);
-        returnObj.setReturnDate(LocalDateTime.now());
-        returns.add(returnObj);
-        saveToCsv();
-        return returnObj;
+        return stripedLock.withLocks(lockKeys(returnObj), () -> returns.write(working -> {
+            returnObj.setId(nextId.getAndIncrement());
+            returnObj.setReturnDate(LocalDateTime.now());
+            working.put(returnObj.getId(), returnObj);
+            return returnObj;
+        }));
     }
 
     @Override
     public Return updateReturn(long id, Return returnObj) {
-        Return existingReturn = getReturnById(id);
-        if (existingReturn != null) {
+        Return current = returns.get(id);
+        if (current == null) {
+            return null;
+        }
+
+        Set<String> keys = lockKeys(current);
+        keys.addAll(lockKeys(returnObj));
+        return stripedLock.withLocks(keys, () -> returns.write(working -> {
+            Return existingReturn = working.get(id);
+            if (existingReturn == null) {
+                return null;
+            }
             returnObj.setId(id);
             returnObj.setReturnDate(existingReturn.getReturnDate());
-            for (int i = 0; i < returns.size(); i++) {
-                if (returns.get(i).getId() == id) {
-                    returns.set(i, returnObj);
-                    break;
-                }
-            }
-            saveToCsv();
+            working.put(id, returnObj);
             return returnObj;
-        }
-        return null;
+        }));
     }
 
     @Override
     public boolean deleteReturn(long id) {
-        boolean removed = false;
-        for (int i = 0; i < returns.size(); i++) {
-            if (returns.get(i).getId() == id) {
-                returns.remove(i);
-                removed = true;
-                break;
-            }
+        Return current = returns.get(id);
+        if (current == null) {
+            return false;
         }
-        if (removed) {
-            saveToCsv();
+        return stripedLock.withLocks(lockKeys(current),
+                () -> returns.write(working -> working.remove(id) != null));
+    }
+
+    @Override
+    public Return processReturn(Return returnObj) {
+        if (returnObj.getLoan() == null) {
+            throw new IllegalArgumentException("Return must reference a loan");
+        }
+        Loan loan = loanService.getLoanById(returnObj.getLoan().getId());
+        if (loan == null) {
+            throw new IllegalArgumentException("Loan not found");
+        }
+        BookCondition condition = returnObj.getCondition() != null ? returnObj.getCondition() : BookCondition.GOOD;
+        FineReason fineReason = switch (condition) {
+            case DAMAGED -> FineReason.DAMAGE;
+            case LOST -> FineReason.LOSS;
+            case GOOD -> null;
+        };
+        double fineAmount = 0.0;
+        if (fineReason != null) {
+            double defaultFine = fineReason == FineReason.LOSS ? lossFine : damageFine;
+            fineAmount = returnObj.getFineAmount() > 0 ? returnObj.getFineAmount() : defaultFine;
         }
-        return removed;
+        double amount = fineAmount;
+
+        // One unit of work (opened by withLocks): a failing step rolls back the ones before it,
+        // and each touched file (loans, books, fines, returns) is persisted once
+        return stripedLock.withLocks(StripedLock.loanKeys(loan), () -> {
+            if (!loanService.returnLoan(loan.getId(), condition != BookCondition.LOST)) {
+                throw new IllegalStateException("Loan already returned");
+            }
+            fineRecordService.chargeLateReturn(loan.getId(), LocalDate.now());
+
+            if (fineReason != null && amount > 0) {
+                FineRecord fine = new FineRecord();
+                fine.setUser(loan.getUser());
+                fine.setLoan(loan);
+                fine.setAmount(amount);
+                fine.setReason(fineReason);
+                fine.setIssueDate(LocalDate.now());
+                fine.setPaid(returnObj.isFinePaid());
+                fine.setPaymentDate(returnObj.isFinePaid() ? LocalDate.now() : null);
+                fineRecordService.createFineRecord(fine);
+            }
+
+            return returns.write(working -> {
+                returnObj.setId(nextId.getAndIncrement());
+                returnObj.setLoan(loan);
+                returnObj.setReturnDate(LocalDateTime.now());
+                returnObj.setCondition(condition);
+                returnObj.setFineAmount(amount);
+                returnObj.setFinePaid(amount > 0 && returnObj.isFinePaid());
+                working.put(returnObj.getId(), returnObj);
+                return returnObj;
+            });
+        });
     }
 
-    private void saveToCsv() {
-        CsvUtil.writeReturnsToCsv(CSV_FILE_PATH, returns);
+    // Patron and title of the returned loan, so the return is serialized with loan operations on them
+    private Set<String> lockKeys(Return returnObj) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (returnObj.getLoan() != null) {
+            Loan loan = loanService.getLoanById(returnObj.getLoan().getId());
+            if (loan != null) {
+                keys.addAll(StripedLock.loanKeys(loan));
+            }
+        }
+        return keys;
+    }
+
+    private void loadFromCsv() {
+        Map<Long, Return> loaded = new LinkedHashMap<>();
+        long maxId = 0;
+        for (Return r : CsvUtil.readReturnsFromCsv(CSV_FILE_PATH)) {
+            loaded.put(r.getId(), r);
+            if (r.getId() > maxId) {
+                maxId = r.getId();
+            }
+        }
+        returns.load(loaded);
+        nextId.set(maxId + 1);
     }
 }
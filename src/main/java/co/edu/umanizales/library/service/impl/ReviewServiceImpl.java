@@ -1,90 +1,125 @@
 package co.edu.umanizales.library.service.impl;
 
+import co.edu.umanizales.library.event.ReviewEvent;
 import co.edu.umanizales.library.model.Review;
 import co.edu.umanizales.library.service.ReviewService;
 import co.edu.umanizales.library.util.CsvUtil;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SingleFlight;
+import co.edu.umanizales.library.util.SnapshotStore;
+import co.edu.umanizales.library.util.UnitOfWork;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 public class ReviewServiceImpl implements ReviewService {
 
     private static final String CSV_FILE_PATH = "data/reviews.csv";
-    private List<Review> reviews;
+    private final SnapshotStore<Long, Review> reviews = new SnapshotStore<>();
 
-    public ReviewServiceImpl() {
+    // Per-book scans are shared by concurrent identical requests against the same snapshot
+    private record BookQuery(Long bookId, long version) {
+    }
+
+    private final SingleFlight<BookQuery, List<Review>> reviewsByBook;
+    private final SingleFlight<BookQuery, Double> averageRatings;
+    private final ApplicationEventPublisher events;
+
+    public ReviewServiceImpl(PersistenceQueue persistenceQueue, ApplicationEventPublisher events,
+                             @Value("${library.single-flight.timeout-millis:2000}") long singleFlightTimeout) {
+        this.events = events;
+        this.reviewsByBook = new SingleFlight<>(singleFlightTimeout);
+        this.averageRatings = new SingleFlight<>(singleFlightTimeout);
+        Map<Long, Review> loaded = new LinkedHashMap<>();
         try {
-            this.reviews = CsvUtil.readReviewsFromCsv(CSV_FILE_PATH);
+            for (Review review : CsvUtil.readReviewsFromCsv(CSV_FILE_PATH)) {
+                loaded.put(review.getId(), review);
+            }
         } catch (IOException e) {
             log.error("Error loading reviews from CSV", e);
-            this.reviews = new ArrayList<>();
         }
+        reviews.load(loaded);
+        reviews.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE_PATH, () -> {
+            try {
+                CsvUtil.writeReviewsToCsv(CSV_FILE_PATH, snapshot.values());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
     }
 
     @Override
     public List<Review> getAllReviews() {
-        return reviews;
+        return reviews.values();
     }
 
     @Override
     public Review getReviewById(Long id) {
-        for (Review review : reviews) {
-            if (review.getId() == id) {
-                return review;
-            }
-        }
-        return null;
+        return reviews.get(id);
     }
 
     @Override
     public Review createReview(Review review) throws IOException {
-        long maxId = 0;
-        for (Review r : reviews) {
-            if (r.getId() > maxId) {
-                maxId = r.getId();
+        Review created = write(working -> {
+            long maxId = 0;
+            for (Long id : working.keySet()) {
+                if (id > maxId) {
+                    maxId = id;
+                }
             }
-        }
-        Long nextId = maxId + 1;
-        review.setId(nextId);
-        reviews.add(review);
-        CsvUtil.writeReviewsToCsv(CSV_FILE_PATH, reviews);
-        log.info("Review created with id: {}", nextId);
-        return review;
+            review.setId(maxId + 1);
+            working.put(review.getId(), review);
+            publish(ReviewEvent.of(ReviewEvent.Type.CREATED, review));
+            return review;
+        });
+        log.info("Review created with id: {}", created.getId());
+        return created;
     }
 
     @Override
     public Review updateReview(Long id, Review reviewDetails) throws IOException {
-        Review review = getReviewById(id);
-        if (review != null) {
+        Review updated = write(working -> {
+            Review review = working.edit(id);
+            if (review == null) {
+                return null;
+            }
+            String previousIsbn = review.getBook() != null ? review.getBook().getIsbn() : null;
             review.setUser(reviewDetails.getUser());
             review.setBook(reviewDetails.getBook());
             review.setRating(reviewDetails.getRating());
             review.setComment(reviewDetails.getComment());
             review.setReviewDate(reviewDetails.getReviewDate());
-            CsvUtil.writeReviewsToCsv(CSV_FILE_PATH, reviews);
-            log.info("Review updated with id: {}", id);
+            publish(ReviewEvent.of(ReviewEvent.Type.UPDATED, review, previousIsbn));
             return review;
+        });
+        if (updated != null) {
+            log.info("Review updated with id: {}", id);
         }
-        return null;
+        return updated;
     }
 
     @Override
     public boolean deleteReview(Long id) throws IOException {
-        boolean removed = false;
-        for (int i = 0; i < reviews.size(); i++) {
-            if (reviews.get(i).getId() == id) {
-                reviews.remove(i);
-                removed = true;
-                break;
+        boolean removed = write(working -> {
+            Review review = working.remove(id);
+            if (review == null) {
+                return false;
             }
-        }
+            publish(ReviewEvent.of(ReviewEvent.Type.DELETED, review));
+            return true;
+        });
         if (removed) {
-            CsvUtil.writeReviewsToCsv(CSV_FILE_PATH, reviews);
             log.info("Review deleted with id: {}", id);
         }
         return removed;
@@ -93,7 +128,7 @@ public class ReviewServiceImpl implements ReviewService {
     @Override
     public List<Review> getReviewsByUserId(Long userId) {
         List<Review> result = new ArrayList<>();
-        for (Review r : reviews) {
+        for (Review r : reviews.values()) {
             if (r.getUser() != null && r.getUser().getId() == userId) {
                 result.add(r);
             }
@@ -103,20 +138,24 @@ public class ReviewServiceImpl implements ReviewService {
 
     @Override
     public List<Review> getReviewsByBookId(Long bookId) {
-        List<Review> result = new ArrayList<>();
-        String target = String.valueOf(bookId);
-        for (Review r : reviews) {
-            if (r.getBook() != null && r.getBook().getIsbn() != null && r.getBook().getIsbn().equals(target)) {
-                result.add(r);
+        SnapshotStore.Snapshot<Long, Review> snapshot = reviews.snapshot();
+        List<Review> shared = reviewsByBook.execute(new BookQuery(bookId, snapshot.version()), () -> {
+            List<Review> result = new ArrayList<>();
+            String target = String.valueOf(bookId);
+            for (Review r : snapshot.values()) {
+                if (r.getBook() != null && r.getBook().getIsbn() != null && r.getBook().getIsbn().equals(target)) {
+                    result.add(r);
+                }
             }
-        }
-        return result;
+            return List.copyOf(result);
+        });
+        return new ArrayList<>(shared);
     }
 
     @Override
     public List<Review> getReviewsByRating(int rating) {
         List<Review> result = new ArrayList<>();
-        for (Review r : reviews) {
+        for (Review r : reviews.values()) {
             if (r.getRating() == rating) {
                 result.add(r);
             }
@@ -126,18 +165,42 @@ public class ReviewServiceImpl implements ReviewService {
 
     @Override
     public double getAverageRatingByBookId(Long bookId) {
-        String target = String.valueOf(bookId);
-        int sum = 0;
-        int count = 0;
-        for (Review r : reviews) {
-            if (r.getBook() != null && r.getBook().getIsbn() != null && r.getBook().getIsbn().equals(target)) {
-                sum += r.getRating();
-                count++;
+        SnapshotStore.Snapshot<Long, Review> snapshot = reviews.snapshot();
+        return averageRatings.execute(new BookQuery(bookId, snapshot.version()), () -> {
+            String target = String.valueOf(bookId);
+            int sum = 0;
+            int count = 0;
+            for (Review r : snapshot.values()) {
+                if (r.getBook() != null && r.getBook().getIsbn() != null && r.getBook().getIsbn().equals(target)) {
+                    sum += r.getRating();
+                    count++;
+                }
             }
+            if (count == 0) {
+                return 0.0;
+            }
+            return (double) sum / count;
+        });
+    }
+
+    @Override
+    public Map<String, Map<String, Long>> getSingleFlightStats() {
+        Map<String, Map<String, Long>> stats = new LinkedHashMap<>();
+        stats.put("reviewsByBook", reviewsByBook.getStats());
+        stats.put("averageRating", averageRatings.getStats());
+        return stats;
+    }
+
+    // Listeners only hear about changes that commit
+    private void publish(ReviewEvent event) {
+        UnitOfWork.afterCommit(() -> events.publishEvent(event));
+    }
+
+    private <R> R write(Function<SnapshotStore.WorkingCopy<Long, Review>, R> mutation) throws IOException {
+        try {
+            return reviews.write(mutation);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        if (count == 0) {
-            return 0.0;
-        }
-        return (double) sum / count;
     }
 }
@@ -0,0 +1,159 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.event.ReviewEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.Review;
+import co.edu.umanizales.library.model.TitleCount;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.ReviewService;
+import co.edu.umanizales.library.service.TrendingService;
+import co.edu.umanizales.library.util.HeavyHitters;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Most borrowed and most reviewed titles, fed by loan and review events.
+ *
+ * The day, week and month windows come from {@link HeavyHitters} summaries, so their
+ * memory does not grow with the catalog and their counts are estimates. The all-time
+ * lists use exact per-ISBN counters, which also follow deletions. Both are seeded from
+ * the loan and review history at startup.
+ */
+@Service
+public class TrendingServiceImpl implements TrendingService {
+
+    private static final int RETENTION_DAYS = 30;
+    private static final Map<String, Integer> WINDOW_DAYS = Map.of("day", 1, "week", 7, "month", RETENTION_DAYS);
+
+    private final BookService bookService;
+    private final int capacity;
+    private final HeavyHitters recentlyBorrowed;
+    private final HeavyHitters recentlyReviewed;
+    private final Map<String, AtomicLong> borrowed = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> reviewed = new ConcurrentHashMap<>();
+
+    public TrendingServiceImpl(BookService bookService, LoanService loanService, ReviewService reviewService,
+                               @Value("${library.trending.capacity:100}") int capacity) {
+        this.bookService = bookService;
+        this.capacity = capacity;
+        this.recentlyBorrowed = new HeavyHitters(capacity, RETENTION_DAYS);
+        this.recentlyReviewed = new HeavyHitters(capacity, RETENTION_DAYS);
+
+        LocalDate since = LocalDate.now().minusDays(RETENTION_DAYS - 1);
+        for (Loan loan : loanService.getAllLoans()) {
+            String isbn = loan.getBook() != null ? loan.getBook().getIsbn() : null;
+            count(borrowed, recentlyBorrowed, isbn, loan.getLoanDate(), since);
+        }
+        for (Review review : reviewService.getAllReviews()) {
+            String isbn = review.getBook() != null ? review.getBook().getIsbn() : null;
+            count(reviewed, recentlyReviewed, isbn, review.getReviewDate(), since);
+        }
+    }
+
+    @EventListener
+    public void onLoanEvent(LoanEvent event) {
+        if (event.type() == LoanEvent.Type.CHECKED_OUT) {
+            count(borrowed, recentlyBorrowed, event.isbn(), LocalDate.now(), null);
+        } else if (event.type() == LoanEvent.Type.DELETED) {
+            adjust(borrowed, event.isbn(), -1);
+        }
+    }
+
+    @EventListener
+    public void onReviewEvent(ReviewEvent event) {
+        switch (event.type()) {
+            case CREATED -> count(reviewed, recentlyReviewed, event.isbn(), LocalDate.now(), null);
+            case UPDATED -> {
+                if (!Objects.equals(event.isbn(), event.previousIsbn())) {
+                    adjust(reviewed, event.previousIsbn(), -1);
+                    adjust(reviewed, event.isbn(), 1);
+                }
+            }
+            case DELETED -> adjust(reviewed, event.isbn(), -1);
+        }
+    }
+
+    @Override
+    public List<TitleCount> getTopBorrowed(String window, int limit) {
+        return top(borrowed, recentlyBorrowed, window, limit);
+    }
+
+    @Override
+    public List<TitleCount> getTopReviewed(String window, int limit) {
+        return top(reviewed, recentlyReviewed, window, limit);
+    }
+
+    private List<TitleCount> top(Map<String, AtomicLong> exact, HeavyHitters recent, String window, int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Limit must be at least 1");
+        }
+        String name = window.toLowerCase();
+        if (name.equals("all")) {
+            return exactTop(exact, limit);
+        }
+        Integer days = WINDOW_DAYS.get(name);
+        if (days == null) {
+            throw new IllegalArgumentException("Window must be day, week, month or all");
+        }
+        // Beyond the summary capacity the estimates are meaningless
+        List<TitleCount> result = new ArrayList<>();
+        for (HeavyHitters.Entry entry : recent.top(LocalDate.now(), days, Math.min(limit, capacity))) {
+            result.add(new TitleCount(entry.key(), title(entry.key()), entry.count(), entry.error()));
+        }
+        return result;
+    }
+
+    // Keeps the best `limit` in a min-heap, so the scan never sorts the whole catalog
+    private List<TitleCount> exactTop(Map<String, AtomicLong> exact, int limit) {
+        Comparator<Map.Entry<String, Long>> order = Map.Entry.<String, Long>comparingByValue()
+                .thenComparing(Map.Entry.<String, Long>comparingByKey().reversed());
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(order);
+        for (Map.Entry<String, AtomicLong> entry : exact.entrySet()) {
+            long count = entry.getValue().get();
+            if (count <= 0) {
+                continue;
+            }
+            heap.add(Map.entry(entry.getKey(), count));
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+        List<TitleCount> result = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            Map.Entry<String, Long> entry = heap.poll();
+            result.add(new TitleCount(entry.getKey(), title(entry.getKey()), entry.getValue(), 0));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private void count(Map<String, AtomicLong> exact, HeavyHitters recent, String isbn, LocalDate date, LocalDate since) {
+        if (isbn == null) {
+            return;
+        }
+        adjust(exact, isbn, 1);
+        if (date != null && (since == null || !date.isBefore(since))) {
+            recent.add(isbn, date);
+        }
+    }
+
+    private static void adjust(Map<String, AtomicLong> exact, String isbn, long delta) {
+        if (isbn != null) {
+            exact.computeIfAbsent(isbn, k -> new AtomicLong()).addAndGet(delta);
+        }
+    }
+
+    private String title(String isbn) {
+        Book book = bookService.getBookByIsbn(isbn);
+        return book != null ? book.getTitle() : null;
+    }
+}
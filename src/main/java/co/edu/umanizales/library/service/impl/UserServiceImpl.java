@@ -4,42 +4,66 @@ import co.edu.umanizales.library.model.User;
 import co.edu.umanizales.library.model.UserRole;
 import co.edu.umanizales.library.service.UserService;
 import co.edu.umanizales.library.util.CsvUtil;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.SnapshotStore;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 @Slf4j
 @Service
 public class UserServiceImpl implements UserService {
 
     private static final String CSV_FILE_PATH = "data/users.csv";
-    private List<User> users;
+    private final SnapshotStore<Long, User> users = new SnapshotStore<>();
 
-    public UserServiceImpl() {
+    public UserServiceImpl(PersistenceQueue persistenceQueue) {
+        Map<Long, User> loaded = new LinkedHashMap<>();
         try {
-            this.users = CsvUtil.readUsersFromCsv(CSV_FILE_PATH);
+            for (User user : CsvUtil.readUsersFromCsv(CSV_FILE_PATH)) {
+                loaded.put(user.getId(), user);
+            }
         } catch (IOException e) {
             log.error("Error loading users from CSV", e);
-            this.users = new ArrayList<>();
         }
+        users.load(loaded);
+        users.onPublish(snapshot -> persistenceQueue.submit(CSV_FILE_PATH, () -> {
+            try {
+                CsvUtil.writeUsersToCsv(CSV_FILE_PATH, snapshot.values());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }));
     }
 
     @Override
     public List<User> getAllUsers() {
-        return users;
+        return users.values();
     }
 
     @Override
     public User getUserById(Long id) {
-        for (User user : users) {
-            if (user.getId() == id) {
-                return user;
+        return users.get(id);
+    }
+
+    @Override
+    public List<User> getUsersByIds(List<Long> ids) {
+        Map<Long, User> userMap = users.snapshot().entries();
+        List<User> result = new ArrayList<>();
+        for (Long id : ids) {
+            User user = userMap.get(id);
+            if (user != null) {
+                result.add(user);
             }
         }
-        return null;
+        return result;
     }
 
     @Override
@@ -61,24 +85,28 @@ public class UserServiceImpl implements UserService {
             throw new IllegalArgumentException("Role is required");
         }
 
-        long maxId = 0;
-        for (User u : users) {
-            if (u.getId() > maxId) {
-                maxId = u.getId();
+        User created = write(working -> {
+            long maxId = 0;
+            for (Long id : working.keySet()) {
+                if (id > maxId) {
+                    maxId = id;
+                }
             }
-        }
-        Long nextId = maxId + 1;
-        user.setId(nextId);
-        users.add(user);
-        CsvUtil.writeUsersToCsv(CSV_FILE_PATH, users);
-        log.info("User created with id: {}", nextId);
-        return user;
+            user.setId(maxId + 1);
+            working.put(user.getId(), user);
+            return user;
+        });
+        log.info("User created with id: {}", created.getId());
+        return created;
     }
 
     @Override
     public User updateUser(Long id, User userDetails) throws IOException {
-        User user = getUserById(id);
-        if (user != null) {
+        User updated = write(working -> {
+            User user = working.edit(id);
+            if (user == null) {
+                return null;
+            }
             user.setName(userDetails.getName());
             user.setEmail(userDetails.getEmail());
             user.setPhoneNumber(userDetails.getPhoneNumber());
@@ -86,25 +114,18 @@ public class UserServiceImpl implements UserService {
             user.setPassword(userDetails.getPassword());
             user.setRole(userDetails.getRole());
             user.setActive(userDetails.isActive());
-            CsvUtil.writeUsersToCsv(CSV_FILE_PATH, users);
-            log.info("User updated with id: {}", id);
             return user;
+        });
+        if (updated != null) {
+            log.info("User updated with id: {}", id);
         }
-        return null;
+        return updated;
     }
 
     @Override
     public boolean deleteUser(Long id) throws IOException {
-        boolean removed = false;
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getId() == id) {
-                users.remove(i);
-                removed = true;
-                break;
-            }
-        }
+        boolean removed = write(working -> working.remove(id) != null);
         if (removed) {
-            CsvUtil.writeUsersToCsv(CSV_FILE_PATH, users);
             log.info("User deleted with id: {}", id);
         }
         return removed;
@@ -122,7 +143,7 @@ public class UserServiceImpl implements UserService {
             }
         }
         List<User> result = new ArrayList<>();
-        for (User user : users) {
+        for (User user : users.values()) {
             if (user.getRole() == target) {
                 result.add(user);
             }
@@ -133,11 +154,19 @@ public class UserServiceImpl implements UserService {
     @Override
     public List<User> getActiveUsers() {
         List<User> result = new ArrayList<>();
-        for (User user : users) {
+        for (User user : users.values()) {
             if (user.isActive()) {
                 result.add(user);
             }
         }
         return result;
     }
+
+    private <R> R write(Function<SnapshotStore.WorkingCopy<Long, User>, R> mutation) throws IOException {
+        try {
+            return users.write(mutation);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
 }
@@ -0,0 +1,105 @@
+package co.edu.umanizales.library.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small, fixed pool of platform threads for blocking file I/O (CSV persistence).
+ *
+ * When requests run on virtual threads, a file write issued directly from the request
+ * thread holds on to its carrier for the whole write. Routing the write through this
+ * pool keeps the number of threads blocked in the file system bounded by
+ * {@code library.io.threads}, while the caller, virtual or not, simply parks until the
+ * write is done. Callers keep their synchronous semantics: failures are rethrown.
+ *
+ * The pool stops last, after the {@link PersistenceQueue} has drained; anything run
+ * after that runs on the caller.
+ */
+@Component
+public class BlockingIo implements SmartLifecycle {
+
+    static final int PHASE = PersistenceQueue.PHASE - 1;
+
+    private static final ThreadLocal<Boolean> IO_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final ExecutorService executor;
+
+    public BlockingIo(@Value("${library.io.threads:4}") int threads) {
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, task -> {
+            Thread thread = new Thread(() -> {
+                IO_THREAD.set(true);
+                task.run();
+            }, "library-io-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs the task on the I/O pool and waits for it to finish.
+     */
+    public void run(Runnable task) {
+        // Already on an I/O thread: waiting for another one could starve the pool
+        if (IO_THREAD.get()) {
+            task.run();
+            return;
+        }
+        Future<?> result;
+        try {
+            result = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            // Stopped: the write must still happen
+            task.run();
+            return;
+        }
+        try {
+            result.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (cause instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for file I/O", e);
+        }
+    }
+
+    @Override
+    public void start() {
+    }
+
+    @Override
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !executor.isShutdown();
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+}
@@ -0,0 +1,131 @@
+package co.edu.umanizales.library.util;
+
+import co.edu.umanizales.library.event.BookEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.service.AuthorService;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.CategoryService;
+import co.edu.umanizales.library.service.PublisherService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Encoded JSON of single books, so hot titles are not serialized again on every request.
+ *
+ * An entry is stamped with the book's revision and the combined author, publisher and
+ * category version read before serializing. It is served only while both are unchanged,
+ * so any update to the book, its copy counts or the entities it embeds invalidates it.
+ * An entry can be stamped older than its bytes, which only costs a miss, but never newer.
+ *
+ * The entries are a bounded LRU: once full, storing a book drops the least recently
+ * served one. Deleted books, and the old ISBN of a renamed one, are dropped right away.
+ * Books are serialized outside the lock, so only the map bookkeeping is serialized.
+ */
+@Component
+public class BookJsonCache {
+
+    private record Entry(long revision, long relationsVersion, byte[] json) {
+    }
+
+    private final BookService bookService;
+    private final AuthorService authorService;
+    private final PublisherService publisherService;
+    private final CategoryService categoryService;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Entry> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public BookJsonCache(BookService bookService, AuthorService authorService,
+                         PublisherService publisherService, CategoryService categoryService,
+                         ObjectMapper objectMapper,
+                         @Value("${library.json-cache.max-entries:10000}") int maxEntries) {
+        this.bookService = bookService;
+        this.authorService = authorService;
+        this.publisherService = publisherService;
+        this.categoryService = categoryService;
+        this.objectMapper = objectMapper;
+        int capacity = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the JSON of the book, or null if there is no book with this ISBN.
+     */
+    public byte[] get(String isbn) {
+        long revision = bookService.getRevision(isbn);
+        long relationsVersion = authorService.getVersion() + publisherService.getVersion()
+                + categoryService.getVersion();
+
+        lock.lock();
+        try {
+            Entry entry = entries.get(isbn);
+            if (entry != null && entry.revision() == revision && entry.relationsVersion() == relationsVersion) {
+                return entry.json();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        Book book = bookService.getBookByIsbn(isbn);
+        if (book == null) {
+            remove(isbn);
+            return null;
+        }
+        byte[] json = serialize(book);
+        lock.lock();
+        try {
+            entries.put(isbn, new Entry(revision, relationsVersion, json));
+        } finally {
+            lock.unlock();
+        }
+        return json;
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @EventListener
+    public void onBookEvent(BookEvent event) {
+        if (event.previousIsbn() != null && !event.previousIsbn().equals(event.book().getIsbn())) {
+            remove(event.previousIsbn());
+        }
+        if (event.type() == BookEvent.Type.DELETED) {
+            remove(event.book().getIsbn());
+        }
+    }
+
+    private void remove(String isbn) {
+        lock.lock();
+        try {
+            entries.remove(isbn);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private byte[] serialize(Book book) {
+        try {
+            return objectMapper.writeValueAsBytes(book);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error serializing book " + book.getIsbn(), e);
+        }
+    }
+}
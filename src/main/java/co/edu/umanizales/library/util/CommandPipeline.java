@@ -0,0 +1,219 @@
+package co.edu.umanizales.library.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Entry point for mutating service calls; every controller endpoint that writes goes
+ * through it. Every command runs in its own {@link UnitOfWork}, so a command that fails
+ * leaves no partial changes behind.
+ *
+ * In the default "locking" mode a command runs on the calling thread and the services
+ * coordinate through their own locks. With {@code library.execution.mode=single-writer}
+ * commands are published to a bounded ring buffer and applied in submission order by one
+ * writer thread. The writer drains up to {@code library.execution.max-batch} commands at
+ * a time and runs them inside one outer {@link UnitOfWork}, so each touched CSV file is written
+ * once per batch; results are completed once the batch is committed. A command's result
+ * only reflects the command itself: a failed file write after the commit is reported
+ * by the {@link PersistenceQueue}, not by the commands. A full buffer blocks the
+ * submitter, which is the backpressure.
+ *
+ * Scheduled work (fine accrual) is submitted here too. Loading at startup and event
+ * listeners are not commands, but they only maintain state derived from the stores.
+ *
+ * On shutdown the pipeline stops once the web server no longer accepts requests, and
+ * the writer applies everything already in the buffer before the {@link PersistenceQueue}
+ * and then the {@link BlockingIo} pool stop. Commands submitted after that run inline.
+ */
+@Slf4j
+@Component
+public class CommandPipeline implements SmartLifecycle {
+
+    // After the web server, which stops at DEFAULT_PHASE - 2048
+    static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private final boolean singleWriter;
+    private final int maxBatch;
+    private final BlockingQueue<Command<?>> ring;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public CommandPipeline(@Value("${library.execution.mode:locking}") String mode,
+                           @Value("${library.execution.ring-buffer-size:1024}") int capacity,
+                           @Value("${library.execution.max-batch:256}") int maxBatch) {
+        this.singleWriter = "single-writer".equalsIgnoreCase(mode);
+        this.maxBatch = maxBatch;
+        if (singleWriter) {
+            ring = new ArrayBlockingQueue<>(capacity);
+            writer = new Thread(this::drain, "library-writer");
+            writer.setDaemon(true);
+            writer.start();
+            log.info("Single-writer mode enabled (ring buffer {}, batches of up to {})", capacity, maxBatch);
+        } else {
+            ring = null;
+            writer = null;
+        }
+    }
+
+    public boolean isSingleWriter() {
+        return singleWriter;
+    }
+
+    /**
+     * A service call that may throw an IOException.
+     */
+    @FunctionalInterface
+    public interface IoAction<T> {
+        T get() throws IOException;
+    }
+
+    /**
+     * Submits a service call that throws IOException; it fails the result with an
+     * {@link UncheckedIOException}.
+     */
+    public <T> CompletableFuture<T> submitIo(IoAction<T> action) {
+        return submit(() -> {
+            try {
+                return action.get();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> action) {
+        // Commands issued by the writer itself (or with the pipeline off or stopped) run inline
+        if (!singleWriter || !running || Thread.currentThread() == writer) {
+            try {
+                return CompletableFuture.completedFuture(UnitOfWork.run(action));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Command<T> command = new Command<>(action);
+        try {
+            ring.put(command);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.result.completeExceptionally(e);
+        }
+        return command.result;
+    }
+
+    @Override
+    public void start() {
+        // The writer is started with the bean
+    }
+
+    @Override
+    public void stop() {
+        if (writer != null && running) {
+            // The writer finishes what is already queued before exiting
+            running = false;
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void drain() {
+        List<Command<?>> batch = new ArrayList<>(maxBatch);
+        while (running || !ring.isEmpty()) {
+            try {
+                Command<?> first = ring.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                ring.drainTo(batch, maxBatch - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    // Each command runs in its own nested unit, a savepoint that is rolled back on its own if
+    // the command fails. The outer unit only holds the listeners back, so every touched file is
+    // written once per batch; it has nothing of its own to validate, and if it ever fails to
+    // commit it is rolled back as a whole and every command of the batch fails with it.
+    private void apply(List<Command<?>> batch) {
+        UnitOfWork.begin();
+        for (Command<?> command : batch) {
+            command.run();
+        }
+        RuntimeException batchFailure = null;
+        try {
+            UnitOfWork.commit();
+        } catch (RuntimeException e) {
+            log.error("Committing a batch of {} commands failed, rolling it back", batch.size(), e);
+            batchFailure = e;
+            try {
+                UnitOfWork.rollback();
+            } catch (RuntimeException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+        }
+        for (Command<?> command : batch) {
+            command.complete(batchFailure);
+        }
+    }
+
+    private static final class Command<T> {
+        private final Supplier<T> action;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+        private Throwable error;
+
+        Command(Supplier<T> action) {
+            this.action = action;
+        }
+
+        void run() {
+            try {
+                value = UnitOfWork.run(action);
+            } catch (Throwable e) {
+                // The writer thread must survive any single command
+                error = e;
+            }
+        }
+
+        void complete(RuntimeException batchFailure) {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (batchFailure != null) {
+                result.completeExceptionally(batchFailure);
+            } else {
+                result.complete(value);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package co.edu.umanizales.library.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Strong ETags derived from collection versions, and the matching conditional GET handling.
+ */
+public final class ETags {
+
+    // Versions restart when the CSV files are reloaded; this keeps tags from one run from matching another
+    private static final String INSTANCE = Long.toString(System.currentTimeMillis(), 36);
+
+    private ETags() {
+    }
+
+    public static String of(long version) {
+        return "\"" + INSTANCE + "-" + version + "\"";
+    }
+
+    public static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // If-None-Match uses the weak comparison
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Answers 304 when the client already has this version, without calling the supplier.
+     * Otherwise returns the body with its ETag, or 404 when the supplier returns null.
+     */
+    public static <T> ResponseEntity<T> conditional(String ifNoneMatch, long version, Supplier<T> body) {
+        String etag = of(version);
+        if (matches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        T value = body.get();
+        if (value == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return ResponseEntity.ok().eTag(etag).body(value);
+    }
+}
@@ -0,0 +1,149 @@
+package co.edu.umanizales.library.util;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Approximate most frequent keys over sliding windows of days, in bounded memory.
+ *
+ * Every day keeps its own Space-Saving summary of at most {@code capacity} counters:
+ * a key that is not counted yet takes over the smallest counter, inheriting its count
+ * as the possible overestimate ("error"). Any key seen more often than 1/capacity of
+ * that day's additions is guaranteed to be in the summary. A window of the last N days
+ * is answered by summing the summaries of those days; a key missing from a full day may
+ * have been seen up to that day's smallest count, which is added to its error.
+ *
+ * Summaries are kept for {@code retentionDays}; older days are overwritten in place, so
+ * memory is capacity * retentionDays counters however many distinct keys there are.
+ */
+public class HeavyHitters {
+
+    public record Entry(String key, long count, long error) {
+    }
+
+    private static final class Counter {
+        final String key;
+        final long seq;     // tie-break among equal counts, oldest first
+        long count;
+        long error;
+
+        Counter(String key, long seq, long count, long error) {
+            this.key = key;
+            this.seq = seq;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private static final class Summary {
+        long epochDay = Long.MIN_VALUE;
+        final Map<String, Counter> counters = new HashMap<>();
+        final TreeSet<Counter> byCount = new TreeSet<>(
+                Comparator.comparingLong((Counter c) -> c.count).thenComparingLong(c -> c.seq));
+
+        void add(String key, long seq, int capacity) {
+            Counter counter = counters.get(key);
+            if (counter != null) {
+                byCount.remove(counter);
+                counter.count++;
+                byCount.add(counter);
+                return;
+            }
+            if (counters.size() < capacity) {
+                counter = new Counter(key, seq, 1, 0);
+            } else {
+                // Replace the smallest counter; its count bounds how often the new key may have been missed
+                Counter smallest = byCount.pollFirst();
+                counters.remove(smallest.key);
+                counter = new Counter(key, seq, smallest.count + 1, smallest.count);
+            }
+            counters.put(key, counter);
+            byCount.add(counter);
+        }
+
+        long floor(int capacity) {
+            return counters.size() < capacity ? 0 : byCount.first().count;
+        }
+
+        void reset(long day) {
+            epochDay = day;
+            counters.clear();
+            byCount.clear();
+        }
+    }
+
+    private final int capacity;
+    private final Summary[] days;
+
+    // guarded by this
+    private long seq;
+
+    public HeavyHitters(int capacity, int retentionDays) {
+        this.capacity = Math.max(1, capacity);
+        this.days = new Summary[Math.max(1, retentionDays)];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = new Summary();
+        }
+    }
+
+    /**
+     * Counts one occurrence of the key on the given day. Days older than the retention
+     * (relative to the newest day seen in that slot) are ignored.
+     */
+    public synchronized void add(String key, LocalDate day) {
+        long epochDay = day.toEpochDay();
+        Summary summary = days[(int) Math.floorMod(epochDay, (long) days.length)];
+        if (summary.epochDay > epochDay) {
+            return;
+        }
+        if (summary.epochDay < epochDay) {
+            summary.reset(epochDay);
+        }
+        summary.add(key, seq++, capacity);
+    }
+
+    /**
+     * The {@code limit} keys with the highest estimated count over the {@code windowDays}
+     * days ending on {@code today}, highest first.
+     */
+    public synchronized List<Entry> top(LocalDate today, int windowDays, int limit) {
+        long last = today.toEpochDay();
+        long first = last - Math.min(windowDays, days.length) + 1;
+        List<Summary> window = new ArrayList<>();
+        for (Summary summary : days) {
+            if (summary.epochDay >= first && summary.epochDay <= last) {
+                window.add(summary);
+            }
+        }
+
+        Map<String, long[]> merged = new LinkedHashMap<>();
+        for (Summary summary : window) {
+            for (Counter counter : summary.counters.values()) {
+                merged.computeIfAbsent(counter.key, k -> new long[2]);
+            }
+        }
+        for (Map.Entry<String, long[]> entry : merged.entrySet()) {
+            long[] totals = entry.getValue();
+            for (Summary summary : window) {
+                Counter counter = summary.counters.get(entry.getKey());
+                if (counter != null) {
+                    totals[0] += counter.count;
+                    totals[1] += counter.error;
+                } else {
+                    totals[1] += summary.floor(capacity);
+                }
+            }
+        }
+
+        List<Entry> entries = new ArrayList<>(merged.size());
+        merged.forEach((key, totals) -> entries.add(new Entry(key, totals[0], totals[1])));
+        entries.sort(Comparator.comparingLong(Entry::count).reversed().thenComparing(Entry::key));
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+}
@@ -0,0 +1,159 @@
+package co.edu.umanizales.library.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Remembers the outcome of mutating requests sent with an {@code Idempotency-Key} header,
+ * so a client retry gets the original result instead of executing the operation again.
+ *
+ * Keys are scoped by the caller (usually the endpoint), kept for
+ * {@code library.idempotency.ttl-minutes} and capped at {@code library.idempotency.max-entries},
+ * oldest first. A retry that arrives while the first request is still running waits for
+ * the same result. Operations that fail are forgotten right away: they are all-or-nothing,
+ * so the retry can safely run them again.
+ *
+ * The key is stored with a SHA-256 fingerprint of the request; reusing it for a different
+ * request fails with {@link KeyReusedException} instead of replaying an unrelated result.
+ * The operation runs as a {@link CommandPipeline} command and its result is recorded in an
+ * after-commit action of that command, so a result is never replayed for a change that was
+ * rolled back.
+ */
+@Component
+public class Idempotency {
+
+    public static final String HEADER = "Idempotency-Key";
+
+    /**
+     * The key was already used in the same scope for a different request.
+     */
+    public static final class KeyReusedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public KeyReusedException(String key) {
+            super("Idempotency key '" + key + "' was already used for a different request");
+        }
+    }
+
+    private record Entry(byte[] fingerprint, CompletableFuture<Object> result, long createdAt) {
+    }
+
+    private final CommandPipeline commandPipeline;
+    private final ObjectMapper objectMapper;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(); // insertion order = age, guarded by lock
+
+    public Idempotency(CommandPipeline commandPipeline, ObjectMapper objectMapper,
+                       @Value("${library.idempotency.ttl-minutes:60}") long ttlMinutes,
+                       @Value("${library.idempotency.max-entries:10000}") int maxEntries) {
+        this.commandPipeline = commandPipeline;
+        this.objectMapper = objectMapper;
+        this.ttlNanos = TimeUnit.MINUTES.toNanos(ttlMinutes);
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Submits the command once per scope and key. Without a key the command simply runs.
+     *
+     * @param request what identifies the request besides the key (its body, path variables)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> execute(String scope, String key, Object request, Supplier<T> command) {
+        if (key == null || key.isBlank()) {
+            return commandPipeline.submit(command);
+        }
+        String id = scope + ":" + key;
+        byte[] fingerprint;
+        try {
+            fingerprint = fingerprint(request);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Object> result = new CompletableFuture<>();
+
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            evictExpired(now);
+            Entry existing = entries.get(id);
+            if (existing != null) {
+                if (!Arrays.equals(existing.fingerprint(), fingerprint)) {
+                    return CompletableFuture.failedFuture(new KeyReusedException(key));
+                }
+                return (CompletableFuture<T>) existing.result();
+            }
+            entries.put(id, new Entry(fingerprint, result, now));
+            if (entries.size() > maxEntries) {
+                Iterator<String> oldest = entries.keySet().iterator();
+                oldest.next();
+                oldest.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        CompletableFuture<T> outcome = commandPipeline.submit(() -> {
+            T value = command.get();
+            UnitOfWork.afterCommit(() -> result.complete(value));
+            return value;
+        });
+        return outcome.whenComplete((value, error) -> {
+            if (error != null) {
+                forget(id, result);
+                result.completeExceptionally(error);
+            } else if (!result.isDone()) {
+                // Not recorded after the commit: let waiting retries have it, but do not keep it
+                forget(id, result);
+                result.complete(value);
+            }
+        });
+    }
+
+    private void forget(String id, CompletableFuture<Object> result) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.result() == result) {
+                entries.remove(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictExpired(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (now - entry.createdAt() < ttlNanos) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private byte[] fingerprint(Object request) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot fingerprint the request", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
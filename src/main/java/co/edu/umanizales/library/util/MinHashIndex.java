@@ -0,0 +1,173 @@
+package co.edu.umanizales.library.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Near-duplicate lookup over feature sets with MinHash and locality-sensitive hashing.
+ *
+ * Every key gets a signature of {@code bands * rows} minimum hashes of its features; the
+ * fraction of equal positions in two signatures estimates the Jaccard similarity of the
+ * two sets. The signature is cut into bands, and keys whose rows agree in a whole band
+ * share a bucket. A query only scores the keys that share at least one bucket with it,
+ * so it does not grow with the number of keys. Sets with Jaccard similarity s share a
+ * bucket with probability 1 - (1 - s^rows)^bands (about 0.5 at s = 0.5 for 16 x 4).
+ *
+ * Writers are serialized; queries read the concurrent maps without locking and may see
+ * a key that is being moved between buckets in both or neither of its bucket sets.
+ */
+public class MinHashIndex {
+
+    public record Match(String key, double similarity) {
+    }
+
+    private final int bands;
+    private final int rows;
+    private final long[] seeds;
+    private final Map<String, int[]> signatures = new ConcurrentHashMap<>();
+    private final List<Map<Integer, Set<String>>> buckets = new ArrayList<>();
+
+    public MinHashIndex(int bands, int rows) {
+        this.bands = bands;
+        this.rows = rows;
+        this.seeds = new long[bands * rows];
+        long seed = 0x9e3779b97f4a7c15L;
+        for (int i = 0; i < seeds.length; i++) {
+            seed = mix(seed + 0x9e3779b97f4a7c15L);
+            seeds[i] = seed;
+        }
+        for (int b = 0; b < bands; b++) {
+            buckets.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Indexes many keys at once; the signatures are computed in parallel.
+     */
+    public void putAll(Map<String, Set<String>> featuresByKey) {
+        Map<String, int[]> computed = new ConcurrentHashMap<>();
+        featuresByKey.entrySet().parallelStream()
+                .forEach(entry -> computed.put(entry.getKey(), signature(entry.getValue())));
+        synchronized (this) {
+            computed.forEach(this::store);
+        }
+    }
+
+    public synchronized void put(String key, Set<String> features) {
+        remove(key);
+        store(key, signature(features));
+    }
+
+    public synchronized void remove(String key) {
+        int[] old = signatures.remove(key);
+        if (old == null) {
+            return;
+        }
+        for (int b = 0; b < bands; b++) {
+            int bandKey = bandKey(old, b);
+            Set<String> bucket = buckets.get(b).get(bandKey);
+            if (bucket != null) {
+                bucket.remove(key);
+                if (bucket.isEmpty()) {
+                    buckets.get(b).remove(bandKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * The indexed keys most similar to the given one, by estimated Jaccard similarity,
+     * highest first. Empty if the key is not indexed.
+     */
+    public List<Match> similarTo(String key, int limit) {
+        int[] signature = signatures.get(key);
+        if (signature == null) {
+            return List.of();
+        }
+        Set<String> candidates = new HashSet<>();
+        for (int b = 0; b < bands; b++) {
+            Set<String> bucket = buckets.get(b).get(bandKey(signature, b));
+            if (bucket != null) {
+                candidates.addAll(bucket);
+            }
+        }
+        candidates.remove(key);
+
+        List<Match> matches = new ArrayList<>();
+        for (String candidate : candidates) {
+            int[] other = signatures.get(candidate);
+            if (other != null) {
+                matches.add(new Match(candidate, similarity(signature, other)));
+            }
+        }
+        matches.sort(Comparator.comparingDouble(Match::similarity).reversed().thenComparing(Match::key));
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    public int size() {
+        return signatures.size();
+    }
+
+    private void store(String key, int[] signature) {
+        signatures.put(key, signature);
+        for (int b = 0; b < bands; b++) {
+            buckets.get(b).computeIfAbsent(bandKey(signature, b), k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private int[] signature(Set<String> features) {
+        int[] signature = new int[seeds.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String feature : features) {
+            long hash = hash(feature);
+            for (int i = 0; i < seeds.length; i++) {
+                int value = (int) (mix(hash ^ seeds[i]) >>> 33);
+                if (value < signature[i]) {
+                    signature[i] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private int bandKey(int[] signature, int band) {
+        int key = 1;
+        for (int r = band * rows; r < (band + 1) * rows; r++) {
+            key = 31 * key + signature[r];
+        }
+        return key;
+    }
+
+    private static double similarity(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    // 64-bit FNV-1a, so features that differ in one character hash far apart after mixing
+    private static long hash(String feature) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < feature.length(); i++) {
+            hash ^= feature.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
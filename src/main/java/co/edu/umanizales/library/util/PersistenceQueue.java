@@ -0,0 +1,253 @@
+package co.edu.umanizales.library.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind for CSV persistence.
+ *
+ * With {@code library.persistence.mode=async} (the default) a store's publish listener
+ * only enqueues the write of its new snapshot, so a mutation is acknowledged once it is
+ * applied in memory. A single worker drains the queue and, within what it drained, only
+ * writes the latest snapshot of each file. The queue is bounded by
+ * {@code library.persistence.queue-size}; when it is full, submitters block until the
+ * worker catches up. {@link #flush(long)} waits for everything submitted before it to be
+ * on disk.
+ *
+ * With {@code library.persistence.mode=sync} writes run inline on the {@link BlockingIo}
+ * pool, as before.
+ *
+ * A failed write cannot fail the mutation that caused it, which was already applied and
+ * acknowledged; instead the file is reported by {@link #getStats()} and {@link #flush(long)}
+ * until a later write of it succeeds.
+ *
+ * On shutdown the queue stops after the {@link CommandPipeline} has applied its last
+ * commands and drains before the {@link BlockingIo} pool stops; writes submitted after
+ * that run on the caller.
+ */
+@Slf4j
+@Component
+public class PersistenceQueue implements SmartLifecycle {
+
+    static final int PHASE = CommandPipeline.PHASE - 1;
+
+    private record Task(String file, Runnable write, CompletableFuture<Void> barrier) {
+    }
+
+    private final BlockingIo blockingIo;
+    private final boolean async;
+    private final BlockingQueue<Task> queue;
+    private final Thread worker;
+    private final Map<String, RuntimeException> failures = new ConcurrentHashMap<>();
+    private final Set<String> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile boolean running = true;
+
+    public PersistenceQueue(BlockingIo blockingIo,
+                            @Value("${library.persistence.mode:async}") String mode,
+                            @Value("${library.persistence.queue-size:1024}") int capacity) {
+        this.blockingIo = blockingIo;
+        this.async = "async".equalsIgnoreCase(mode);
+        if (async) {
+            queue = new ArrayBlockingQueue<>(capacity);
+            worker = new Thread(this::drain, "library-persistence");
+            worker.setDaemon(true);
+            worker.start();
+        } else {
+            queue = null;
+            worker = null;
+        }
+    }
+
+    /**
+     * Schedules the write of a file. Later submissions for the same file supersede
+     * earlier ones that have not been written yet.
+     */
+    public void submit(String file, Runnable write) {
+        submitted.incrementAndGet();
+        if (!async || !running) {
+            writeNow(file, write);
+            return;
+        }
+        try {
+            Task task = new Task(file, write, null);
+            queue.put(task);
+            // Stopped meanwhile: the worker may have exited without seeing it
+            if (!running && queue.remove(task)) {
+                writeNow(file, write);
+            }
+        } catch (InterruptedException e) {
+            // Do not lose the write: fall back to writing it here
+            Thread.currentThread().interrupt();
+            writeNow(file, write);
+        }
+    }
+
+    /**
+     * Schedules the write of a file whose contents are read when the write runs, unless
+     * a write of that file is already queued: it will see this change too. For state that
+     * changes in place and often, such as the copy counters of the books; every write of
+     * the file must then read that state when it runs.
+     */
+    public void markDirty(String file, Runnable write) {
+        if (async && running && !dirty.add(file)) {
+            return;
+        }
+        submit(file, write);
+    }
+
+    // Synchronous write: the caller sees the failure, and it is reported like a queued one
+    private void writeNow(String file, Runnable write) {
+        dirty.remove(file);
+        try {
+            blockingIo.run(write);
+            failures.remove(file);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            failures.put(file, e);
+            throw e;
+        } finally {
+            written.incrementAndGet();
+        }
+    }
+
+    /**
+     * Blocks until every write submitted before this call has been attempted.
+     *
+     * @throws IllegalStateException if the last write of any file failed
+     */
+    public void flush(long timeoutMillis) throws TimeoutException, InterruptedException {
+        if (async && worker.isAlive()) {
+            CompletableFuture<Void> barrier = new CompletableFuture<>();
+            queue.put(new Task(null, null, barrier));
+            try {
+                barrier.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        if (!failures.isEmpty()) {
+            IllegalStateException failure = new IllegalStateException("Failed to persist " + failures.keySet());
+            failures.values().forEach(failure::addSuppressed);
+            throw failure;
+        }
+    }
+
+    /**
+     * Queue counters, the total number of failed writes, and the files whose last write
+     * failed with the error.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", async ? (long) queue.size() : 0L);
+        stats.put("submitted", submitted.get());
+        stats.put("written", written.get());
+        stats.put("failed", failed.get());
+        Map<String, String> failedFiles = new TreeMap<>();
+        failures.forEach((file, e) -> failedFiles.put(file, String.valueOf(e.getMessage())));
+        stats.put("failedFiles", failedFiles);
+        return stats;
+    }
+
+    @Override
+    public void start() {
+        // The worker is started with the bean, so writes submitted while loading are queued too
+    }
+
+    @Override
+    public void stop() {
+        if (worker != null && running) {
+            // The worker exits once the queue is empty; later submissions are written inline
+            running = false;
+            try {
+                worker.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.isAlive()) {
+                log.warn("Persistence queue did not drain in time, {} writes pending", queue.size());
+            }
+        }
+        running = false;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    private void drain() {
+        List<Task> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            try {
+                Task first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch);
+                writeCoalesced(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void writeCoalesced(List<Task> batch) {
+        Map<String, Runnable> latest = new LinkedHashMap<>();
+        for (Task task : batch) {
+            if (task.barrier() != null) {
+                // Everything before the barrier must be written before it completes
+                writeAll(latest);
+                latest.clear();
+                task.barrier().complete(null);
+            } else {
+                latest.put(task.file(), task.write());
+            }
+        }
+        writeAll(latest);
+    }
+
+    private void writeAll(Map<String, Runnable> writes) {
+        for (Map.Entry<String, Runnable> entry : writes.entrySet()) {
+            // Cleared before the write reads its state, so a change made meanwhile queues another one
+            dirty.remove(entry.getKey());
+            try {
+                entry.getValue().run();
+                failures.remove(entry.getKey());
+            } catch (RuntimeException e) {
+                log.error("Error persisting {}", entry.getKey(), e);
+                failed.incrementAndGet();
+                failures.put(entry.getKey(), e);
+            }
+            written.incrementAndGet();
+        }
+    }
+}
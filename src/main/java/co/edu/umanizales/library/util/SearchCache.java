@@ -0,0 +1,201 @@
+package co.edu.umanizales.library.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Bounded cache of search results with frequency-aware admission (a simplified W-TinyLFU).
+ *
+ * New entries go to a small LRU window (1% of the capacity). An entry pushed out of the
+ * window only replaces the least recently used entry of the main LRU if it has been
+ * asked for more often, according to a count-min sketch that also counts misses and is
+ * halved periodically so old popularity fades. One-off queries therefore cannot push
+ * the popular ones out.
+ *
+ * Invalidation is selective: callers remove only the keys a mutation could affect. Every
+ * invalidation also bumps an epoch, and a result computed while an invalidation ran is
+ * returned but not cached, so a stale result can never be stored after the mutation.
+ */
+public class SearchCache<V> {
+
+    private final int capacity;
+    private final int windowCapacity;
+    private final int mainCapacity;
+    private final LinkedHashMap<String, V> window = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, V> main = new LinkedHashMap<>(16, 0.75f, true);
+    private final FrequencySketch sketch;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private long epoch;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public SearchCache(int capacity) {
+        this.capacity = Math.max(2, capacity);
+        this.windowCapacity = Math.max(1, this.capacity / 100);
+        this.mainCapacity = this.capacity - windowCapacity;
+        this.sketch = new FrequencySketch(this.capacity);
+    }
+
+    public V get(String key, Function<String, V> loader) {
+        long startEpoch;
+        lock.lock();
+        try {
+            sketch.increment(key);
+            V value = window.get(key);
+            if (value == null) {
+                value = main.get(key);
+            }
+            if (value != null) {
+                hits++;
+                return value;
+            }
+            misses++;
+            startEpoch = epoch;
+        } finally {
+            lock.unlock();
+        }
+
+        V value = loader.apply(key);
+
+        lock.lock();
+        try {
+            if (epoch == startEpoch && !window.containsKey(key) && !main.containsKey(key)) {
+                admit(key, value);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return value;
+    }
+
+    /**
+     * Removes every cached key the predicate accepts.
+     */
+    public void invalidate(Predicate<String> affected) {
+        lock.lock();
+        try {
+            epoch++;
+            int before = window.size() + main.size();
+            window.keySet().removeIf(affected);
+            main.keySet().removeIf(affected);
+            invalidations += before - window.size() - main.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            long requests = hits + misses;
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("size", window.size() + main.size());
+            stats.put("capacity", capacity);
+            stats.put("hits", hits);
+            stats.put("misses", misses);
+            stats.put("hitRatio", requests == 0 ? 0.0 : (double) hits / requests);
+            stats.put("evictions", evictions);
+            stats.put("invalidations", invalidations);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void admit(String key, V value) {
+        window.put(key, value);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+
+        Map.Entry<String, V> candidate = eldest(window);
+        window.remove(candidate.getKey());
+        if (main.size() < mainCapacity) {
+            main.put(candidate.getKey(), candidate.getValue());
+            return;
+        }
+
+        // Main is full: keep whichever of the two has been asked for more often
+        Map.Entry<String, V> victim = eldest(main);
+        if (sketch.frequency(candidate.getKey()) > sketch.frequency(victim.getKey())) {
+            main.remove(victim.getKey());
+            main.put(candidate.getKey(), candidate.getValue());
+        }
+        evictions++;
+    }
+
+    private static <V> Map.Entry<String, V> eldest(LinkedHashMap<String, V> map) {
+        Iterator<Map.Entry<String, V>> it = map.entrySet().iterator();
+        Map.Entry<String, V> eldest = it.next();
+        return Map.entry(eldest.getKey(), eldest.getValue());
+    }
+
+    /**
+     * Count-min sketch with 4 rows of small saturating counters. After ten times the
+     * capacity increments, all counters are halved.
+     */
+    private static final class FrequencySketch {
+        private static final long[] SEEDS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAX_COUNT = 15;
+
+        private final byte[][] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+            this.table = new byte[SEEDS.length][width];
+            this.mask = width - 1;
+            this.sampleSize = capacity * 10;
+        }
+
+        void increment(String key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = index(hash, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                halve();
+            }
+        }
+
+        int frequency(String key) {
+            int hash = key.hashCode();
+            int min = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                min = Math.min(min, table[i][index(hash, i)]);
+            }
+            return min;
+        }
+
+        private int index(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        private void halve() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = (byte) (row[i] >>> 1);
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package co.edu.umanizales.library.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Collapses concurrent identical reads into one computation.
+ *
+ * The first caller for a key runs the computation on its own thread; callers that
+ * arrive for the same key while it runs wait for its result instead of computing it
+ * again. Nothing is kept once the computation finishes, so this is not a cache:
+ * callers must put into the key everything the result depends on (typically the
+ * store version), so a read that starts after a write never gets a result computed
+ * before it.
+ *
+ * A waiter gives up on a slow computation after the timeout and computes the result
+ * itself. A failure is passed on to everyone waiting for it.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final long timeoutMillis;
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong collapsed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public SingleFlight(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public V execute(K key, Supplier<V> computation) {
+        calls.incrementAndGet();
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing == null) {
+            return lead(key, flight, computation);
+        }
+
+        collapsed.incrementAndGet();
+        try {
+            return existing.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        // Did not get the shared result: compute it here
+        executions.incrementAndGet();
+        return computation.get();
+    }
+
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        stats.put("inFlight", (long) inFlight.size());
+        stats.put("calls", calls.get());
+        stats.put("executions", executions.get());
+        stats.put("collapsed", collapsed.get());
+        stats.put("timeouts", timeouts.get());
+        return stats;
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Supplier<V> computation) {
+        executions.incrementAndGet();
+        try {
+            V value = computation.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+}
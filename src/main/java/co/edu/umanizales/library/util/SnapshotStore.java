@@ -0,0 +1,231 @@
+package co.edu.umanizales.library.util;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Copy-on-write store for one entity type.
+ *
+ * Readers work against the current {@link Snapshot}, which is immutable and published
+ * through a volatile reference, so they never lock and never see a collection change
+ * under them. Writers are serialized by a single lock per store: each write gets a
+ * private copy of the entries, and the copy is published as the next version only if
+ * the mutation completes and actually changed something.
+ *
+ * Entities themselves are shared between snapshots (loans point at books, books at
+ * authors), so a mutation that changes a stored entity in place must call
+ * {@link WorkingCopy#markModified()} to get the change published, or get the entity
+ * through {@link WorkingCopy#edit} so a {@link UnitOfWork} can undo the change.
+ */
+public class SnapshotStore<K, V> {
+
+    public record Snapshot<K, V>(long version, Map<K, V> entries, List<V> values) {
+    }
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final List<Consumer<Snapshot<K, V>>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Consumer<V> validator;
+    private volatile Snapshot<K, V> current = new Snapshot<>(0, Map.of(), List.of());
+    private WorkingCopy<K, V> working; // guarded by writeLock
+
+    public Snapshot<K, V> snapshot() {
+        return current;
+    }
+
+    public V get(K key) {
+        return current.entries().get(key);
+    }
+
+    public List<V> values() {
+        return current.values();
+    }
+
+    public long version() {
+        return current.version();
+    }
+
+    /**
+     * Registers a callback run after every published write, still under the write lock,
+     * so callbacks see versions in order (used for persistence). Inside a {@link UnitOfWork}
+     * the callbacks run once, when the unit commits.
+     */
+    public void onPublish(Consumer<Snapshot<K, V>> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Sets the check a {@link UnitOfWork} runs on commit for every entity of this store
+     * it wrote. The validator throws to reject the entity.
+     */
+    public void validateWith(Consumer<V> validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * Replaces the whole content without notifying listeners (used when loading from disk).
+     */
+    public void load(Map<K, V> entries) {
+        writeLock.lock();
+        try {
+            publish(entries);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a mutation to a private copy of the entries and publishes it atomically.
+     * If the mutation throws, nothing is published. A write issued by the thread that
+     * is already writing to this store joins the outer write.
+     */
+    public <R> R write(Function<WorkingCopy<K, V>, R> mutation) {
+        writeLock.lock();
+        try {
+            if (working != null) {
+                return mutation.apply(working);
+            }
+            working = new WorkingCopy<>(this, current.entries());
+            try {
+                R result = mutation.apply(working);
+                if (working.isModified()) {
+                    publish(working);
+                    if (!UnitOfWork.defer(this)) {
+                        notifyListeners();
+                    }
+                }
+                return result;
+            } finally {
+                working = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Puts back the recorded previous values (or removes keys that did not exist) and
+     * republishes, even if nothing else changed, so in-place restores are persisted too.
+     * A key is only put back if it still holds the value the unit wrote; if another
+     * writer has replaced or removed it since, the newer write wins.
+     */
+    @SuppressWarnings("unchecked")
+    void revert(Map<Object, Object> previous, Map<Object, Object> written) {
+        writeLock.lock();
+        try {
+            Map<K, V> entries = new LinkedHashMap<>(current.entries());
+            previous.forEach((key, value) -> {
+                Object now = entries.containsKey(key) ? entries.get(key) : UnitOfWork.absent();
+                if (now != written.get(key)) {
+                    return;
+                }
+                if (value == UnitOfWork.absent()) {
+                    entries.remove(key);
+                } else {
+                    entries.put((K) key, (V) value);
+                }
+            });
+            publish(entries);
+            if (!UnitOfWork.defer(this)) {
+                notifyListeners();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    void validate(Object key) {
+        Consumer<V> check = validator;
+        V value = current.entries().get(key);
+        if (check != null && value != null) {
+            check.accept(value);
+        }
+    }
+
+    void notifyListeners() {
+        writeLock.lock();
+        try {
+            Snapshot<K, V> published = current;
+            for (Consumer<Snapshot<K, V>> listener : listeners) {
+                listener.accept(published);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private Snapshot<K, V> publish(Map<K, V> entries) {
+        Map<K, V> copy = Collections.unmodifiableMap(new LinkedHashMap<>(entries));
+        current = new Snapshot<>(current.version() + 1, copy, List.copyOf(copy.values()));
+        return current;
+    }
+
+    /**
+     * Mutable copy handed to writers. put/remove/clear mark it as modified;
+     * in-place changes to a stored entity must be flagged with {@link #markModified()}.
+     */
+    public static class WorkingCopy<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        // Only used while the owning write is running; a copy is never serialized
+        private final transient SnapshotStore<K, V> store;
+        private boolean modified;
+
+        WorkingCopy(SnapshotStore<K, V> store, Map<K, V> entries) {
+            super(entries);
+            this.store = store;
+        }
+
+        public void markModified() {
+            modified = true;
+        }
+
+        /**
+         * Returns the stored entity for an in-place change (null if there is none) and
+         * marks the copy as modified. Inside a unit of work the entity is copied first,
+         * so the change can be rolled back.
+         */
+        public V edit(K key) {
+            V entity = get(key);
+            if (entity != null) {
+                UnitOfWork.recordEdit(store, key, entity);
+                modified = true;
+            }
+            return entity;
+        }
+
+        public boolean isModified() {
+            return modified;
+        }
+
+        @Override
+        public V put(K key, V value) {
+            modified = true;
+            V previous = super.put(key, value);
+            UnitOfWork.recordWrite(store, key, previous, value);
+            return previous;
+        }
+
+        @Override
+        public V remove(Object key) {
+            V removed = super.remove(key);
+            if (removed != null) {
+                modified = true;
+                UnitOfWork.recordWrite(store, key, removed, null);
+            }
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            modified = true;
+            forEach((key, value) -> UnitOfWork.recordWrite(store, key, value, null));
+            super.clear();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package co.edu.umanizales.library.util;
+
+import co.edu.umanizales.library.model.Loan;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Fixed set of locks shared by the services whose operations span several entities
+ * (a checkout touches a patron, a title and the loan list).
+ *
+ * Keys are hashed onto stripes, so operations on unrelated patrons and titles almost
+ * never share a lock. Every stripe an operation needs is taken up front in ascending
+ * index order, which rules out deadlocks between operations locking overlapping sets.
+ * Stripes are always taken before any {@link SnapshotStore} write lock, and a nested
+ * call may only lock keys its caller already holds.
+ *
+ * The action runs in its own {@link UnitOfWork}, so what it wrote is validated, and
+ * rolled back if needed, before the stripes are released and other operations on the
+ * same patrons and titles can build on it.
+ */
+@Component
+public class StripedLock {
+
+    private static final int STRIPES = 64; // power of two
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    public StripedLock() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    public static String userKey(long userId) {
+        return "user:" + userId;
+    }
+
+    public static String isbnKey(String isbn) {
+        return "isbn:" + isbn;
+    }
+
+    /**
+     * Keys for the patron and the title of a loan.
+     */
+    public static List<String> loanKeys(Loan loan) {
+        List<String> keys = new ArrayList<>(2);
+        if (loan.getUser() != null) {
+            keys.add(userKey(loan.getUser().getId()));
+        }
+        if (loan.getBook() != null) {
+            keys.add(isbnKey(loan.getBook().getIsbn()));
+        }
+        return keys;
+    }
+
+    /**
+     * Runs the action in a unit of work holding the stripes of all the given keys.
+     */
+    public <T> T withLocks(Collection<String> keys, Supplier<T> action) {
+        int[] stripes = keys.stream().mapToInt(StripedLock::stripe).distinct().sorted().toArray();
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+        }
+        try {
+            return UnitOfWork.run(action);
+        } finally {
+            for (int i = stripes.length - 1; i >= 0; i--) {
+                locks[stripes[i]].unlock();
+            }
+        }
+    }
+
+    private static int stripe(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,279 @@
+package co.edu.umanizales.library.util;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound unit of work over {@link SnapshotStore}s.
+ *
+ * Writes made inside a unit are published as usual, so readers see them right away, but
+ * the listeners of each store (persistence) run once, with that store's latest snapshot,
+ * when the outermost unit commits. Meanwhile the unit records what it changed:
+ * the previous value of every key put or removed, a copy of every entity edited in place
+ * through {@link SnapshotStore.WorkingCopy#edit}, and undo actions registered with
+ * {@link #onRollback}. On commit the entities it wrote are checked against their store's
+ * validator; if that fails, or the work throws, {@link #rollback()} puts all of it back.
+ * Actions registered with {@link #afterCommit} (such as publishing events) run only once
+ * the outermost unit has committed.
+ *
+ * Commit is validate, then close: once the outermost unit is closed its changes are
+ * final, so a listener or after-commit action that fails is logged and never turns
+ * into a rollback or an error for the caller.
+ *
+ * Units nest: an inner unit is a savepoint that can be rolled back on its own, and is
+ * folded into the outer one when it commits. Rollback only reverts what this unit wrote,
+ * and a key is only put back if it still holds the value the unit left there, so a newer
+ * write by another thread is never overwritten. It does not isolate other threads, which
+ * may already have seen the changes; entities edited in place are restored as a whole,
+ * which is why units that edit shared entities run under the locks that guard them
+ * ({@link StripedLock#withLocks} opens one).
+ */
+@Slf4j
+public final class UnitOfWork {
+
+    private static final Object ABSENT = new Object();
+    private static final ThreadLocal<Deque<Frame>> FRAMES = new ThreadLocal<>();
+
+    private static final class Frame {
+        // store -> key -> value before this frame first wrote it (ABSENT if there was none)
+        final Map<SnapshotStore<?, ?>, Map<Object, Object>> before = new LinkedHashMap<>();
+        // store -> key -> value this frame last wrote (ABSENT if it removed the key)
+        final Map<SnapshotStore<?, ?>, Map<Object, Object>> after = new LinkedHashMap<>();
+        // store -> keys written directly in this frame (inner frames validate their own), checked on commit
+        final Map<SnapshotStore<?, ?>, Set<Object>> written = new LinkedHashMap<>();
+        final Set<Object> edited = Collections.newSetFromMap(new IdentityHashMap<>());
+        final List<Runnable> undo = new ArrayList<>();
+        final List<Runnable> afterCommit = new ArrayList<>();
+        // stores whose listeners are waiting for the outermost commit
+        final Set<SnapshotStore<?, ?>> dirty = new LinkedHashSet<>();
+    }
+
+    private UnitOfWork() {
+    }
+
+    /**
+     * Opens a unit on the current thread, nested in the current one if there is one.
+     * Every begin must be followed by exactly one commit or rollback.
+     */
+    public static void begin() {
+        Deque<Frame> frames = FRAMES.get();
+        if (frames == null) {
+            frames = new ArrayDeque<>();
+            FRAMES.set(frames);
+        }
+        frames.push(new Frame());
+    }
+
+    public static boolean isActive() {
+        Deque<Frame> frames = FRAMES.get();
+        return frames != null && !frames.isEmpty();
+    }
+
+    /**
+     * Runs the action in its own unit: committed if it returns, rolled back if it (or the
+     * validation) throws.
+     */
+    public static <T> T run(Supplier<T> action) {
+        begin();
+        T result;
+        try {
+            result = action.get();
+            validate();
+        } catch (RuntimeException | Error e) {
+            try {
+                rollback();
+            } catch (RuntimeException rollbackFailure) {
+                e.addSuppressed(rollbackFailure);
+            }
+            throw e;
+        }
+        close();
+        return result;
+    }
+
+    /**
+     * Registers an action that reverts a change the stores cannot see, such as a
+     * compare-and-set on an entity. Does nothing outside a unit.
+     */
+    public static void onRollback(Runnable undo) {
+        Frame frame = current();
+        if (frame != null) {
+            frame.undo.add(undo);
+        }
+    }
+
+    /**
+     * Runs the action once the outermost unit commits, or right away outside a unit.
+     * Dropped if the unit rolls back.
+     */
+    public static void afterCommit(Runnable action) {
+        Frame frame = current();
+        if (frame != null) {
+            frame.afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Validates what this unit wrote and closes it. An inner unit is folded into the
+     * outer one; the outermost one notifies the listeners of every store written in it
+     * and runs its after-commit actions.
+     * If validation fails the unit stays open and the caller must roll it back.
+     */
+    public static void commit() {
+        validate();
+        close();
+    }
+
+    // Throws, leaving the unit open, if an entity written directly in it is invalid
+    private static void validate() {
+        Frame frame = requireCurrent();
+        for (Map.Entry<SnapshotStore<?, ?>, Set<Object>> entry : frame.written.entrySet()) {
+            for (Object key : entry.getValue()) {
+                entry.getKey().validate(key);
+            }
+        }
+    }
+
+    // Never throws: past this point the changes are committed
+    private static void close() {
+        Deque<Frame> frames = FRAMES.get();
+        Frame frame = frames.pop();
+
+        Frame parent = frames.peek();
+        if (parent != null) {
+            frame.before.forEach((store, values) -> {
+                Map<Object, Object> parentValues = parent.before.computeIfAbsent(store, s -> new LinkedHashMap<>());
+                values.forEach(parentValues::putIfAbsent);
+            });
+            frame.after.forEach((store, values) ->
+                    parent.after.computeIfAbsent(store, s -> new LinkedHashMap<>()).putAll(values));
+            parent.edited.addAll(frame.edited);
+            parent.undo.addAll(frame.undo);
+            parent.dirty.addAll(frame.dirty);
+            parent.afterCommit.addAll(frame.afterCommit);
+            return;
+        }
+        FRAMES.remove();
+        for (SnapshotStore<?, ?> store : frame.dirty) {
+            try {
+                store.notifyListeners();
+            } catch (RuntimeException e) {
+                log.error("Unit of work committed, but a store listener failed", e);
+            }
+        }
+        for (Runnable action : frame.afterCommit) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                log.error("Unit of work committed, but an after-commit action failed", e);
+            }
+        }
+    }
+
+    /**
+     * Reverts everything written in the current unit and closes it. Undo actions and
+     * edited entities are restored newest first, then every key is put back.
+     */
+    public static void rollback() {
+        Frame frame = requireCurrent();
+        Deque<Frame> frames = FRAMES.get();
+        frames.pop();
+        Frame parent = frames.peek();
+        if (parent == null) {
+            FRAMES.remove();
+        }
+
+        RuntimeException failure = null;
+        for (int i = frame.undo.size() - 1; i >= 0; i--) {
+            try {
+                frame.undo.get(i).run();
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        // Republish every store that was written, so in-place restores are persisted too
+        Set<SnapshotStore<?, ?>> touched = new LinkedHashSet<>(frame.dirty);
+        touched.addAll(frame.before.keySet());
+        for (SnapshotStore<?, ?> store : touched) {
+            try {
+                store.revert(frame.before.getOrDefault(store, Map.of()), frame.after.getOrDefault(store, Map.of()));
+            } catch (RuntimeException e) {
+                failure = addFailure(failure, e);
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    static Object absent() {
+        return ABSENT;
+    }
+
+    static void recordWrite(SnapshotStore<?, ?> store, Object key, Object previous, Object value) {
+        Frame frame = current();
+        if (frame == null) {
+            return;
+        }
+        frame.before.computeIfAbsent(store, s -> new LinkedHashMap<>()).putIfAbsent(key, previous != null ? previous : ABSENT);
+        frame.after.computeIfAbsent(store, s -> new LinkedHashMap<>()).put(key, value != null ? value : ABSENT);
+        frame.written.computeIfAbsent(store, s -> new LinkedHashSet<>()).add(key);
+    }
+
+    static void recordEdit(SnapshotStore<?, ?> store, Object key, Object entity) {
+        Frame frame = current();
+        if (frame == null) {
+            return;
+        }
+        frame.written.computeIfAbsent(store, s -> new LinkedHashSet<>()).add(key);
+        if (frame.edited.add(entity)) {
+            Object copy = BeanUtils.instantiateClass(entity.getClass());
+            BeanUtils.copyProperties(entity, copy);
+            frame.undo.add(() -> BeanUtils.copyProperties(copy, entity));
+        }
+    }
+
+    static boolean defer(SnapshotStore<?, ?> store) {
+        Frame frame = current();
+        if (frame == null) {
+            return false;
+        }
+        frame.dirty.add(store);
+        return true;
+    }
+
+    private static Frame current() {
+        Deque<Frame> frames = FRAMES.get();
+        return frames != null ? frames.peek() : null;
+    }
+
+    private static Frame requireCurrent() {
+        Frame frame = current();
+        if (frame == null) {
+            throw new IllegalStateException("No unit of work is active on this thread");
+        }
+        return frame;
+    }
+
+    private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+}
@@ -0,0 +1,117 @@
+package co.edu.umanizales.library.benchmark;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Load generator for comparing platform and virtual request threads.
+ *
+ * Not a test: start the application, then run this class against it, once with the
+ * default build and once with the Java 21 build on virtual threads. The "benchmark"
+ * profile raises the Tomcat connection limits to 10000 in both, so they are compared
+ * under the same limits:
+ *
+ *   mvn spring-boot:run -Dspring-boot.run.profiles=benchmark                   (platform threads)
+ *   mvn -Pjava21 spring-boot:run -Dspring-boot.run.profiles=virtual,benchmark  (virtual threads)
+ *   java -cp target/test-classes co.edu.umanizales.library.benchmark.RequestThreadBenchmark \
+ *        [baseUrl] [concurrency] [rounds] [writePercent]
+ *
+ * Each round opens {@code concurrency} requests at once (default 10000) and waits for all
+ * of them. Most requests are catalog reads; {@code writePercent} of them (default 10)
+ * are no-op copy increases, which still go through CSV persistence and therefore block.
+ * The process may need a higher open-files limit (ulimit -n) for 10k connections.
+ */
+public class RequestThreadBenchmark {
+
+    private static final Pattern ISBN = Pattern.compile("\"isbn\":\"([^\"]+)\"");
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://localhost:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        HttpClient client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+
+        String books = client.send(get(baseUrl + "/api/v1/books"), HttpResponse.BodyHandlers.ofString()).body();
+        Matcher matcher = ISBN.matcher(books);
+        String isbn = matcher.find() ? matcher.group(1) : null;
+        if (isbn == null) {
+            System.out.println("No books found, running reads only");
+        }
+
+        System.out.printf("%s: %d concurrent requests x %d rounds, %d%% writes%n",
+                baseUrl, concurrency, rounds, isbn != null ? writePercent : 0);
+        for (int round = 1; round <= rounds; round++) {
+            runRound(client, baseUrl, isbn, concurrency, writePercent, round);
+        }
+    }
+
+    private static void runRound(HttpClient client, String baseUrl, String isbn,
+                                 int concurrency, int writePercent, int round) {
+        long[] latencies = new long[concurrency];
+        AtomicInteger failures = new AtomicInteger();
+        CompletableFuture<?>[] requests = new CompletableFuture<?>[concurrency];
+
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            int index = i;
+            long sent = System.nanoTime();
+            requests[i] = client.sendAsync(nextRequest(baseUrl, isbn, writePercent), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if (error != null || response.statusCode() >= 400) {
+                            failures.incrementAndGet();
+                        }
+                    });
+        }
+        CompletableFuture.allOf(requests).exceptionally(error -> null).join();
+        long elapsed = System.nanoTime() - start;
+
+        Arrays.sort(latencies);
+        System.out.printf("round %d: %.0f req/s, p50 %d ms, p99 %d ms, max %d ms, failures %d%n",
+                round,
+                concurrency / (elapsed / 1e9),
+                millis(latencies, 0.50),
+                millis(latencies, 0.99),
+                latencies[latencies.length - 1] / 1_000_000,
+                failures.get());
+    }
+
+    private static HttpRequest nextRequest(String baseUrl, String isbn, int writePercent) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (isbn != null && random.nextInt(100) < writePercent) {
+            return HttpRequest.newBuilder(URI.create(baseUrl + "/api/v1/books/" + isbn + "/copies/increase?count=0"))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+        }
+        return switch (random.nextInt(3)) {
+            case 0 -> get(baseUrl + "/api/v1/books");
+            case 1 -> get(baseUrl + "/api/v1/users");
+            default -> get(baseUrl + "/api/v1/loans");
+        };
+    }
+
+    private static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url))
+                .GET()
+                .timeout(Duration.ofSeconds(60))
+                .build();
+    }
+
+    private static long millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, sorted.length * percentile)] / 1_000_000;
+    }
+}
@@ -0,0 +1,58 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.service.BookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * POST /api/v1/admin/flush returns once every acknowledged change is on disk, with the
+ * persistence queue counters.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class AdminEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void flushWritesAcknowledgedChanges() throws Exception {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Flush endpoint test");
+        book.setTotalCopies(1);
+        bookService.createBook(book);
+
+        mockMvc.perform(post("/api/v1/admin/flush"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.pending").value(0))
+                .andExpect(jsonPath("$.failedFiles").isEmpty());
+
+        assertTrue(Files.readString(Path.of("data/books.csv")).contains(book.getIsbn()));
+    }
+
+    @Test
+    void persistenceStatsCountTheWrites() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/persistence"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.submitted").isNumber())
+                .andExpect(jsonPath("$.written").isNumber())
+                .andExpect(jsonPath("$.failed").isNumber());
+    }
+}
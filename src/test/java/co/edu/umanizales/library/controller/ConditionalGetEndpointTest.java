@@ -0,0 +1,87 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Category;
+import co.edu.umanizales.library.service.CategoryService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Conditional GETs: a client that sends back the ETag of the current version gets a
+ * 304 without a body, and a missing entity is a 404 whatever the client sends.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class ConditionalGetEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private CategoryService categoryService;
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/api/v1/books", "/api/v1/categories", "/api/v1/authors", "/api/v1/publishers"})
+    void currentVersionIsNotSentAgain(String collection) throws Exception {
+        String etag = etagOf(collection);
+
+        mockMvc.perform(get(collection).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void weakOrListedTagsMatchToo() throws Exception {
+        String etag = etagOf("/api/v1/categories");
+
+        mockMvc.perform(get("/api/v1/categories").header(HttpHeaders.IF_NONE_MATCH, "W/" + etag))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/api/v1/categories").header(HttpHeaders.IF_NONE_MATCH, "\"other\", " + etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void changeSendsTheNewVersion() throws Exception {
+        String etag = etagOf("/api/v1/categories");
+        Category category = new Category();
+        category.setName("etag-" + UUID.randomUUID());
+        categoryService.createCategory(category);
+
+        String current = mockMvc.perform(get("/api/v1/categories").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(etag, current);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"/api/v1/books/unknown-isbn", "/api/v1/categories/-1", "/api/v1/authors/-1",
+            "/api/v1/publishers/-1"})
+    void missingEntityIsNotFound(String path) throws Exception {
+        String staleEtag = "\"stale-1\"";
+
+        mockMvc.perform(get(path).header(HttpHeaders.IF_NONE_MATCH, staleEtag))
+                .andExpect(status().isNotFound())
+                .andExpect(header().doesNotExist(HttpHeaders.ETAG));
+    }
+
+    private String etagOf(String path) throws Exception {
+        String etag = mockMvc.perform(get(path))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        return etag;
+    }
+}
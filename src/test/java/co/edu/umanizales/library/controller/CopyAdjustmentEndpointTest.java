@@ -0,0 +1,125 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.CopyAdjustment;
+import co.edu.umanizales.library.service.BookService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * POST /api/v1/books/copies/adjust: rows are grouped per ISBN and applied in order,
+ * each title all-or-nothing, and rejected rows are reported by their index.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class CopyAdjustmentEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookService bookService;
+
+    @Test
+    void rowsOfATitleAreAppliedTogetherInOrder() throws Exception {
+        String isbn = newBook(5, 2);
+        String other = newBook(3, 3);
+
+        JsonNode result = adjust(row(isbn, -1), row(other, -2), row(isbn, 10), row(isbn, -4));
+
+        assertEquals(1, result.path("applied").path(isbn).asInt(), "2 - 1, raised to the 5 total, then - 4");
+        assertEquals(1, result.path("applied").path(other).asInt());
+        assertEquals(0, result.path("rejected").size());
+        assertEquals(1, bookService.getBookByIsbn(isbn).getAvailableCopies());
+        assertEquals(1, bookService.getBookByIsbn(other).getAvailableCopies());
+    }
+
+    @Test
+    void increaseIsClampedToTheTotalCopies() throws Exception {
+        String isbn = newBook(3, 1);
+
+        JsonNode result = adjust(row(isbn, 5));
+
+        assertEquals(3, result.path("applied").path(isbn).asInt());
+        assertEquals(3, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    @Test
+    void titleGoingBelowZeroIsRejectedWithAllItsRows() throws Exception {
+        String scarce = newBook(2, 1);
+        String fine = newBook(2, 2);
+
+        JsonNode result = adjust(row(scarce, -1), row(fine, -1), row(scarce, 1), row(scarce, -2));
+
+        assertEquals(1, result.path("applied").size());
+        assertEquals(1, result.path("applied").path(fine).asInt());
+        JsonNode rejected = result.path("rejected");
+        assertEquals(List.of(0, 2, 3), indexes(rejected));
+        assertEquals("Not enough available copies", rejected.get(0).path("reason").asText());
+        assertEquals(scarce, rejected.get(0).path("isbn").asText());
+        assertEquals(1, bookService.getBookByIsbn(scarce).getAvailableCopies());
+    }
+
+    @Test
+    void rowsWithoutAnIsbnOrWithAnUnknownOneAreRejectedByIndex() throws Exception {
+        String isbn = newBook(4, 1);
+        String unknown = "unknown-" + UUID.randomUUID();
+
+        JsonNode result = adjust(row(unknown, 1), row(isbn, 1), row(" ", 1), row(unknown, -1));
+
+        assertEquals(2, result.path("applied").path(isbn).asInt());
+        JsonNode rejected = result.path("rejected");
+        assertEquals(List.of(0, 2, 3), indexes(rejected));
+        assertEquals("Book not found", rejected.get(0).path("reason").asText());
+        assertEquals("ISBN is required", rejected.get(1).path("reason").asText());
+        assertEquals("Book not found", rejected.get(2).path("reason").asText());
+    }
+
+    private JsonNode adjust(CopyAdjustment... rows) throws Exception {
+        MvcResult started = mockMvc.perform(post("/api/v1/books/copies/adjust")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(Arrays.asList(rows))))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult result = mockMvc.perform(asyncDispatch(started)).andReturn();
+        assertEquals(200, result.getResponse().getStatus());
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private static CopyAdjustment row(String isbn, int delta) {
+        return new CopyAdjustment(isbn, delta);
+    }
+
+    private static List<Integer> indexes(JsonNode rejected) {
+        List<Integer> indexes = new ArrayList<>();
+        rejected.forEach(row -> indexes.add(row.path("index").asInt()));
+        return indexes;
+    }
+
+    private String newBook(int total, int available) {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Copy adjustment test");
+        book.setTotalCopies(total);
+        book.compareAndSetAvailableCopies(0, available);
+        return bookService.createBook(book).getIsbn();
+    }
+}
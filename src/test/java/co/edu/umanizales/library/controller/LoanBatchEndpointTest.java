@@ -0,0 +1,169 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.Idempotency;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * POST /api/v1/loans/batch and /api/v1/loans/batch/return: every title or loan in the
+ * request is handled, or none is.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class LoanBatchEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void batchCheckoutLendsEveryTitle() throws Exception {
+        long userId = newPatron();
+        String first = newBook(2);
+        String second = newBook(1);
+
+        MvcResult result = perform(post("/api/v1/loans/batch"), Map.of("userId", userId, "isbns", List.of(first, second)));
+
+        assertEquals(201, result.getResponse().getStatus());
+        JsonNode loans = json(result);
+        assertEquals(2, loans.size());
+        assertEquals(first, loans.get(0).path("book").path("isbn").asText());
+        assertEquals(second, loans.get(1).path("book").path("isbn").asText());
+        assertEquals(1, bookService.getBookByIsbn(first).getAvailableCopies());
+        assertEquals(0, bookService.getBookByIsbn(second).getAvailableCopies());
+    }
+
+    @Test
+    void batchCheckoutWithAnUnavailableTitleTakesNothing() throws Exception {
+        long userId = newPatron();
+        String available = newBook(1);
+        String unavailable = newBook(0);
+
+        MvcResult result = perform(post("/api/v1/loans/batch"),
+                Map.of("userId", userId, "isbns", List.of(available, unavailable)));
+
+        assertEquals(409, result.getResponse().getStatus());
+        assertEquals(1, bookService.getBookByIsbn(available).getAvailableCopies());
+    }
+
+    @Test
+    void batchCheckoutWithAnUnknownTitleIsNotFound() throws Exception {
+        long userId = newPatron();
+        String available = newBook(1);
+
+        MvcResult result = perform(post("/api/v1/loans/batch"),
+                Map.of("userId", userId, "isbns", List.of(available, "unknown-" + UUID.randomUUID())));
+
+        assertEquals(404, result.getResponse().getStatus());
+        assertEquals(1, bookService.getBookByIsbn(available).getAvailableCopies());
+    }
+
+    @Test
+    void retriedBatchCheckoutReplaysTheOriginalLoans() throws Exception {
+        long userId = newPatron();
+        String isbn = newBook(3);
+        Map<String, Object> body = Map.of("userId", userId, "isbns", List.of(isbn));
+        String key = UUID.randomUUID().toString();
+
+        MvcResult first = perform(post("/api/v1/loans/batch").header(Idempotency.HEADER, key), body);
+        MvcResult retry = perform(post("/api/v1/loans/batch").header(Idempotency.HEADER, key), body);
+        MvcResult reused = perform(post("/api/v1/loans/batch").header(Idempotency.HEADER, key),
+                Map.of("userId", userId, "isbns", List.of(isbn, isbn)));
+
+        assertEquals(201, retry.getResponse().getStatus());
+        assertEquals(json(first).get(0).path("id"), json(retry).get(0).path("id"));
+        assertEquals(422, reused.getResponse().getStatus());
+        assertEquals(2, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    @Test
+    void batchReturnGivesEveryCopyBack() throws Exception {
+        long userId = newPatron();
+        String isbn = newBook(2);
+        JsonNode loans = json(perform(post("/api/v1/loans/batch"), Map.of("userId", userId, "isbns", List.of(isbn, isbn))));
+        List<Long> loanIds = List.of(loans.get(0).path("id").asLong(), loans.get(1).path("id").asLong());
+
+        MvcResult result = perform(post("/api/v1/loans/batch/return"), Map.of("loanIds", loanIds));
+
+        assertEquals(200, result.getResponse().getStatus());
+        JsonNode returned = json(result);
+        assertEquals(2, returned.size());
+        assertTrue(returned.get(0).path("returned").asBoolean());
+        assertEquals(2, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    @Test
+    void batchReturnWithAnUnknownLoanReturnsNothing() throws Exception {
+        long userId = newPatron();
+        String isbn = newBook(1);
+        JsonNode loans = json(perform(post("/api/v1/loans/batch"), Map.of("userId", userId, "isbns", List.of(isbn))));
+        long loanId = loans.get(0).path("id").asLong();
+
+        MvcResult result = perform(post("/api/v1/loans/batch/return"), Map.of("loanIds", List.of(loanId, -1L)));
+
+        assertEquals(404, result.getResponse().getStatus());
+        assertEquals(0, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    private MvcResult perform(MockHttpServletRequestBuilder builder, Object body) throws Exception {
+        MvcResult started = mockMvc.perform(builder
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(body)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(started)).andReturn();
+    }
+
+    private JsonNode json(MvcResult result) throws Exception {
+        return objectMapper.readTree(result.getResponse().getContentAsByteArray());
+    }
+
+    private String newBook(int copies) {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Batch endpoint test");
+        book.setTotalCopies(Math.max(1, copies));
+        book.compareAndSetAvailableCopies(0, copies);
+        return bookService.createBook(book).getIsbn();
+    }
+
+    private long newPatron() throws IOException {
+        String name = "patron-" + UUID.randomUUID();
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setUsername(name);
+        user.setPassword("secret");
+        user.setRole(UserRole.MEMBER);
+        user.setActive(true);
+        return userService.createUser(user).getId();
+    }
+}
@@ -0,0 +1,112 @@
+package co.edu.umanizales.library.controller;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * GET /api/v1/books?isbn=..., /api/v1/users?ids=... and /api/v1/loans?ids=...: the matches
+ * come back in request order and unknown keys are skipped.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class MultiGetEndpointTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private LoanService loanService;
+
+    @Test
+    void booksComeBackInRequestOrder() throws Exception {
+        String first = newBook();
+        String second = newBook();
+
+        mockMvc.perform(get("/api/v1/books").param("isbn", second, "unknown-" + UUID.randomUUID(), first))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].isbn").value(second))
+                .andExpect(jsonPath("$[1].isbn").value(first));
+    }
+
+    @Test
+    void unchangedBooksAreNotSentAgain() throws Exception {
+        String isbn = newBook();
+        String etag = mockMvc.perform(get("/api/v1/books").param("isbn", isbn))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/v1/books").param("isbn", isbn).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void usersComeBackInRequestOrder() throws Exception {
+        User first = newPatron();
+        User second = newPatron();
+
+        mockMvc.perform(get("/api/v1/users").param("ids", String.valueOf(second.getId()), "-1", String.valueOf(first.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(second.getId()))
+                .andExpect(jsonPath("$[1].id").value(first.getId()));
+    }
+
+    @Test
+    void loansComeBackInRequestOrder() throws Exception {
+        User patron = newPatron();
+        List<Loan> loans = loanService.createLoans(patron.getId(), List.of(newBook(), newBook()));
+        long first = loans.get(0).getId();
+        long second = loans.get(1).getId();
+
+        mockMvc.perform(get("/api/v1/loans").param("ids", String.valueOf(second), String.valueOf(first), "-1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(second))
+                .andExpect(jsonPath("$[1].id").value(first));
+    }
+
+    private String newBook() {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Multi-get endpoint test");
+        book.setTotalCopies(1);
+        book.compareAndSetAvailableCopies(0, 1);
+        return bookService.createBook(book).getIsbn();
+    }
+
+    private User newPatron() throws IOException {
+        String name = "patron-" + UUID.randomUUID();
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setUsername(name);
+        user.setPassword("secret");
+        user.setRole(UserRole.MEMBER);
+        user.setActive(true);
+        return userService.createUser(user);
+    }
+}
@@ -0,0 +1,229 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checkouts and returns racing on the same titles: copies are never handed out twice
+ * and every return gives its copy back exactly once.
+ */
+@SpringBootTest
+class CheckoutConcurrencyTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private PersistenceQueue persistenceQueue;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCheckoutsNeverTakeMoreCopiesThanExist() throws Exception {
+        String isbn = newBook(5);
+        List<User> patrons = newPatrons(20);
+
+        List<Callable<Loan>> checkouts = new ArrayList<>();
+        for (User patron : patrons) {
+            checkouts.add(() -> loanService.createLoan(loanOf(patron, isbn)));
+        }
+        List<Future<Loan>> results = runTogether(checkouts);
+
+        int succeeded = 0;
+        for (Future<Loan> result : results) {
+            try {
+                assertNotNull(result.get());
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+        assertEquals(5, succeeded);
+        assertEquals(0, bookService.getBookByIsbn(isbn).getAvailableCopies());
+        assertEquals(5, loanService.getLoansByBookId(isbn).size());
+    }
+
+    @Test
+    void concurrentReturnsGiveEachCopyBackOnce() throws Exception {
+        String isbn = newBook(4);
+        List<Loan> loans = new ArrayList<>();
+        for (User patron : newPatrons(4)) {
+            loans.add(loanService.createLoan(loanOf(patron, isbn)));
+        }
+        assertEquals(0, bookService.getBookByIsbn(isbn).getAvailableCopies());
+
+        // Every loan is returned twice at the same time; only one of the two counts
+        List<Callable<Boolean>> returns = new ArrayList<>();
+        for (Loan loan : loans) {
+            returns.add(() -> loanService.returnLoan(loan.getId()));
+            returns.add(() -> loanService.returnLoan(loan.getId()));
+        }
+        int returned = 0;
+        for (Future<Boolean> result : runTogether(returns)) {
+            if (result.get()) {
+                returned++;
+            }
+        }
+
+        assertEquals(4, returned);
+        assertEquals(4, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    @Test
+    void concurrentBatchCheckoutsAreAllOrNothing() throws Exception {
+        String first = newBook(3);
+        String second = newBook(3);
+        List<User> patrons = newPatrons(8);
+
+        List<Callable<List<Loan>>> batches = new ArrayList<>();
+        for (User patron : patrons) {
+            batches.add(() -> loanService.createLoans(patron.getId(), List.of(first, second)));
+        }
+        int succeeded = 0;
+        for (Future<List<Loan>> result : runTogether(batches)) {
+            try {
+                assertEquals(2, result.get().size());
+                succeeded++;
+            } catch (ExecutionException e) {
+                assertInstanceOf(IllegalStateException.class, e.getCause());
+            }
+        }
+
+        assertEquals(3, succeeded);
+        assertEquals(0, bookService.getBookByIsbn(first).getAvailableCopies());
+        assertEquals(0, bookService.getBookByIsbn(second).getAvailableCopies());
+        for (User patron : patrons) {
+            int loans = loanService.getLoansByUserId(patron.getId()).size();
+            assertTrue(loans == 0 || loans == 2, "patron " + patron.getId() + " has " + loans + " loans");
+        }
+    }
+
+    @Test
+    void counterStaysWithinBoundsUnderContention() throws Exception {
+        String isbn = newBook(3);
+        AtomicInteger taken = new AtomicInteger();
+        AtomicInteger maxTaken = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            workers.add(() -> {
+                for (int i = 0; i < 200; i++) {
+                    if (bookService.decreaseAvailableCopies(isbn, 1)) {
+                        maxTaken.accumulateAndGet(taken.incrementAndGet(), Math::max);
+                        taken.decrementAndGet();
+                        assertTrue(bookService.increaseAvailableCopies(isbn, 1));
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> result : runTogether(workers)) {
+            result.get();
+        }
+
+        assertTrue(maxTaken.get() <= 3);
+        assertEquals(3, bookService.getBookByIsbn(isbn).getAvailableCopies());
+    }
+
+    @Test
+    void copyChangesBumpTheVersionAndReachTheFile() throws Exception {
+        String isbn = newBook(2);
+        long version = bookService.getVersion();
+
+        assertTrue(bookService.decreaseAvailableCopies(isbn, 1));
+        assertTrue(bookService.getVersion() > version);
+
+        persistenceQueue.flush(10_000);
+        String row = Files.readAllLines(Path.of("data/books.csv")).stream()
+                .filter(line -> line.startsWith(isbn + ","))
+                .findFirst()
+                .orElseThrow();
+        assertTrue(row.contains(",1,2,"), row);
+    }
+
+    // Starts all the tasks at the same moment
+    private <T> List<Future<T>> runTogether(List<Callable<T>> tasks) {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<T>> results = new ArrayList<>();
+        for (Callable<T> task : tasks) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return task.call();
+            }));
+        }
+        start.countDown();
+        return results;
+    }
+
+    private String newBook(int copies) {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Concurrency test");
+        book.setTotalCopies(copies);
+        book.compareAndSetAvailableCopies(0, copies);
+        return bookService.createBook(book).getIsbn();
+    }
+
+    private List<User> newPatrons(int count) throws IOException {
+        List<User> patrons = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String name = "patron-" + UUID.randomUUID();
+            User user = new User();
+            user.setName(name);
+            user.setEmail(name + "@example.com");
+            user.setUsername(name);
+            user.setPassword("secret");
+            user.setRole(UserRole.MEMBER);
+            user.setActive(true);
+            patrons.add(userService.createUser(user));
+        }
+        return patrons;
+    }
+
+    private static Loan loanOf(User patron, String isbn) {
+        Loan loan = new Loan();
+        User user = new User();
+        user.setId(patron.getId());
+        loan.setUser(user);
+        Book book = new Book();
+        book.setIsbn(isbn);
+        loan.setBook(book);
+        return loan;
+    }
+}
@@ -0,0 +1,198 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Category;
+import co.edu.umanizales.library.model.CirculationStats;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The rollup file is used at startup only when its watermark matches the loaded loans;
+ * otherwise the counters are rebuilt from the loans and written again. The application's
+ * own rollup file is put aside while these tests write theirs.
+ */
+class CirculationStatsServiceImplTest {
+
+    private static final Path FILE = Path.of("data/circulation_rollups.csv");
+    private static final Path SAVED = Path.of("data/circulation_rollups.csv.saved");
+    private static final LocalDate MONDAY = LocalDate.of(2025, 3, 3);
+    private static final long FICTION = 1L;
+    private static final long SCIENCE = 2L;
+
+    private final PersistenceQueue persistenceQueue = mock(PersistenceQueue.class);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Files.createDirectories(FILE.getParent());
+        if (Files.exists(FILE)) {
+            Files.move(FILE, SAVED, StandardCopyOption.REPLACE_EXISTING);
+        }
+        // Writes happen right away, so each test can read the file it produced
+        doAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return null;
+        }).when(persistenceQueue).submit(anyString(), any());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.deleteIfExists(FILE);
+        if (Files.exists(SAVED)) {
+            Files.move(SAVED, FILE);
+        }
+    }
+
+    @Test
+    void missingFileIsRebuiltFromTheLoansAndWritten() throws IOException {
+        List<Loan> loans = history();
+
+        CirculationStats stats = statsOf(loans).getCirculation(MONDAY, MONDAY.plusDays(6), "day", null);
+
+        assertEquals(3, stats.getTotalCheckouts());
+        assertEquals(1, stats.getTotalReturns());
+        assertEquals(2, stats.getBuckets().get(0).getCheckouts());
+        assertEquals(1, stats.getBuckets().get(4).getReturns());
+        List<String> lines = Files.readAllLines(FILE);
+        assertEquals(watermark(loans), lines.get(0));
+        assertEquals("day,categoryId,checkouts,returns", lines.get(1));
+        assertTrue(lines.contains(MONDAY + "," + FICTION + ",2,0"));
+    }
+
+    @Test
+    void fileWithTheLoansWatermarkIsLoadedAsIs() throws IOException {
+        List<Loan> loans = history();
+        // Counts the loans could not produce, so only the file can be their source
+        Files.write(FILE, List.of(watermark(loans), "day,categoryId,checkouts,returns",
+                MONDAY + "," + FICTION + ",7,0"));
+
+        CirculationStats stats = statsOf(loans).getCirculation(MONDAY, MONDAY.plusDays(6), "week", null);
+
+        assertEquals(7, stats.getTotalCheckouts());
+        assertEquals(0, stats.getTotalReturns());
+    }
+
+    @Test
+    void fileWithAnotherWatermarkIsRebuilt() throws IOException {
+        List<Loan> loans = history();
+        Files.write(FILE, List.of("# loans,returned,days=3,1,1", "day,categoryId,checkouts,returns",
+                MONDAY + "," + FICTION + ",7,0"));
+
+        CirculationStats stats = statsOf(loans).getCirculation(MONDAY, MONDAY.plusDays(6), "week", null);
+
+        assertEquals(3, stats.getTotalCheckouts());
+        assertEquals(watermark(loans), Files.readAllLines(FILE).get(0));
+    }
+
+    @Test
+    void fileWithoutAWatermarkIsRebuilt() throws IOException {
+        List<Loan> loans = history();
+        Files.write(FILE, List.of("day,categoryId,checkouts,returns", MONDAY + "," + FICTION + ",7,0"));
+
+        CirculationStats stats = statsOf(loans).getCirculation(MONDAY, MONDAY.plusDays(6), "week", null);
+
+        assertEquals(3, stats.getTotalCheckouts());
+    }
+
+    @Test
+    void unparsableRowsAreSkipped() throws IOException {
+        List<Loan> loans = history();
+        Files.write(FILE, List.of(watermark(loans), "day,categoryId,checkouts,returns",
+                "not-a-day," + FICTION + ",5,0", MONDAY + "," + FICTION + ",2,0"));
+
+        CirculationStats stats = statsOf(loans).getCirculation(MONDAY, MONDAY, "day", null);
+
+        assertEquals(2, stats.getTotalCheckouts());
+    }
+
+    @Test
+    void eventsKeepTheWatermarkInStepWithTheLoans() {
+        List<Loan> loans = history();
+        CirculationStatsServiceImpl stats = statsOf(List.of());
+        for (Loan loan : loans) {
+            stats.onLoanEvent(LoanEvent.of(LoanEvent.Type.CHECKED_OUT, loan, null));
+            if (loan.isReturned()) {
+                stats.onLoanEvent(LoanEvent.of(LoanEvent.Type.RETURNED, loan));
+            }
+        }
+
+        // A restart with the same loans finds a matching file and keeps its counts
+        CirculationStats restarted = statsOf(loans).getCirculation(MONDAY, MONDAY.plusDays(6), "day", SCIENCE);
+
+        assertEquals(1, restarted.getTotalCheckouts());
+        assertEquals(1, restarted.getTotalReturns());
+    }
+
+    @Test
+    void deletedLoanTakesBackItsCheckoutAndReturn() throws IOException {
+        List<Loan> loans = history();
+        CirculationStatsServiceImpl stats = statsOf(loans);
+        Loan returned = loans.get(2);
+
+        stats.onLoanEvent(LoanEvent.of(LoanEvent.Type.DELETED, returned));
+
+        CirculationStats week = stats.getCirculation(MONDAY, MONDAY.plusDays(6), "week", null);
+        assertEquals(2, week.getTotalCheckouts());
+        assertEquals(0, week.getTotalReturns());
+        assertEquals(watermark(loans.subList(0, 2)), Files.readAllLines(FILE).get(0));
+    }
+
+    private CirculationStatsServiceImpl statsOf(List<Loan> loans) {
+        LoanService loanService = mock(LoanService.class);
+        when(loanService.getAllLoans()).thenReturn(loans);
+        return new CirculationStatsServiceImpl(loanService, persistenceQueue, 12);
+    }
+
+    // Two fiction checkouts on Monday, and a science loan out on Tuesday and back on Friday
+    private static List<Loan> history() {
+        Loan returned = loan(3, SCIENCE, MONDAY.plusDays(1));
+        returned.setReturned(true);
+        returned.setReturnDate(MONDAY.plusDays(4));
+        return List.of(loan(1, FICTION, MONDAY), loan(2, FICTION, MONDAY), returned);
+    }
+
+    private static String watermark(List<Loan> loans) {
+        long returned = loans.stream().filter(Loan::isReturned).count();
+        long days = loans.stream()
+                .mapToLong(loan -> loan.getLoanDate().toEpochDay()
+                        + (loan.isReturned() ? loan.getReturnDate().toEpochDay() : 0))
+                .sum();
+        return "# loans,returned,days=" + loans.size() + "," + returned + "," + days;
+    }
+
+    private static Loan loan(long id, long categoryId, LocalDate loanDate) {
+        User user = new User();
+        user.setId(10 + id);
+        Category category = new Category();
+        category.setId(categoryId);
+        Book book = new Book();
+        book.setIsbn("isbn-" + id);
+        book.setCategory(category);
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(loanDate);
+        loan.setDueDate(loanDate.plusDays(14));
+        return loan;
+    }
+}
@@ -0,0 +1,169 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.FineEvent;
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.event.ReviewEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.FineRecord;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.PatronAccount;
+import co.edu.umanizales.library.model.PatronDashboard;
+import co.edu.umanizales.library.model.Review;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.FineRecordService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.PatronAccountService;
+import co.edu.umanizales.library.service.ReviewService;
+import co.edu.umanizales.library.service.UserService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dashboards kept from events: fines and reviews are filed under their current patron,
+ * so one moved to another patron leaves the previous dashboard.
+ */
+class DashboardServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final UserService userService = mock(UserService.class);
+    private final LoanService loanService = mock(LoanService.class);
+    private final FineRecordService fineRecordService = mock(FineRecordService.class);
+    private final ReviewService reviewService = mock(ReviewService.class);
+    private final PatronAccountService patronAccounts = mock(PatronAccountService.class);
+    private User first;
+    private User second;
+    private FineRecord fine;
+    private Review review;
+    private DashboardServiceImpl dashboards;
+
+    @BeforeEach
+    void setUp() {
+        first = patron(1);
+        second = patron(2);
+        fine = fine(10, first);
+        review = review(20, first, TODAY);
+        when(loanService.getAllLoans()).thenReturn(List.of());
+        when(fineRecordService.getAllFineRecords()).thenReturn(List.of(fine));
+        when(reviewService.getAllReviews()).thenReturn(List.of(review));
+        when(reviewService.getReviewById(review.getId())).thenReturn(review);
+        dashboards = new DashboardServiceImpl(userService, loanService, fineRecordService, reviewService, patronAccounts, 2);
+    }
+
+    @Test
+    void startupFilesFinesAndReviewsUnderTheirPatron() {
+        PatronDashboard dashboard = dashboards.getDashboard(first.getId());
+
+        assertEquals(List.of(fine), dashboard.getUnpaidFines());
+        assertEquals(List.of(review), dashboard.getRecentReviews());
+        assertTrue(dashboards.getDashboard(second.getId()).getUnpaidFines().isEmpty());
+    }
+
+    @Test
+    void fineMovedToAnotherPatronIsRefiled() {
+        fine.setUser(second);
+
+        dashboards.onFineEvent(new FineEvent(FineEvent.Type.UPDATED, fine));
+
+        assertTrue(dashboards.getDashboard(first.getId()).getUnpaidFines().isEmpty());
+        assertEquals(List.of(fine), dashboards.getDashboard(second.getId()).getUnpaidFines());
+    }
+
+    @Test
+    void paidOrDeletedFinesLeaveTheDashboard() {
+        FineRecord other = fine(11, first);
+        dashboards.onFineEvent(new FineEvent(FineEvent.Type.CREATED, other));
+        fine.setPaid(true);
+
+        dashboards.onFineEvent(new FineEvent(FineEvent.Type.UPDATED, fine));
+        assertEquals(List.of(other), dashboards.getDashboard(first.getId()).getUnpaidFines());
+
+        dashboards.onFineEvent(new FineEvent(FineEvent.Type.DELETED, other));
+        assertTrue(dashboards.getDashboard(first.getId()).getUnpaidFines().isEmpty());
+    }
+
+    @Test
+    void reviewMovedToAnotherPatronIsRefiled() {
+        review.setUser(second);
+
+        dashboards.onReviewEvent(ReviewEvent.of(ReviewEvent.Type.UPDATED, review));
+
+        assertTrue(dashboards.getDashboard(first.getId()).getRecentReviews().isEmpty());
+        assertEquals(List.of(review), dashboards.getDashboard(second.getId()).getRecentReviews());
+    }
+
+    @Test
+    void deletedReviewLeavesTheDashboard() {
+        dashboards.onReviewEvent(ReviewEvent.of(ReviewEvent.Type.DELETED, review));
+
+        assertTrue(dashboards.getDashboard(first.getId()).getRecentReviews().isEmpty());
+    }
+
+    @Test
+    void onlyTheNewestReviewsAreShown() {
+        Review older = review(21, first, TODAY.minusDays(3));
+        Review newer = review(22, first, TODAY.plusDays(1));
+        for (Review created : List.of(older, newer)) {
+            when(reviewService.getReviewById(created.getId())).thenReturn(created);
+            dashboards.onReviewEvent(ReviewEvent.of(ReviewEvent.Type.CREATED, created));
+        }
+
+        assertEquals(List.of(newer, review), dashboards.getDashboard(first.getId()).getRecentReviews());
+    }
+
+    @Test
+    void loanEventsKeepTheActiveLoans() {
+        Loan loan = new Loan();
+        loan.setId(30);
+        loan.setUser(first);
+        loan.setBook(new Book());
+        loan.setDueDate(TODAY.plusDays(14));
+        when(loanService.getLoanById(loan.getId())).thenReturn(loan);
+
+        dashboards.onLoanEvent(LoanEvent.of(LoanEvent.Type.CHECKED_OUT, loan));
+        assertEquals(List.of(loan), dashboards.getDashboard(first.getId()).getActiveLoans());
+
+        loan.setReturned(true);
+        dashboards.onLoanEvent(LoanEvent.of(LoanEvent.Type.RETURNED, loan));
+        assertTrue(dashboards.getDashboard(first.getId()).getActiveLoans().isEmpty());
+    }
+
+    @Test
+    void unknownPatronHasNoDashboard() {
+        assertNull(dashboards.getDashboard(99));
+    }
+
+    private User patron(long id) {
+        User user = new User();
+        user.setId(id);
+        user.setName("patron-" + id);
+        when(userService.getUserById(id)).thenReturn(user);
+        when(patronAccounts.getAccount(id)).thenReturn(new PatronAccount());
+        return user;
+    }
+
+    private static FineRecord fine(long id, User user) {
+        FineRecord fine = new FineRecord();
+        fine.setId(id);
+        fine.setUser(user);
+        fine.setAmount(2.5);
+        fine.setDueDate(TODAY.plusDays(30));
+        return fine;
+    }
+
+    private static Review review(long id, User user, LocalDate date) {
+        Review review = new Review();
+        review.setId(id);
+        review.setUser(user);
+        review.setRating(4);
+        review.setReviewDate(date);
+        return review;
+    }
+}
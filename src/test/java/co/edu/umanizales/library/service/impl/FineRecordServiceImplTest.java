@@ -0,0 +1,163 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.FineAccrualRun;
+import co.edu.umanizales.library.model.FineReason;
+import co.edu.umanizales.library.model.FineRecord;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.PatronAccountService;
+import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.PersistenceQueue;
+import co.edu.umanizales.library.util.StripedLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Overdue-fine accrual at 0.50 a day: the fines of a loan grow with its overdue days,
+ * re-runs add nothing, and days after a paid fine are charged again.
+ */
+class FineRecordServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final long LOAN_ID = 1_000_001L;
+
+    private final UserService userService = mock(UserService.class);
+    private final LoanService loanService = mock(LoanService.class);
+    private final PatronAccountService patronAccounts = mock(PatronAccountService.class);
+    private FineRecordServiceImpl fines;
+    private Loan loan;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setId(77);
+        Book book = new Book();
+        book.setIsbn("isbn-fines");
+        loan = new Loan();
+        loan.setId(LOAN_ID);
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(TODAY.minusDays(24));
+        loan.setDueDate(TODAY.minusDays(10));
+
+        when(userService.getUserById(anyLong())).thenReturn(user);
+        when(loanService.getLoanById(LOAN_ID)).thenReturn(loan);
+        when(loanService.getAllLoans()).thenReturn(List.of(loan));
+        fines = new FineRecordServiceImpl(userService, loanService, new StripedLock(), patronAccounts,
+                mock(PersistenceQueue.class), mock(ApplicationEventPublisher.class), 0.5, 30);
+    }
+
+    @Test
+    void accrualCreatesAFineForTheOverdueDays() {
+        FineAccrualRun run = fines.accrueOverdueFines(TODAY);
+
+        assertEquals(1, run.getOverdueLoans());
+        assertEquals(1, run.getCreated());
+        assertEquals(5.0, run.getTotalAccrued());
+        FineRecord fine = lateFines().get(0);
+        assertEquals(5.0, fine.getAmount());
+        assertEquals(TODAY.plusDays(30), fine.getDueDate());
+    }
+
+    @Test
+    void rerunOnTheSameDayAddsNothing() {
+        fines.accrueOverdueFines(TODAY);
+
+        FineAccrualRun rerun = fines.accrueOverdueFines(TODAY);
+
+        assertEquals(0, rerun.getCreated());
+        assertEquals(0, rerun.getUpdated());
+        assertEquals(1, rerun.getUnchanged());
+        assertEquals(0.0, rerun.getTotalAccrued());
+        assertEquals(1, lateFines().size());
+    }
+
+    @Test
+    void laterRunRaisesTheUnpaidFineAndCountsOnlyTheIncrease() {
+        fines.accrueOverdueFines(TODAY.minusDays(3));
+
+        FineAccrualRun run = fines.accrueOverdueFines(TODAY);
+
+        assertEquals(1, run.getUpdated());
+        assertEquals(1.5, run.getTotalAccrued());
+        assertEquals(List.of(5.0), lateFines().stream().map(FineRecord::getAmount).toList());
+    }
+
+    @Test
+    void daysAfterAPaidFineAreChargedInANewFine() {
+        fines.accrueOverdueFines(TODAY.minusDays(3));
+        assertTrue(fines.markAsPaid(lateFines().get(0).getId()));
+
+        FineAccrualRun run = fines.accrueOverdueFines(TODAY);
+
+        assertEquals(1, run.getCreated());
+        assertEquals(1.5, run.getTotalAccrued());
+        List<FineRecord> lateFines = lateFines();
+        assertEquals(2, lateFines.size());
+        assertTrue(lateFines.get(0).isPaid());
+        assertEquals(3.5, lateFines.get(0).getAmount());
+        assertFalse(lateFines.get(1).isPaid());
+        assertEquals(1.5, lateFines.get(1).getAmount());
+    }
+
+    @Test
+    void lateReturnRaisesTheAccruedFineToTheFinalAmount() {
+        fines.accrueOverdueFines(TODAY.minusDays(3));
+
+        FineRecord fine = fines.chargeLateReturn(LOAN_ID, TODAY);
+
+        assertEquals(5.0, fine.getAmount());
+        assertEquals(1, lateFines().size());
+    }
+
+    @Test
+    void lateReturnAfterAPaidFineChargesTheRest() {
+        fines.accrueOverdueFines(TODAY.minusDays(3));
+        assertTrue(fines.markAsPaid(lateFines().get(0).getId()));
+
+        FineRecord fine = fines.chargeLateReturn(LOAN_ID, TODAY);
+
+        assertFalse(fine.isPaid());
+        assertEquals(1.5, fine.getAmount());
+    }
+
+    @Test
+    void returnOnTimeChargesNothing() {
+        assertNull(fines.chargeLateReturn(LOAN_ID, loan.getDueDate()));
+        assertTrue(lateFines().isEmpty());
+    }
+
+    @Test
+    void returnedLoansAreNotAccrued() {
+        loan.setReturned(true);
+
+        FineAccrualRun run = fines.accrueOverdueFines(TODAY);
+
+        assertEquals(0, run.getOverdueLoans());
+        assertTrue(lateFines().isEmpty());
+    }
+
+    @Test
+    void accrualAsOfAFutureDayIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> fines.accrueOverdueFines(TODAY.plusDays(1)));
+    }
+
+    private List<FineRecord> lateFines() {
+        return fines.getAllFineRecords().stream()
+                .filter(fine -> fine.getReason() == FineReason.LATE_RETURN && fine.getLoan().getId() == LOAN_ID)
+                .sorted(Comparator.comparingLong(FineRecord::getId))
+                .toList();
+    }
+}
@@ -0,0 +1,164 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Category;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.LoanHistoryReport;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.LoanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LoanHistoryServiceImplTest {
+
+    private static final LocalDate FROM = LocalDate.of(2025, 1, 1);
+    private static final LocalDate TO = LocalDate.of(2025, 12, 31);
+    private static final LocalDate MARKER_DAY = LocalDate.of(1990, 1, 1);
+    private static final long FICTION = 1L;
+    private static final long SCIENCE = 2L;
+
+    private final List<LoanHistoryServiceImpl> started = new ArrayList<>();
+    private long markers;
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(LoanHistoryServiceImpl::shutdown);
+    }
+
+    @Test
+    void loansLoadedAtStartupAreReported() {
+        Loan late = loan(1, 10, "isbn-1", FICTION, LocalDate.of(2025, 2, 1));
+        late.setReturned(true);
+        late.setReturnDate(LocalDate.of(2025, 2, 20));   // due on 2025-02-15
+        Loan active = loan(2, 11, "isbn-2", SCIENCE, LocalDate.of(2025, 3, 1));
+        Loan outOfRange = loan(3, 10, "isbn-1", FICTION, LocalDate.of(2024, 6, 1));
+        LoanHistoryServiceImpl history = historyOf(List.of(active, late, outOfRange));
+
+        LoanHistoryReport report = history.getReport(FROM, TO, null, null);
+
+        assertEquals(2, report.getLoans());
+        assertEquals(1, report.getReturned());
+        assertEquals(1, report.getReturnedLate());
+        assertEquals(1, report.getActive());
+        assertEquals(1, report.getOverdue());
+        assertEquals(19.0, report.getAverageDaysOut());
+        assertEquals(2, report.getDistinctTitles());
+        assertEquals(3, report.getRowsScanned());
+    }
+
+    @Test
+    void loanEventsUpdateTheirRows() throws InterruptedException {
+        LoanHistoryServiceImpl history = historyOf(List.of());
+        LocalDate loanDate = LocalDate.of(2025, 4, 1);
+        LocalDate dueDate = loanDate.plusDays(14);
+
+        history.onLoanEvent(event(LoanEvent.Type.CHECKED_OUT, 1, 10, "isbn-1", FICTION, loanDate, dueDate, null));
+        history.onLoanEvent(event(LoanEvent.Type.CHECKED_OUT, 2, 11, "isbn-2", FICTION, loanDate, dueDate, null));
+        history.onLoanEvent(event(LoanEvent.Type.RENEWED, 1, 10, "isbn-1", FICTION, loanDate, dueDate.plusDays(14), null));
+        history.onLoanEvent(event(LoanEvent.Type.RETURNED, 1, 10, "isbn-1", FICTION, loanDate, dueDate, dueDate.plusDays(7)));
+        drain(history);
+        LoanHistoryReport report = history.getReport(FROM, TO, null, null);
+        assertEquals(2, report.getLoans());
+        assertEquals(1, report.getReturned());
+        assertEquals(0, report.getReturnedLate(), "returned before the renewed due date");
+
+        history.onLoanEvent(event(LoanEvent.Type.RETURN_UNDONE, 1, 10, "isbn-1", FICTION, loanDate, dueDate, null));
+        history.onLoanEvent(event(LoanEvent.Type.DELETED, 2, 11, "isbn-2", FICTION, loanDate, dueDate, null));
+        drain(history);
+        report = history.getReport(FROM, TO, null, null);
+        assertEquals(1, report.getLoans());
+        assertEquals(0, report.getReturned());
+        assertEquals(1, report.getActive());
+        assertEquals(1, report.getDistinctTitles());
+    }
+
+    @Test
+    void reportFiltersByCategoryAndPatron() {
+        LoanHistoryServiceImpl history = historyOf(List.of(
+                loan(1, 10, "isbn-1", FICTION, LocalDate.of(2025, 5, 1)),
+                loan(2, 10, "isbn-2", SCIENCE, LocalDate.of(2025, 5, 2)),
+                loan(3, 11, "isbn-3", FICTION, LocalDate.of(2025, 5, 3))));
+
+        assertEquals(2, history.getReport(FROM, TO, FICTION, null).getLoans());
+        assertEquals(2, history.getReport(FROM, TO, null, 10L).getLoans());
+        assertEquals(1, history.getReport(FROM, TO, SCIENCE, 10L).getLoans());
+        assertEquals(0, history.getReport(FROM, TO, 99L, null).getLoans());
+    }
+
+    @Test
+    void scanSplitIntoChunksCountsEveryRow() throws InterruptedException {
+        LoanHistoryServiceImpl history = historyOf(List.of());
+        int loans = 150_000;
+        for (int id = 1; id <= loans; id++) {
+            LocalDate loanDate = FROM.plusDays(id % 365);
+            history.onLoanEvent(event(LoanEvent.Type.CHECKED_OUT, id, id % 500, "isbn-" + id % 1_000,
+                    id % 2 == 0 ? FICTION : SCIENCE, loanDate, loanDate.plusDays(14), null));
+        }
+        drain(history);
+
+        LoanHistoryReport report = history.getReport(FROM, TO, null, null);
+
+        assertEquals(loans, report.getLoans());
+        assertEquals(1_000, report.getDistinctTitles());
+        assertEquals(loans / 2, history.getReport(FROM, TO, FICTION, null).getLoans());
+    }
+
+    @Test
+    void rangeMustNotBeReversed() {
+        LoanHistoryServiceImpl history = historyOf(List.of());
+
+        assertThrows(IllegalArgumentException.class, () -> history.getReport(TO, FROM, null, null));
+    }
+
+    private LoanHistoryServiceImpl historyOf(List<Loan> loans) {
+        LoanService loanService = mock(LoanService.class);
+        when(loanService.getAllLoans()).thenReturn(loans);
+        LoanHistoryServiceImpl history = new LoanHistoryServiceImpl(loanService);
+        started.add(history);
+        return history;
+    }
+
+    // Events are applied in order, so once a marker loan (dated outside the reported
+    // ranges) is visible the earlier ones are too
+    private void drain(LoanHistoryServiceImpl history) throws InterruptedException {
+        long marker = -(++markers);
+        history.onLoanEvent(event(LoanEvent.Type.CHECKED_OUT, marker, marker, "marker", FICTION,
+                MARKER_DAY, MARKER_DAY.plusDays(14), null));
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (history.getReport(MARKER_DAY, MARKER_DAY, null, marker).getLoans() == 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "loan events were not applied in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Loan loan(long id, long userId, String isbn, long categoryId, LocalDate loanDate) {
+        User user = new User();
+        user.setId(userId);
+        Category category = new Category();
+        category.setId(categoryId);
+        Book book = new Book();
+        book.setIsbn(isbn);
+        book.setCategory(category);
+        Loan loan = new Loan();
+        loan.setId(id);
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(loanDate);
+        loan.setDueDate(loanDate.plusDays(14));
+        return loan;
+    }
+
+    private static LoanEvent event(LoanEvent.Type type, long loanId, long userId, String isbn, long categoryId,
+                                   LocalDate loanDate, LocalDate dueDate, LocalDate returnDate) {
+        return new LoanEvent(type, loanId, userId, isbn, categoryId, loanDate, dueDate, returnDate);
+    }
+}
@@ -0,0 +1,170 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.model.PatronAccount;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.UserService;
+import co.edu.umanizales.library.util.UnitOfWork;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Borrowing limits with members allowed 2 loans, librarians 3, and at most 10.00 of
+ * unpaid fines.
+ */
+class PatronAccountServiceImplTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+
+    private final UserService userService = mock(UserService.class);
+    private final PatronAccountServiceImpl accounts = accounts(true);
+
+    @Test
+    void roleLimitsTheActiveLoans() {
+        User member = user(1, UserRole.MEMBER);
+        User librarian = user(2, UserRole.LIBRARIAN);
+        for (User user : new User[]{member, librarian}) {
+            accounts.loanOpened(user.getId(), TODAY.plusDays(14));
+            accounts.loanOpened(user.getId(), TODAY.plusDays(14));
+        }
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(member, 1));
+        assertEquals("Borrowing limit of 2 loans reached", e.getMessage());
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(librarian, 1));
+        assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(librarian, 2));
+    }
+
+    @Test
+    void batchMustFitTheLimitAsAWhole() {
+        User member = user(1, UserRole.MEMBER);
+
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 2));
+        assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(member, 3));
+    }
+
+    @Test
+    void patronWithoutARoleGetsTheMemberLimit() {
+        User user = user(1, null);
+
+        assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(user, 3));
+    }
+
+    @Test
+    void closedLoansFreeTheirPlace() {
+        User member = user(1, UserRole.MEMBER);
+        LocalDate due = TODAY.plusDays(14);
+        accounts.loanOpened(member.getId(), due);
+        accounts.loanOpened(member.getId(), due);
+
+        accounts.loanClosed(member.getId(), due);
+
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 1));
+    }
+
+    @Test
+    void overdueLoanBlocksUntilItIsClosed() {
+        User member = user(1, UserRole.MEMBER);
+        LocalDate overdue = TODAY.minusDays(1);
+        accounts.loanOpened(member.getId(), overdue);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(member, 1));
+        assertEquals("User has overdue loans", e.getMessage());
+
+        accounts.loanClosed(member.getId(), overdue);
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 1));
+    }
+
+    @Test
+    void loanDueTodayIsNotOverdue() {
+        User member = user(1, UserRole.MEMBER);
+        accounts.loanOpened(member.getId(), TODAY);
+
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 1));
+    }
+
+    @Test
+    void overdueBlockingCanBeTurnedOff() {
+        PatronAccountServiceImpl lenient = accounts(false);
+        User member = user(1, UserRole.MEMBER);
+        lenient.loanOpened(member.getId(), TODAY.minusDays(1));
+
+        assertDoesNotThrow(() -> lenient.checkCanBorrow(member, 1));
+    }
+
+    @Test
+    void unpaidFinesAboveTheMaximumBlock() {
+        User member = user(1, UserRole.MEMBER);
+        accounts.unpaidFinesChanged(member.getId(), 6.0);
+        accounts.unpaidFinesChanged(member.getId(), 4.0);
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 1));
+
+        accounts.unpaidFinesChanged(member.getId(), 0.01);
+        assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(member, 1));
+
+        accounts.unpaidFinesChanged(member.getId(), -4.0);
+        assertDoesNotThrow(() -> accounts.checkCanBorrow(member, 1));
+        assertEquals(6.01, accounts.getUnpaidFines(member.getId()));
+    }
+
+    @Test
+    void inactivePatronCannotBorrow() {
+        User member = user(1, UserRole.MEMBER);
+        member.setActive(false);
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> accounts.checkCanBorrow(member, 1));
+        assertEquals("User is not active", e.getMessage());
+    }
+
+    @Test
+    void changesOfARolledBackUnitAreUndone() {
+        User member = user(1, UserRole.MEMBER);
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            accounts.loanOpened(member.getId(), TODAY.minusDays(3));
+            accounts.unpaidFinesChanged(member.getId(), 25.0);
+            throw new IllegalStateException("boom");
+        }));
+
+        PatronAccount account = accounts.getAccount(member.getId());
+        assertEquals(0, account.getActiveLoans());
+        assertEquals(0, account.getOverdueLoans());
+        assertEquals(0.0, account.getUnpaidFines());
+        assertTrue(account.isCanBorrow());
+    }
+
+    @Test
+    void accountReportsCountersAndTheBlockingReason() {
+        User member = user(1, UserRole.MEMBER);
+        accounts.loanOpened(member.getId(), TODAY.minusDays(2));
+        accounts.loanOpened(member.getId(), TODAY.plusDays(5));
+        accounts.unpaidFinesChanged(member.getId(), 1.5);
+
+        PatronAccount account = accounts.getAccount(member.getId());
+
+        assertEquals(2, account.getActiveLoans());
+        assertEquals(1, account.getOverdueLoans());
+        assertEquals(1.5, account.getUnpaidFines());
+        assertEquals(2, account.getMaxLoans());
+        assertFalse(account.isCanBorrow());
+        assertEquals("Borrowing limit of 2 loans reached", account.getBlockedReason());
+        assertNull(accounts.getAccount(99));
+    }
+
+    private PatronAccountServiceImpl accounts(boolean blockOverdue) {
+        return new PatronAccountServiceImpl(userService, 2, 3, 3, 10.0, blockOverdue);
+    }
+
+    private User user(long id, UserRole role) {
+        User user = new User();
+        user.setId(id);
+        user.setRole(role);
+        user.setActive(true);
+        when(userService.getUserById(id)).thenReturn(user);
+        return user;
+    }
+}
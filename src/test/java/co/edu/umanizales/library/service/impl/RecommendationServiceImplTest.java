@@ -0,0 +1,168 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.event.LoanEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.Recommendation;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.LoanService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Co-borrowing counts: built from the loan history at startup, then kept up to date by
+ * loan events on the consumer thread. Events are followed by a marker checkout, and the
+ * queue is drained once the marker's pair shows up.
+ */
+class RecommendationServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private final List<RecommendationServiceImpl> started = new ArrayList<>();
+    private long markers;
+
+    @AfterEach
+    void tearDown() {
+        started.forEach(RecommendationServiceImpl::shutdown);
+    }
+
+    @Test
+    void startupCountsThePatronsWhoBorrowedBoth() {
+        RecommendationServiceImpl recommendations = recommendationsOf(10, List.of(
+                loan(1, "A"), loan(1, "B"), loan(1, "A"),
+                loan(2, "A"), loan(2, "B"),
+                loan(3, "A"), loan(3, "C")));
+
+        assertEquals(Map.of("B", 2.0, "C", 1.0), scores(recommendations, "A"));
+        assertEquals(Map.of("A", 2.0), scores(recommendations, "B"));
+    }
+
+    @Test
+    void onlyTheFirstCheckoutOfATitlePairsIt() throws InterruptedException {
+        RecommendationServiceImpl recommendations = recommendationsOf(10, List.of());
+
+        checkOut(recommendations, 1, "A", "B", "B", "A");
+        checkOut(recommendations, 2, "B", "A");
+        drain(recommendations);
+
+        assertEquals(Map.of("B", 2.0), scores(recommendations, "A"));
+        assertEquals(Map.of("A", 2.0), scores(recommendations, "B"));
+    }
+
+    @Test
+    void deletingTheLastLoanOfATitleTakesItsPairsBack() throws InterruptedException {
+        RecommendationServiceImpl recommendations = recommendationsOf(10, List.of());
+        checkOut(recommendations, 1, "A", "B", "B", "C");
+
+        delete(recommendations, 1, "B");
+        drain(recommendations);
+        assertEquals(Map.of("B", 1.0, "C", 1.0), scores(recommendations, "A"), "one loan of B is left");
+
+        delete(recommendations, 1, "B");
+        drain(recommendations);
+        assertEquals(Map.of("C", 1.0), scores(recommendations, "A"));
+        assertTrue(recommendations.getAlsoBorrowed("B", 10).isEmpty());
+    }
+
+    @Test
+    void fullCandidateSetOnlyTakesTitlesOnceASlotIsFree() throws InterruptedException {
+        // One title served, so four candidates tracked
+        RecommendationServiceImpl recommendations = recommendationsOf(1, List.of());
+        checkOut(recommendations, 1, "A", "B", "C", "D", "E", "Z");
+        checkOut(recommendations, 2, "A", "Z");
+        drain(recommendations);
+
+        // Z was no stronger than the weakest candidate, so both of its counts were dropped
+        assertEquals(List.of("B"), isbns(recommendations, "A"));
+        assertEquals(1.0, recommendations.getAlsoBorrowed("A", 1).get(0).getScore());
+
+        delete(recommendations, 1, "E");
+        checkOut(recommendations, 3, "A", "Z");
+        checkOut(recommendations, 4, "A", "Z");
+        drain(recommendations);
+
+        assertEquals(List.of("Z"), isbns(recommendations, "A"));
+        assertEquals(2.0, recommendations.getAlsoBorrowed("A", 1).get(0).getScore());
+    }
+
+    @Test
+    void renewalsAndReturnsLeaveTheCountsAlone() throws InterruptedException {
+        RecommendationServiceImpl recommendations = recommendationsOf(10, List.of(loan(1, "A"), loan(1, "B")));
+
+        recommendations.onLoanEvent(event(LoanEvent.Type.RETURNED, 1, "B"));
+        recommendations.onLoanEvent(event(LoanEvent.Type.RENEWED, 1, "A"));
+        drain(recommendations);
+
+        assertEquals(Map.of("B", 1.0), scores(recommendations, "A"));
+    }
+
+    private RecommendationServiceImpl recommendationsOf(int neighbours, List<Loan> loans) {
+        BookService bookService = mock(BookService.class);
+        when(bookService.getAllBooks()).thenReturn(List.of());
+        LoanService loanService = mock(LoanService.class);
+        when(loanService.getAllLoans()).thenReturn(loans);
+        RecommendationServiceImpl recommendations = new RecommendationServiceImpl(bookService, loanService, neighbours, 16, 4);
+        started.add(recommendations);
+        return recommendations;
+    }
+
+    private static void checkOut(RecommendationServiceImpl recommendations, long userId, String... isbns) {
+        for (String isbn : isbns) {
+            recommendations.onLoanEvent(event(LoanEvent.Type.CHECKED_OUT, userId, isbn));
+        }
+    }
+
+    private static void delete(RecommendationServiceImpl recommendations, long userId, String isbn) {
+        recommendations.onLoanEvent(event(LoanEvent.Type.DELETED, userId, isbn));
+    }
+
+    // Events are applied in order, so once a marker pair is visible the earlier ones are too
+    private void drain(RecommendationServiceImpl recommendations) throws InterruptedException {
+        long marker = ++markers;
+        checkOut(recommendations, -marker, "marker-" + marker, "marker-" + marker + "-pair");
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (recommendations.getAlsoBorrowed("marker-" + marker, 1).isEmpty()) {
+            assertTrue(System.currentTimeMillis() < deadline, "loan events were not applied in time");
+            Thread.sleep(5);
+        }
+    }
+
+    private static Map<String, Double> scores(RecommendationServiceImpl recommendations, String isbn) {
+        Map<String, Double> scores = new HashMap<>();
+        for (Recommendation recommendation : recommendations.getAlsoBorrowed(isbn, 100)) {
+            scores.put(recommendation.getIsbn(), recommendation.getScore());
+        }
+        return scores;
+    }
+
+    private static List<String> isbns(RecommendationServiceImpl recommendations, String isbn) {
+        return recommendations.getAlsoBorrowed(isbn, 100).stream().map(Recommendation::getIsbn).toList();
+    }
+
+    private static LoanEvent event(LoanEvent.Type type, long userId, String isbn) {
+        return new LoanEvent(type, 0, userId, isbn, null, DAY, DAY.plusDays(14), null);
+    }
+
+    private static Loan loan(long userId, String isbn) {
+        User user = new User();
+        user.setId(userId);
+        Book book = new Book();
+        book.setIsbn(isbn);
+        Loan loan = new Loan();
+        loan.setUser(user);
+        loan.setBook(book);
+        loan.setLoanDate(DAY);
+        return loan;
+    }
+}
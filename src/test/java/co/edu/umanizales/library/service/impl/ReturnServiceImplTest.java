@@ -0,0 +1,189 @@
+package co.edu.umanizales.library.service.impl;
+
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.model.BookCondition;
+import co.edu.umanizales.library.model.FineReason;
+import co.edu.umanizales.library.model.FineRecord;
+import co.edu.umanizales.library.model.Loan;
+import co.edu.umanizales.library.model.Return;
+import co.edu.umanizales.library.model.User;
+import co.edu.umanizales.library.model.UserRole;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.FineRecordService;
+import co.edu.umanizales.library.service.LoanService;
+import co.edu.umanizales.library.service.ReturnService;
+import co.edu.umanizales.library.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Processed returns: the copy comes back unless it was lost, and late, damage and loss
+ * fines are charged in the same unit of work as the return.
+ */
+@SpringBootTest
+class ReturnServiceImplTest {
+
+    @Autowired
+    private ReturnService returnService;
+    @Autowired
+    private LoanService loanService;
+    @Autowired
+    private BookService bookService;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private FineRecordService fineRecordService;
+
+    @Test
+    void onTimeReturnInGoodConditionGivesTheCopyBackWithoutFines() throws Exception {
+        Loan loan = newLoan(2);
+
+        Return processed = returnService.processReturn(returnOf(loan, null, 0, false));
+
+        assertEquals(BookCondition.GOOD, processed.getCondition());
+        assertEquals(0.0, processed.getFineAmount());
+        assertTrue(loanService.getLoanById(loan.getId()).isReturned());
+        assertEquals(2, book(loan).getAvailableCopies());
+        assertTrue(finesOf(loan).isEmpty());
+    }
+
+    @Test
+    void lostCopyLeavesTheStockAndIsFinedTheDefaultAmount() throws Exception {
+        Loan loan = newLoan(3);
+
+        Return processed = returnService.processReturn(returnOf(loan, BookCondition.LOST, 0, false));
+
+        assertEquals(50.0, processed.getFineAmount());
+        assertEquals(2, book(loan).getTotalCopies());
+        assertEquals(2, book(loan).getAvailableCopies());
+        List<FineRecord> fines = finesOf(loan);
+        assertEquals(1, fines.size());
+        assertEquals(FineReason.LOSS, fines.get(0).getReason());
+        assertEquals(50.0, fines.get(0).getAmount());
+        assertFalse(fines.get(0).isPaid());
+    }
+
+    @Test
+    void lateReturnIsChargedForEveryOverdueDay() throws Exception {
+        Loan loan = newLoan(1);
+        makeOverdue(loan, 9);
+
+        returnService.processReturn(returnOf(loan, null, 0, false));
+
+        List<FineRecord> fines = finesOf(loan);
+        assertEquals(1, fines.size());
+        assertEquals(FineReason.LATE_RETURN, fines.get(0).getReason());
+        assertEquals(4.5, fines.get(0).getAmount());
+        assertEquals(1, book(loan).getAvailableCopies());
+    }
+
+    @Test
+    void lateReturnRaisesTheFineAlreadyAccrued() throws Exception {
+        Loan loan = newLoan(1);
+        makeOverdue(loan, 9);
+        fineRecordService.accrueOverdueFines(LocalDate.now().minusDays(4));
+
+        returnService.processReturn(returnOf(loan, null, 0, false));
+
+        List<FineRecord> fines = finesOf(loan);
+        assertEquals(1, fines.size());
+        assertEquals(4.5, fines.get(0).getAmount());
+    }
+
+    @Test
+    void lateDamagedReturnIsChargedBothFines() throws Exception {
+        Loan loan = newLoan(1);
+        makeOverdue(loan, 2);
+
+        Return processed = returnService.processReturn(returnOf(loan, BookCondition.DAMAGED, 12.5, true));
+
+        assertEquals(12.5, processed.getFineAmount());
+        assertTrue(processed.isFinePaid());
+        FineRecord damage = fine(loan, FineReason.DAMAGE);
+        assertEquals(12.5, damage.getAmount());
+        assertTrue(damage.isPaid());
+        FineRecord late = fine(loan, FineReason.LATE_RETURN);
+        assertEquals(1.0, late.getAmount());
+        assertFalse(late.isPaid());
+    }
+
+    @Test
+    void secondReturnOfTheSameLoanChangesNothing() throws Exception {
+        Loan loan = newLoan(3);
+        returnService.processReturn(returnOf(loan, BookCondition.LOST, 0, false));
+        int returns = returnService.getAllReturns().size();
+
+        assertThrows(IllegalStateException.class,
+                () -> returnService.processReturn(returnOf(loan, BookCondition.LOST, 0, false)));
+
+        assertEquals(2, book(loan).getTotalCopies());
+        assertEquals(1, finesOf(loan).size());
+        assertEquals(returns, returnService.getAllReturns().size());
+    }
+
+    @Test
+    void returnOfAnUnknownLoanIsRejected() {
+        Loan unknown = new Loan();
+        unknown.setId(-1);
+
+        assertThrows(IllegalArgumentException.class, () -> returnService.processReturn(returnOf(unknown, null, 0, false)));
+    }
+
+    private Loan newLoan(int copies) throws IOException {
+        Book book = new Book();
+        book.setIsbn("test-" + UUID.randomUUID());
+        book.setTitle("Return test");
+        book.setTotalCopies(copies);
+        book.compareAndSetAvailableCopies(0, copies);
+        bookService.createBook(book);
+
+        String name = "patron-" + UUID.randomUUID();
+        User user = new User();
+        user.setName(name);
+        user.setEmail(name + "@example.com");
+        user.setUsername(name);
+        user.setPassword("secret");
+        user.setRole(UserRole.MEMBER);
+        user.setActive(true);
+        User patron = userService.createUser(user);
+
+        return loanService.createLoans(patron.getId(), List.of(book.getIsbn())).get(0);
+    }
+
+    private void makeOverdue(Loan loan, int days) {
+        Loan update = new Loan();
+        update.setDueDate(LocalDate.now().minusDays(days));
+        loanService.updateLoan(loan.getId(), update);
+    }
+
+    private static Return returnOf(Loan loan, BookCondition condition, double fineAmount, boolean finePaid) {
+        Return returnObj = new Return();
+        returnObj.setLoan(loan);
+        returnObj.setCondition(condition);
+        returnObj.setFineAmount(fineAmount);
+        returnObj.setFinePaid(finePaid);
+        return returnObj;
+    }
+
+    private Book book(Loan loan) {
+        return bookService.getBookByIsbn(loan.getBook().getIsbn());
+    }
+
+    private List<FineRecord> finesOf(Loan loan) {
+        return fineRecordService.getAllFineRecords().stream()
+                .filter(fine -> fine.getLoan().getId() == loan.getId())
+                .toList();
+    }
+
+    private FineRecord fine(Loan loan, FineReason reason) {
+        return finesOf(loan).stream().filter(fine -> fine.getReason() == reason).findFirst().orElseThrow();
+    }
+}
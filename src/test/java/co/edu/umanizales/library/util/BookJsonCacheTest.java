@@ -0,0 +1,100 @@
+package co.edu.umanizales.library.util;
+
+import co.edu.umanizales.library.event.BookEvent;
+import co.edu.umanizales.library.model.Book;
+import co.edu.umanizales.library.service.AuthorService;
+import co.edu.umanizales.library.service.BookService;
+import co.edu.umanizales.library.service.CategoryService;
+import co.edu.umanizales.library.service.PublisherService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookJsonCacheTest {
+
+    private final BookService bookService = mock(BookService.class);
+    private final AuthorService authorService = mock(AuthorService.class);
+    private BookJsonCache cache;
+
+    @BeforeEach
+    void setUp() {
+        for (String isbn : new String[]{"a", "b", "c"}) {
+            when(bookService.getBookByIsbn(isbn)).thenReturn(book(isbn));
+        }
+        cache = new BookJsonCache(bookService, authorService, mock(PublisherService.class),
+                mock(CategoryService.class), new ObjectMapper().findAndRegisterModules(), 2);
+    }
+
+    @Test
+    void unchangedBookIsSerializedOnce() {
+        byte[] first = cache.get("a");
+
+        assertSame(first, cache.get("a"));
+        verify(bookService, times(1)).getBookByIsbn("a");
+    }
+
+    @Test
+    void newRevisionOrRelationVersionIsSerializedAgain() {
+        cache.get("a");
+        when(bookService.getRevision("a")).thenReturn(1L);
+        cache.get("a");
+        when(authorService.getVersion()).thenReturn(1L);
+        cache.get("a");
+        cache.get("a");
+
+        verify(bookService, times(3)).getBookByIsbn("a");
+    }
+
+    @Test
+    void fullCacheDropsTheLeastRecentlyServedBook() {
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+
+        cache.get("c");
+
+        assertEquals(2, cache.size());
+        cache.get("a");
+        cache.get("b");
+        verify(bookService, times(1)).getBookByIsbn("a");
+        verify(bookService, times(2)).getBookByIsbn("b");
+    }
+
+    @Test
+    void deletedBookIsDropped() {
+        cache.get("a");
+        cache.get("b");
+
+        cache.onBookEvent(new BookEvent(BookEvent.Type.DELETED, book("a"), null));
+
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void renamedBookDropsItsOldIsbn() {
+        cache.get("a");
+
+        cache.onBookEvent(new BookEvent(BookEvent.Type.UPDATED, book("z"), "a"));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void unknownBookIsNullAndNotCached() {
+        assertNull(cache.get("unknown"));
+        assertEquals(0, cache.size());
+    }
+
+    private static Book book(String isbn) {
+        Book book = new Book();
+        book.setIsbn(isbn);
+        book.setTitle("Title " + isbn);
+        return book;
+    }
+}
@@ -0,0 +1,149 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandPipelineTest {
+
+    private CommandPipeline pipeline;
+
+    @AfterEach
+    void stop() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+    }
+
+    @Test
+    void lockingModeRunsCommandsInlineInAUnit() {
+        pipeline = new CommandPipeline("locking", 16, 16);
+        Thread caller = Thread.currentThread();
+
+        CompletableFuture<Boolean> result = pipeline.submit(() -> Thread.currentThread() == caller && UnitOfWork.isActive());
+
+        assertTrue(result.join());
+        assertFalse(UnitOfWork.isActive());
+    }
+
+    @Test
+    void singleWriterAppliesCommandsInSubmissionOrderOnOneThread() {
+        pipeline = new CommandPipeline("single-writer", 1024, 64);
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            int n = i;
+            results.add(pipeline.submit(() -> {
+                applied.add(n);
+                threads.add(Thread.currentThread().getName());
+                return n;
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).join());
+        }
+
+        for (int i = 0; i < applied.size(); i++) {
+            assertEquals(i, applied.get(i));
+        }
+        assertTrue(threads.stream().allMatch("library-writer"::equals));
+    }
+
+    @Test
+    void queuedCommandsAreCommittedAsOneBatch() throws Exception {
+        pipeline = new CommandPipeline("single-writer", 1024, 64);
+        SnapshotStore<Integer, String> store = new SnapshotStore<>();
+        AtomicInteger persisted = new AtomicInteger();
+        store.onPublish(snapshot -> persisted.incrementAndGet());
+
+        // Hold the writer so the next commands queue up behind it
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> blocker = pipeline.submit(() -> {
+            running.countDown();
+            await(release);
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            int key = i;
+            results.add(pipeline.submit(() -> store.write(working -> working.put(key, "value " + key))));
+        }
+        release.countDown();
+        blocker.join();
+        results.forEach(CompletableFuture::join);
+
+        assertEquals(10, store.values().size());
+        assertEquals(1, persisted.get());
+    }
+
+    @Test
+    void failedCommandIsRolledBackWithoutItsBatch() throws Exception {
+        pipeline = new CommandPipeline("single-writer", 1024, 64);
+        SnapshotStore<Integer, String> store = new SnapshotStore<>();
+
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline.submit(() -> {
+            running.countDown();
+            await(release);
+            return null;
+        });
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> before = pipeline.submit(() -> store.write(working -> working.put(1, "kept")));
+        CompletableFuture<String> failing = pipeline.submit(() -> {
+            store.write(working -> working.put(2, "undone"));
+            throw new IllegalStateException("boom");
+        });
+        CompletableFuture<String> after = pipeline.submit(() -> store.write(working -> working.put(3, "kept")));
+        release.countDown();
+
+        before.join();
+        after.join();
+        CompletionException error = assertThrows(CompletionException.class, failing::join);
+        assertInstanceOf(IllegalStateException.class, error.getCause());
+        assertEquals("kept", store.get(1));
+        assertNull(store.get(2));
+        assertEquals("kept", store.get(3));
+    }
+
+    @Test
+    void stoppedPipelineDrainsAndThenRunsCommandsInline() {
+        pipeline = new CommandPipeline("single-writer", 1024, 64);
+        List<CompletableFuture<Integer>> queued = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            int n = i;
+            queued.add(pipeline.submit(() -> n));
+        }
+
+        pipeline.stop();
+
+        assertFalse(pipeline.isRunning());
+        queued.forEach(result -> assertTrue(result.isDone()));
+        Thread caller = Thread.currentThread();
+        assertTrue(pipeline.submit(() -> Thread.currentThread() == caller).join());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
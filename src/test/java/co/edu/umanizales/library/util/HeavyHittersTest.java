@@ -0,0 +1,89 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeavyHittersTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2025, 3, 10);
+
+    @Test
+    void countsAreExactWhileTheKeysFitTheCapacity() {
+        HeavyHitters hitters = new HeavyHitters(10, 7);
+        add(hitters, "a", TODAY, 5);
+        add(hitters, "b", TODAY, 3);
+        add(hitters, "c", TODAY, 1);
+
+        assertEquals(List.of(
+                new HeavyHitters.Entry("a", 5, 0),
+                new HeavyHitters.Entry("b", 3, 0),
+                new HeavyHitters.Entry("c", 1, 0)), hitters.top(TODAY, 1, 10));
+    }
+
+    @Test
+    void frequentKeysSurviveManyRareOnes() {
+        HeavyHitters hitters = new HeavyHitters(20, 7);
+        Map<String, Long> actual = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            // One addition in ten is "popular", the rest are spread over 2,000 keys
+            String key = random.nextInt(10) == 0 ? "popular" : "rare-" + random.nextInt(2_000);
+            hitters.add(key, TODAY);
+            actual.merge(key, 1L, Long::sum);
+        }
+
+        List<HeavyHitters.Entry> top = hitters.top(TODAY, 1, 20);
+        assertEquals("popular", top.get(0).key());
+        for (HeavyHitters.Entry entry : top) {
+            long count = actual.get(entry.key());
+            assertTrue(entry.count() >= count && entry.count() - entry.error() <= count,
+                    entry + " does not bound the actual count " + count);
+        }
+    }
+
+    @Test
+    void windowSumsOnlyItsDays() {
+        HeavyHitters hitters = new HeavyHitters(10, 7);
+        add(hitters, "a", TODAY.minusDays(2), 4);
+        add(hitters, "a", TODAY, 1);
+        add(hitters, "b", TODAY, 2);
+
+        assertEquals(List.of(new HeavyHitters.Entry("b", 2, 0), new HeavyHitters.Entry("a", 1, 0)),
+                hitters.top(TODAY, 1, 10));
+        assertEquals(List.of(new HeavyHitters.Entry("a", 5, 0), new HeavyHitters.Entry("b", 2, 0)),
+                hitters.top(TODAY, 3, 10));
+    }
+
+    @Test
+    void keyMissingFromAFullDayCarriesThatDaysFloorAsError() {
+        HeavyHitters hitters = new HeavyHitters(2, 7);
+        add(hitters, "a", TODAY.minusDays(1), 3);
+        add(hitters, "b", TODAY.minusDays(1), 2);
+        add(hitters, "c", TODAY, 1);
+
+        assertEquals(new HeavyHitters.Entry("c", 1, 2), hitters.top(TODAY, 2, 3).get(2));
+    }
+
+    @Test
+    void daysBeyondTheRetentionAreOverwrittenAndLateAdditionsIgnored() {
+        HeavyHitters hitters = new HeavyHitters(10, 3);
+        add(hitters, "old", TODAY.minusDays(3), 5);
+        add(hitters, "new", TODAY, 1);
+        add(hitters, "old", TODAY.minusDays(3), 1);
+
+        assertEquals(List.of(new HeavyHitters.Entry("new", 1, 0)), hitters.top(TODAY, 7, 10));
+    }
+
+    private static void add(HeavyHitters hitters, String key, LocalDate day, int times) {
+        for (int i = 0; i < times; i++) {
+            hitters.add(key, day);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateStaysWithinTheErrorBound() {
+        for (int count : new int[]{100, 1_000, 10_000, 100_000, 1_000_000}) {
+            HyperLogLog sketch = new HyperLogLog(12);
+            for (long value = 1; value <= count; value++) {
+                sketch.add(value);
+            }
+            assertWithinError(count, sketch);
+        }
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int round = 0; round < 10; round++) {
+            for (long value = 1; value <= 5_000; value++) {
+                sketch.add(value);
+            }
+        }
+
+        assertWithinError(5_000, sketch);
+    }
+
+    @Test
+    void emptySketchEstimatesZero() {
+        assertEquals(0, new HyperLogLog(12).estimate());
+    }
+
+    @Test
+    void mergeGivesTheSketchOfTheUnion() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (long value = 0; value < 50_000; value++) {
+            first.add(value);
+            union.add(value);
+        }
+        for (long value = 25_000; value < 75_000; value++) {
+            second.add(value);
+            union.add(value);
+        }
+
+        first.merge(second);
+
+        assertEquals(union.estimate(), first.estimate());
+        assertWithinError(75_000, first);
+    }
+
+    @Test
+    void sketchesOfDifferentPrecisionDoNotMerge() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(12).merge(new HyperLogLog(10)));
+    }
+
+    @Test
+    void precisionOutOfRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(17));
+    }
+
+    // Three standard errors: a correct sketch falls outside this far less than 1% of the time
+    private static void assertWithinError(long expected, HyperLogLog sketch) {
+        double error = Math.abs(sketch.estimate() - expected) / (double) expected;
+        assertTrue(error <= 3 * sketch.relativeStandardError(),
+                "estimate " + sketch.estimate() + " for " + expected + " distinct values");
+    }
+}
@@ -0,0 +1,124 @@
+package co.edu.umanizales.library.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyTest {
+
+    private static final String SCOPE = "POST /loans";
+
+    private final CommandPipeline pipeline = new CommandPipeline("locking", 16, 16);
+    private final Idempotency idempotency = new Idempotency(pipeline, new ObjectMapper(), 60, 100);
+    private final AtomicInteger executions = new AtomicInteger();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void retryGetsTheOriginalResult() {
+        Map<String, Object> request = Map.of("userId", 1, "isbn", "978-0");
+
+        int first = idempotency.execute(SCOPE, "k-1", request, executions::incrementAndGet).join();
+        int retry = idempotency.execute(SCOPE, "k-1", request, executions::incrementAndGet).join();
+
+        assertEquals(1, first);
+        assertEquals(1, retry);
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void requestsWithoutAKeyAlwaysRun() {
+        idempotency.execute(SCOPE, null, "body", executions::incrementAndGet).join();
+        idempotency.execute(SCOPE, " ", "body", executions::incrementAndGet).join();
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void keyReusedForADifferentRequestIsRejected() {
+        idempotency.execute(SCOPE, "k-1", Map.of("isbn", "978-0"), executions::incrementAndGet).join();
+
+        CompletableFuture<Integer> reused =
+                idempotency.execute(SCOPE, "k-1", Map.of("isbn", "978-1"), executions::incrementAndGet);
+
+        CompletionException e = assertThrows(CompletionException.class, reused::join);
+        assertInstanceOf(Idempotency.KeyReusedException.class, e.getCause());
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void sameKeyInAnotherScopeIsIndependent() {
+        idempotency.execute(SCOPE, "k-1", "body", executions::incrementAndGet).join();
+        idempotency.execute("POST /fine-records", "k-1", "body", executions::incrementAndGet).join();
+
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void failedCommandIsForgottenSoTheRetryRunsAgain() {
+        CompletableFuture<Integer> failed = idempotency.execute(SCOPE, "k-1", "body", () -> {
+            executions.incrementAndGet();
+            throw new IllegalStateException("No copies available");
+        });
+        assertThrows(CompletionException.class, failed::join);
+
+        int retry = idempotency.execute(SCOPE, "k-1", "body", executions::incrementAndGet).join();
+
+        assertEquals(2, retry);
+    }
+
+    @Test
+    void retryWhileTheFirstRequestRunsWaitsForItsResult() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> first = CompletableFuture.supplyAsync(
+                () -> idempotency.execute(SCOPE, "k-1", "body", () -> {
+                    started.countDown();
+                    awaitQuietly(release);
+                    return executions.incrementAndGet();
+                }).join(), executor);
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> retry = idempotency.execute(SCOPE, "k-1", "body", executions::incrementAndGet);
+        assertFalse(retry.isDone());
+        release.countDown();
+
+        assertEquals(1, first.get(10, TimeUnit.SECONDS));
+        assertEquals(1, retry.get(10, TimeUnit.SECONDS));
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void oldestKeysAreDroppedBeyondTheCap() {
+        Idempotency small = new Idempotency(pipeline, new ObjectMapper(), 60, 2);
+        small.execute(SCOPE, "k-1", "body", executions::incrementAndGet).join();
+        small.execute(SCOPE, "k-2", "body", executions::incrementAndGet).join();
+        small.execute(SCOPE, "k-3", "body", executions::incrementAndGet).join();
+
+        assertEquals(3, small.execute(SCOPE, "k-3", "body", executions::incrementAndGet).join());
+        assertEquals(4, small.execute(SCOPE, "k-1", "body", executions::incrementAndGet).join());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHashIndexTest {
+
+    private final MinHashIndex index = new MinHashIndex(16, 4);
+
+    @Test
+    void identicalSetsAreFoundWithSimilarityOne() {
+        index.put("a", features(0, 50));
+        index.put("b", features(0, 50));
+
+        assertEquals(List.of(new MinHashIndex.Match("b", 1.0)), index.similarTo("a", 5));
+    }
+
+    @Test
+    void similarityEstimatesTheJaccardIndex() {
+        index.put("a", features(0, 100));
+        index.put("b", features(20, 120));   // Jaccard 80 / 120 = 0.67
+
+        List<MinHashIndex.Match> matches = index.similarTo("a", 5);
+
+        assertEquals(1, matches.size());
+        assertEquals(2.0 / 3, matches.get(0).similarity(), 0.2);
+    }
+
+    @Test
+    void nearDuplicatesRankAboveLooserMatchesAndDisjointSetsAreNotCandidates() {
+        index.put("query", features(0, 100));
+        index.put("near", features(5, 105));
+        index.put("loose", features(40, 140));
+        index.put("disjoint", features(1_000, 1_100));
+
+        List<MinHashIndex.Match> matches = index.similarTo("query", 5);
+
+        assertEquals("near", matches.get(0).key());
+        assertTrue(matches.stream().noneMatch(match -> match.key().equals("disjoint")));
+    }
+
+    @Test
+    void putAllIndexesLikePut() {
+        Map<String, Set<String>> features = new HashMap<>();
+        for (int i = 0; i < 50; i++) {
+            features.put("book-" + i, features(i * 10, i * 10 + 30));
+        }
+        index.putAll(features);
+        MinHashIndex oneByOne = new MinHashIndex(16, 4);
+        features.forEach(oneByOne::put);
+
+        assertEquals(50, index.size());
+        for (String key : features.keySet()) {
+            assertEquals(oneByOne.similarTo(key, 10), index.similarTo(key, 10));
+        }
+    }
+
+    @Test
+    void removedOrReplacedKeysLeaveTheirBuckets() {
+        index.put("a", features(0, 50));
+        index.put("b", features(0, 50));
+        index.put("c", features(0, 50));
+
+        index.remove("b");
+        index.put("c", features(500, 550));
+
+        assertEquals(List.of(), index.similarTo("a", 5));
+        assertEquals(List.of(), index.similarTo("b", 5));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void resultIsCutAtTheLimit() {
+        for (int i = 0; i < 10; i++) {
+            index.put("copy-" + i, features(0, 50));
+        }
+
+        assertEquals(3, index.similarTo("copy-0", 3).size());
+    }
+
+    private static Set<String> features(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "f" + i).collect(Collectors.toCollection(HashSet::new));
+    }
+}
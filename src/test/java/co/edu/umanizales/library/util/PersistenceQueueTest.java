@@ -0,0 +1,170 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistenceQueueTest {
+
+    private final BlockingIo blockingIo = new BlockingIo(1);
+    private final List<String> writes = new CopyOnWriteArrayList<>();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private PersistenceQueue queue;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        if (queue != null) {
+            queue.stop();
+        }
+        blockingIo.stop();
+    }
+
+    @Test
+    void onlyTheLatestQueuedWriteOfAFileRuns() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        holdWorker();
+
+        for (int i = 1; i <= 5; i++) {
+            queue.submit("a.csv", write("a" + i));
+        }
+        queue.submit("b.csv", write("b1"));
+        release.countDown();
+        queue.flush(5_000);
+
+        assertEquals(List.of("held", "a5", "b1"), writes);
+        assertEquals(7L, queue.getStats().get("submitted"));
+        assertEquals(3L, queue.getStats().get("written"));
+    }
+
+    @Test
+    void flushWaitsForEveryEarlierWrite() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        holdWorker();
+        queue.submit("a.csv", write("a1"));
+
+        CompletableFuture<Void> flushed = CompletableFuture.runAsync(() -> {
+            try {
+                queue.flush(5_000);
+            } catch (TimeoutException | InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(flushed.isDone());
+
+        release.countDown();
+        flushed.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of("held", "a1"), writes);
+        assertEquals(0L, queue.getStats().get("pending"));
+    }
+
+    @Test
+    void flushTimesOutWhileTheWorkerIsBusy() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        holdWorker();
+
+        assertThrows(TimeoutException.class, () -> queue.flush(50));
+    }
+
+    @Test
+    void fullQueueBlocksSubmittersUntilTheWorkerCatchesUp() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 2);
+        holdWorker();
+        queue.submit("a.csv", write("a1"));
+        queue.submit("b.csv", write("b1"));
+
+        CompletableFuture<Void> third = CompletableFuture.runAsync(() -> queue.submit("c.csv", write("c1")));
+        Thread.sleep(100);
+        assertFalse(third.isDone(), "the queue is full");
+
+        release.countDown();
+        third.get(5, TimeUnit.SECONDS);
+        queue.flush(5_000);
+        assertTrue(writes.containsAll(List.of("a1", "b1", "c1")));
+    }
+
+    @Test
+    void failedWriteIsReportedUntilTheFileIsWrittenAgain() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        queue.submit("a.csv", () -> {
+            throw new IllegalStateException("disk full");
+        });
+
+        IllegalStateException failure = assertThrows(IllegalStateException.class, () -> queue.flush(5_000));
+        assertTrue(failure.getMessage().contains("a.csv"));
+        assertEquals(Map.of("a.csv", "disk full"), queue.getStats().get("failedFiles"));
+        assertEquals(1L, queue.getStats().get("failed"));
+
+        queue.submit("a.csv", write("a2"));
+        queue.flush(5_000);
+        assertEquals(Map.of(), queue.getStats().get("failedFiles"));
+    }
+
+    @Test
+    void dirtyFileIsQueuedOnceUntilItIsWritten() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        holdWorker();
+
+        for (int i = 0; i < 3; i++) {
+            queue.markDirty("a.csv", write("a"));
+        }
+        assertEquals(1L, queue.getStats().get("pending"));
+
+        release.countDown();
+        queue.flush(5_000);
+        queue.markDirty("a.csv", write("a"));
+        queue.flush(5_000);
+
+        assertEquals(List.of("held", "a", "a"), writes);
+    }
+
+    @Test
+    void syncModeWritesInline() throws Exception {
+        queue = new PersistenceQueue(blockingIo, "sync", 16);
+
+        queue.submit("a.csv", write("a1"));
+
+        assertEquals(List.of("a1"), writes);
+        queue.flush(5_000);
+    }
+
+    @Test
+    void writesAfterStopRunOnTheCaller() {
+        queue = new PersistenceQueue(blockingIo, "async", 16);
+        queue.stop();
+
+        queue.submit("a.csv", write("a1"));
+
+        assertEquals(List.of("a1"), writes);
+        assertFalse(queue.isRunning());
+    }
+
+    // Keeps the worker busy until released, so later submissions stay queued
+    private void holdWorker() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        queue.submit("held.csv", () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writes.add("held");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+    private Runnable write(String name) {
+        return () -> writes.add(name);
+    }
+}
@@ -0,0 +1,104 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Function<String, String> loader = key -> {
+        loads.incrementAndGet();
+        return "result of " + key;
+    };
+
+    @Test
+    void repeatedQueryIsServedFromTheCache() {
+        SearchCache<String> cache = new SearchCache<>(100);
+
+        assertEquals("result of a", cache.get("a", loader));
+        assertEquals("result of a", cache.get("a", loader));
+
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.getStats().get("hits"));
+        assertEquals(1L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    void oneOffQueriesDoNotPushOutPopularOnes() {
+        SearchCache<String> cache = new SearchCache<>(100);
+        fillWithPopularQueries(cache);
+
+        for (int i = 0; i < 150; i++) {
+            cache.get("cold-" + i, loader);
+        }
+
+        loads.set(0);
+        for (int i = 0; i < 99; i++) {
+            cache.get("hot-" + i, loader);
+        }
+        assertEquals(0, loads.get(), "every popular query is still cached");
+        assertEquals(100, cache.getStats().get("size"));
+    }
+
+    @Test
+    void queryAskedMoreOftenThanTheVictimIsAdmitted() {
+        SearchCache<String> cache = new SearchCache<>(100);
+        fillWithPopularQueries(cache);
+
+        // Stays in the window while it gains hits, then competes when pushed out of it
+        for (int i = 0; i < 12; i++) {
+            cache.get("rising", loader);
+        }
+        cache.get("cold", loader);
+
+        loads.set(0);
+        cache.get("rising", loader);
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    void invalidationRemovesOnlyAffectedKeys() {
+        SearchCache<String> cache = new SearchCache<>(100);
+        cache.get("title:java", loader);
+        cache.get("title:kotlin", loader);
+        cache.get("author:gosling", loader);
+
+        cache.invalidate(key -> key.startsWith("title:"));
+
+        loads.set(0);
+        cache.get("author:gosling", loader);
+        assertEquals(0, loads.get());
+        cache.get("title:java", loader);
+        assertEquals(1, loads.get());
+        assertEquals(2L, cache.getStats().get("invalidations"));
+    }
+
+    @Test
+    void resultLoadedDuringAnInvalidationIsNotCached() {
+        SearchCache<String> cache = new SearchCache<>(100);
+
+        String result = cache.get("title:java", key -> {
+            loads.incrementAndGet();
+            cache.invalidate(k -> true);
+            return "stale";
+        });
+        assertEquals("stale", result);
+
+        assertEquals("result of title:java", cache.get("title:java", loader));
+        assertEquals(2, loads.get());
+    }
+
+    // Fills the main area with 99 queries asked eight times each; the window keeps the last one
+    private void fillWithPopularQueries(SearchCache<String> cache) {
+        for (int round = 0; round < 8; round++) {
+            for (int i = 0; i < 99; i++) {
+                cache.get("hot-" + i, loader);
+            }
+        }
+        assertEquals(99, loads.get());
+    }
+}
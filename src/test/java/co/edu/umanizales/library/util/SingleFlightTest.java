@@ -0,0 +1,121 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForTheSameKeyShareOneComputation() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(10_000);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int callers = 8;
+
+        List<CompletableFuture<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> flight.execute("books:v1", () -> {
+                computations.incrementAndGet();
+                await(release);
+                return 42;
+            }), executor));
+        }
+        waitUntil(() -> flight.getStats().get("collapsed") == callers - 1);
+        release.countDown();
+
+        for (CompletableFuture<Integer> result : results) {
+            assertEquals(42, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, computations.get());
+        assertEquals(1L, flight.getStats().get("executions"));
+        assertEquals(0L, flight.getStats().get("inFlight"));
+    }
+
+    @Test
+    void finishedComputationIsNotReused() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(10_000);
+        AtomicInteger computations = new AtomicInteger();
+
+        flight.execute("books:v1", computations::incrementAndGet);
+        flight.execute("books:v1", computations::incrementAndGet);
+
+        assertEquals(2, computations.get());
+    }
+
+    @Test
+    void failureIsPassedOnToEveryWaiter() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(10_000);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flight.execute("books:v1", () -> {
+            await(release);
+            throw new IllegalStateException("store unavailable");
+        }), executor);
+        waitUntil(() -> flight.getStats().get("inFlight") == 1);
+        CompletableFuture<Integer> waiter = CompletableFuture.supplyAsync(
+                () -> flight.execute("books:v1", () -> fail("the waiter must not compute")), executor);
+        waitUntil(() -> flight.getStats().get("collapsed") == 1);
+        release.countDown();
+
+        for (CompletableFuture<Integer> result : List.of(leader, waiter)) {
+            CompletionException e = assertThrows(CompletionException.class, result::join);
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+            assertEquals("store unavailable", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    void waiterComputesItselfAfterTheTimeout() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(50);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Integer> leader = CompletableFuture.supplyAsync(() -> flight.execute("books:v1", () -> {
+            await(release);
+            return 1;
+        }), executor);
+        waitUntil(() -> flight.getStats().get("inFlight") == 1);
+
+        assertEquals(2, flight.execute("books:v1", () -> 2));
+        assertEquals(1L, flight.getStats().get("timeouts"));
+
+        release.countDown();
+        assertEquals(1, leader.get(10, TimeUnit.SECONDS));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "condition not reached in time");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotStoreTest {
+
+    @Test
+    void readersKeepTheirSnapshotWhileAWriteIsPublished() {
+        SnapshotStore<Long, String> store = new SnapshotStore<>();
+        store.load(Map.of(1L, "one"));
+        SnapshotStore.Snapshot<Long, String> before = store.snapshot();
+
+        store.write(working -> working.put(2L, "two"));
+
+        assertEquals(List.of("one"), before.values());
+        assertEquals(2, store.values().size());
+        assertEquals(before.version() + 1, store.version());
+        assertThrows(UnsupportedOperationException.class, () -> store.snapshot().entries().put(3L, "three"));
+    }
+
+    @Test
+    void failedWritePublishesNothing() {
+        SnapshotStore<Long, String> store = new SnapshotStore<>();
+        store.load(Map.of(1L, "one"));
+        long version = store.version();
+
+        assertThrows(IllegalStateException.class, () -> store.write(working -> {
+            working.put(2L, "two");
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(version, store.version());
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void unchangedWriteIsNotPublished() {
+        SnapshotStore<Long, String> store = new SnapshotStore<>();
+        List<Long> published = new ArrayList<>();
+        store.onPublish(snapshot -> published.add(snapshot.version()));
+        long version = store.version();
+
+        store.write(working -> working.get(1L));
+
+        assertEquals(version, store.version());
+        assertTrue(published.isEmpty());
+    }
+
+    @Test
+    void nestedWriteJoinsTheOuterOne() {
+        SnapshotStore<Long, String> store = new SnapshotStore<>();
+        List<Long> published = new ArrayList<>();
+        store.onPublish(snapshot -> published.add(snapshot.version()));
+
+        store.write(working -> {
+            working.put(1L, "one");
+            return store.write(inner -> inner.put(2L, "two"));
+        });
+
+        assertEquals(1, published.size());
+        assertEquals(2, store.values().size());
+    }
+
+    @Test
+    void concurrentWritersAreSerialized() throws Exception {
+        SnapshotStore<Integer, Integer> store = new SnapshotStore<>();
+        int threads = 8;
+        int writesPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < writesPerThread; i++) {
+                        int key = thread * writesPerThread + i;
+                        store.write(working -> working.put(key, key));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(threads * writesPerThread, store.values().size());
+        assertEquals(threads * writesPerThread, store.version());
+    }
+}
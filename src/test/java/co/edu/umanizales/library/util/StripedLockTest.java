@@ -0,0 +1,85 @@
+package co.edu.umanizales.library.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLockTest {
+
+    private final StripedLock stripedLock = new StripedLock();
+
+    @Test
+    void keysLockedInOppositeOrdersDoNotDeadlock() {
+        List<String> forward = List.of(StripedLock.userKey(1), StripedLock.isbnKey("A"), StripedLock.isbnKey("B"));
+        List<String> backward = List.of(StripedLock.isbnKey("B"), StripedLock.isbnKey("A"), StripedLock.userKey(1));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> lockRepeatedly(forward));
+            CompletableFuture<Void> second = CompletableFuture.runAsync(() -> lockRepeatedly(backward));
+            CompletableFuture.allOf(first, second).join();
+        });
+    }
+
+    private void lockRepeatedly(List<String> keys) {
+        for (int i = 0; i < 20_000; i++) {
+            stripedLock.withLocks(keys, () -> null);
+        }
+    }
+
+    @Test
+    void operationsOnTheSameKeyAreMutuallyExclusive() throws Exception {
+        int threads = 8;
+        int increments = 10_000;
+        int[] counter = new int[1];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < increments; i++) {
+                    stripedLock.withLocks(List.of(StripedLock.userKey(7)), () -> counter[0]++);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        assertEquals(threads * increments, counter[0]);
+    }
+
+    @Test
+    void nestedCallMayRelockTheKeysItHolds() {
+        List<String> keys = List.of(StripedLock.userKey(1), StripedLock.isbnKey("A"));
+
+        String result = stripedLock.withLocks(keys,
+                () -> stripedLock.withLocks(List.of(StripedLock.isbnKey("A")), () -> "nested"));
+
+        assertEquals("nested", result);
+    }
+
+    @Test
+    void actionRunsInAUnitOfWorkThatRollsBackAndReleasesTheLocks() {
+        SnapshotStore<Long, String> store = new SnapshotStore<>();
+        List<String> keys = List.of(StripedLock.userKey(1));
+
+        assertThrows(IllegalStateException.class, () -> stripedLock.withLocks(keys, () -> {
+            assertTrue(UnitOfWork.isActive());
+            store.write(working -> working.put(1L, "written"));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertNull(store.get(1L));
+        assertFalse(UnitOfWork.isActive());
+        // Another thread can take the same stripe afterwards
+        assertEquals("free", CompletableFuture.supplyAsync(() -> stripedLock.withLocks(keys, () -> "free"))
+                .orTimeout(5, TimeUnit.SECONDS).join());
+    }
+}
@@ -0,0 +1,229 @@
+package co.edu.umanizales.library.util;
+
+import co.edu.umanizales.library.model.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitOfWorkTest {
+
+    public static class Item {
+        private String name;
+        private int count;
+
+        public Item() {
+        }
+
+        Item(String name, int count) {
+            this.name = name;
+            this.count = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int count) {
+            this.count = count;
+        }
+    }
+
+    private final SnapshotStore<Long, Item> store = new SnapshotStore<>();
+
+    @AfterEach
+    void noUnitLeftOpen() {
+        assertFalse(UnitOfWork.isActive());
+    }
+
+    @Test
+    void rollbackRestoresPutsAndRemovals() {
+        Item first = new Item("first", 1);
+        store.load(Map.of(1L, first));
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            store.write(working -> working.put(2L, new Item("second", 2)));
+            store.write(working -> working.remove(1L));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertSame(first, store.get(1L));
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void rollbackRestoresEntitiesEditedInPlace() {
+        Item item = new Item("item", 1);
+        store.load(Map.of(1L, item));
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            store.write(working -> {
+                working.edit(1L).setCount(5);
+                return null;
+            });
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, item.getCount());
+    }
+
+    @Test
+    void rollbackOfAnEditedBookKeepsItsCopyCounter() {
+        Book book = new Book();
+        book.setIsbn("isbn-1");
+        book.setTitle("Old title");
+        book.setTotalCopies(3);
+        book.compareAndSetAvailableCopies(0, 3);
+        SnapshotStore<String, Book> books = new SnapshotStore<>();
+        books.load(Map.of("isbn-1", book));
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            books.write(working -> {
+                working.edit("isbn-1").setTitle("New title");
+                return null;
+            });
+            // A checkout of the title while the unit is open
+            assertTrue(book.compareAndSetAvailableCopies(3, 2));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals("Old title", book.getTitle());
+        assertEquals(2, book.getAvailableCopies());
+    }
+
+    @Test
+    void undoActionsRunNewestFirst() {
+        List<String> undone = new ArrayList<>();
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            UnitOfWork.onRollback(() -> undone.add("first"));
+            UnitOfWork.onRollback(() -> undone.add("second"));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(List.of("second", "first"), undone);
+    }
+
+    @Test
+    void innerUnitRollsBackAloneAsASavepoint() {
+        UnitOfWork.run(() -> {
+            store.write(working -> working.put(1L, new Item("outer", 1)));
+            assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+                store.write(working -> working.put(2L, new Item("inner", 2)));
+                throw new IllegalStateException("boom");
+            }));
+            return null;
+        });
+
+        assertNotNull(store.get(1L));
+        assertNull(store.get(2L));
+    }
+
+    @Test
+    void committedInnerUnitIsRolledBackWithTheOuterOne() {
+        List<String> undone = new ArrayList<>();
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            UnitOfWork.run(() -> {
+                UnitOfWork.onRollback(() -> undone.add("inner"));
+                return store.write(working -> working.put(1L, new Item("inner", 1)));
+            });
+            throw new IllegalStateException("boom");
+        }));
+
+        assertNull(store.get(1L));
+        assertEquals(List.of("inner"), undone);
+    }
+
+    @Test
+    void invalidEntityRollsBackTheUnit() {
+        store.validateWith(item -> {
+            if (item.getCount() < 0) {
+                throw new IllegalStateException("negative count");
+            }
+        });
+
+        assertThrows(IllegalStateException.class,
+                () -> UnitOfWork.run(() -> store.write(working -> working.put(1L, new Item("bad", -1)))));
+
+        assertNull(store.get(1L));
+    }
+
+    @Test
+    void listenersAndAfterCommitActionsWaitForTheOutermostCommit() {
+        List<String> log = new ArrayList<>();
+        store.onPublish(snapshot -> log.add("persisted " + snapshot.values().size()));
+
+        UnitOfWork.run(() -> {
+            UnitOfWork.run(() -> {
+                store.write(working -> working.put(1L, new Item("a", 1)));
+                UnitOfWork.afterCommit(() -> log.add("event"));
+                return null;
+            });
+            store.write(working -> working.put(2L, new Item("b", 2)));
+            assertTrue(log.isEmpty());
+            return null;
+        });
+
+        assertEquals(List.of("persisted 2", "event"), log);
+    }
+
+    @Test
+    void afterCommitActionsAreDroppedOnRollback() {
+        List<String> log = new ArrayList<>();
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            UnitOfWork.afterCommit(() -> log.add("event"));
+            throw new IllegalStateException("boom");
+        }));
+
+        assertTrue(log.isEmpty());
+    }
+
+    @Test
+    void failingAfterCommitActionDoesNotUndoTheCommit() {
+        String result = UnitOfWork.run(() -> {
+            UnitOfWork.afterCommit(() -> {
+                throw new IllegalStateException("listener failed");
+            });
+            store.write(working -> working.put(1L, new Item("kept", 1)));
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertNotNull(store.get(1L));
+    }
+
+    @Test
+    void rollbackKeepsNewerWritesOfOtherThreads() {
+        store.load(Map.of(1L, new Item("original", 1)));
+        Item newer = new Item("newer", 3);
+
+        assertThrows(IllegalStateException.class, () -> UnitOfWork.run(() -> {
+            store.write(working -> working.put(1L, new Item("mine", 2)));
+            // Another thread overwrites the key before this unit rolls back
+            CompletableFuture.runAsync(() -> store.write(working -> working.put(1L, newer))).join();
+            throw new IllegalStateException("boom");
+        }));
+
+        assertSame(newer, store.get(1L));
+    }
+
+    @Test
+    void commitWithoutAUnitFails() {
+        assertThrows(IllegalStateException.class, UnitOfWork::commit);
+    }
+}